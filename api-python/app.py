@@ -1,9 +1,257 @@
-from flask import Flask, jsonify, request
-import yfinance as yf
+import json
+import os
+import random
+import re
+import sys
+import threading
+import time
+import zlib
+
+from flask import Flask, Response, jsonify, request, stream_with_context
+from concurrent.futures import Future, ThreadPoolExecutor
+
+try:
+    import yfinance as yf
+except ImportError:  # o modo simulado não precisa do yfinance
+    yf = None
 
 app = Flask(__name__)
 app.config['JSONIFY_PRETTYPRINT_REGULAR'] = False
 
+# Número máximo de pedidos simultâneos ao Yahoo num pedido em lote
+MAX_PEDIDOS_PARALELOS = 16
+
+# Intervalo (segundos) entre verificações de preço no /stream
+INTERVALO_STREAM_POR_DEFEITO = 2.0
+INTERVALO_STREAM_MINIMO = 0.5
+
+# Cache de cotações (ver CacheCotacoes)
+TTL_CACHE = float(os.environ.get('COTACOES_TTL', 15))
+CAPACIDADE_CACHE = 5000
+JANELA_QUENTE = 120      # acedido nos últimos N segundos -> refrescado em segundo plano
+ACESSOS_QUENTE = 2       # ... e com pelo menos N acessos
+JANELA_INATIVO = 600     # sem acessos há N segundos -> sai da cache
+
+# Modo simulado: cotações sintéticas e determinísticas, sem rede.
+# Ativar com COTACOES_MODO=simulado ou "python app.py --simulado".
+MODO_SIMULADO = (os.environ.get('COTACOES_MODO', '').lower() == 'simulado'
+                 or '--simulado' in sys.argv)
+PASSO_SIMULADO = 1.0     # o preço simulado muda a cada N segundos
+TICKER_VALIDO = re.compile(r'^[A-Z0-9.^=-]{1,15}$')
+
+
+def obter_cotacao_yahoo(ticker):
+    """Obtém a cotação de um ticker no Yahoo e devolve-a como dicionário."""
+    if yf is None:
+        raise RuntimeError("yfinance não instalado (use o modo simulado)")
+    dados = yf.Ticker(ticker).info
+
+    # Preço atual (tenta várias chaves do Yahoo)
+    preco = dados.get('currentPrice') or dados.get('regularMarketPrice') or 0.0
+
+    # Variação Percentual (tenta calcular se não vier pronta)
+    anterior = dados.get('regularMarketPreviousClose', preco)
+    variacao = ((preco - anterior) / anterior * 100) if anterior else 0.0
+
+    return {
+        "ticker": ticker,
+        "nome": dados.get('shortName', ticker),
+        "preco": float(preco),
+        "variacao": float(variacao),
+        "volume": int(dados.get('volume', 0))
+    }
+
+
+def obter_cotacao_simulada(ticker, agora=None):
+    """
+    Cotação sintética: o mesmo ticker no mesmo passo de tempo dá sempre o
+    mesmo resultado. Tickers com caracteres inválidos ou começados por
+    "ERRO" falham, para testar o tratamento de erros do cliente.
+    """
+    if not TICKER_VALIDO.match(ticker) or ticker.startswith('ERRO'):
+        raise ValueError("Ticker inexistente (simulado): " + ticker)
+
+    semente = zlib.crc32(ticker.encode('utf-8'))
+    passo = int((time.time() if agora is None else agora) // PASSO_SIMULADO)
+
+    # Preço base fixo por ticker; criptomoedas numa escala maior
+    base = 10 + (semente % 49000) / 100.0
+    if ticker.endswith('-USD'):
+        base *= 100
+
+    # Variação do dia: passeio determinístico a partir do passo atual
+    gerador = random.Random(semente * 1_000_003 + passo)
+    variacao = round(gerador.uniform(-8.0, 8.0), 2)
+    preco = round(base * (1 + variacao / 100), 2)
+
+    return {
+        "ticker": ticker,
+        "nome": ticker + " (simulado)",
+        "preco": float(preco),
+        "variacao": float(variacao),
+        "volume": gerador.randint(1_000, 50_000_000)
+    }
+
+
+# Fonte das cotações: o Yahoo ou o gerador simulado
+obter_cotacao_fonte = obter_cotacao_simulada if MODO_SIMULADO else obter_cotacao_yahoo
+
+
+class CacheCotacoes:
+    """
+    Cache em memória com TTL à frente da fonte de cotações.
+
+    - Cotação com menos de TTL_CACHE segundos: servida da cache
+    - Cotação expirada ou em falta: pedida à fonte; pedidos simultâneos
+      do mesmo ticker esperam pelo resultado do primeiro (um Future por
+      ticker) em vez de repetirem o pedido
+    - Tickers "quentes" (acedidos com frequência) são refrescados numa
+      thread em segundo plano antes de expirarem, por isso quem os pede
+      quase nunca espera pelo Yahoo
+    - Só se guardam sucessos: um erro é sempre tentado de novo
+    """
+
+    def __init__(self, fonte, ttl, capacidade):
+        self.fonte = fonte
+        self.ttl = ttl
+        self.capacidade = capacidade
+        self.entradas = {}   # ticker -> [dados, obtido_em, ultimo_acesso, acessos]
+        self.em_curso = {}   # ticker -> Future do pedido em curso
+        self.trinco = threading.Lock()
+        self.refrescador = None
+        self.estatisticas = {"acertos": 0, "falhas": 0, "refrescados": 0, "expulsos": 0}
+
+    def obter(self, ticker, idade_maxima=None):
+        """
+        Cotação do ticker com no máximo idade_maxima segundos (por defeito,
+        e nunca mais do que, o TTL da cache).
+        """
+        validade = self.ttl if idade_maxima is None else min(idade_maxima, self.ttl)
+        agora = time.time()
+        with self.trinco:
+            entrada = self.entradas.get(ticker)
+            if entrada is not None:
+                entrada[2] = agora
+                entrada[3] += 1
+                if agora - entrada[1] < validade:
+                    self.estatisticas["acertos"] += 1
+                    return entrada[0]
+            self.estatisticas["falhas"] += 1
+            futuro = self.em_curso.get(ticker)
+            primeiro = futuro is None
+            if primeiro:
+                futuro = Future()
+                self.em_curso[ticker] = futuro
+
+        # Um único pedido à fonte por ticker; os outros esperam pelo resultado
+        # (ou erro) dele. O Future continua válido para quem já o tem depois
+        # de sair de em_curso, por isso pode sair logo que o pedido acaba.
+        if not primeiro:
+            return futuro.result()
+        try:
+            dados = self.fonte(ticker)
+            self.guardar(ticker, dados)
+            futuro.set_result(dados)
+            return dados
+        except BaseException as e:
+            futuro.set_exception(e)
+            raise
+        finally:
+            with self.trinco:
+                self.em_curso.pop(ticker, None)
+
+    def guardar(self, ticker, dados):
+        """Guarda uma cotação acabada de obter (também usado pelo refrescador)."""
+        agora = time.time()
+        with self.trinco:
+            entrada = self.entradas.get(ticker)
+            if entrada is None:
+                self.entradas[ticker] = [dados, agora, agora, 1]
+                if len(self.entradas) > self.capacidade:
+                    self._expulsar_menos_recente()
+            else:
+                entrada[0] = dados
+                entrada[1] = agora
+        self.iniciar_refrescador()
+
+    def _expulsar_menos_recente(self):
+        # Chamado com o trinco adquirido
+        antigo = min(self.entradas, key=lambda t: self.entradas[t][2])
+        del self.entradas[antigo]
+        self.estatisticas["expulsos"] += 1
+
+    def iniciar_refrescador(self):
+        # Arranque preguiçoso: uma thread por processo (também com vários workers)
+        if self.refrescador is not None:
+            return
+        with self.trinco:
+            if self.refrescador is None:
+                self.refrescador = threading.Thread(target=self._refrescar_sempre,
+                                                    name="refrescador-cache", daemon=True)
+                self.refrescador.start()
+
+    def _refrescar_sempre(self):
+        with ThreadPoolExecutor(max_workers=MAX_PEDIDOS_PARALELOS) as executor:
+            while True:
+                time.sleep(max(self.ttl / 3, 0.5))
+                executor.map(self._refrescar, self._escolher_quentes())
+
+    def _escolher_quentes(self):
+        """Tickers quentes a meio do TTL; retira os inativos há muito tempo."""
+        agora = time.time()
+        quentes = []
+        with self.trinco:
+            for ticker, (_, obtido_em, ultimo_acesso, acessos) in list(self.entradas.items()):
+                if agora - ultimo_acesso > JANELA_INATIVO:
+                    del self.entradas[ticker]
+                    self.estatisticas["expulsos"] += 1
+                elif (agora - ultimo_acesso <= JANELA_QUENTE and acessos >= ACESSOS_QUENTE
+                      and agora - obtido_em >= self.ttl / 2 and ticker not in self.em_curso):
+                    quentes.append(ticker)
+        return quentes
+
+    def _refrescar(self, ticker):
+        try:
+            dados = self.fonte(ticker)
+        except Exception:
+            return  # mantém-se a cotação anterior até expirar
+        self.guardar(ticker, dados)
+        with self.trinco:
+            self.estatisticas["refrescados"] += 1
+
+    def resumo(self):
+        with self.trinco:
+            return dict(self.estatisticas, tamanho=len(self.entradas), ttl=self.ttl,
+                        modo="simulado" if MODO_SIMULADO else "yahoo")
+
+
+cache = CacheCotacoes(obter_cotacao_fonte, TTL_CACHE, CAPACIDADE_CACHE)
+
+
+def obter_cotacao(ticker):
+    """Cotação de um ticker, servida da cache sempre que possível."""
+    return cache.obter(ticker)
+
+
+def obter_cotacao_segura(ticker):
+    """Versão para lotes: um erro num ticker não faz falhar os restantes."""
+    try:
+        return obter_cotacao(ticker)
+    except Exception as e:
+        return {"ticker": ticker, "erro": str(e)}
+
+
+@app.route('/saude', methods=['GET'])
+def saude():
+    # Verificação rápida usada pelo cliente Java (não contacta o Yahoo)
+    return jsonify({"estado": "ok"})
+
+
+@app.route('/cache', methods=['GET'])
+def estado_cache():
+    # Estatísticas da cache de cotações (acertos, falhas, refrescados, ...)
+    return jsonify(cache.resumo())
+
 
 @app.route('/cotacao', methods=['GET'])
 def cotacao():
@@ -12,25 +260,68 @@ def cotacao():
     if not ticker: return jsonify({"erro": "Falta ticker"}), 400
 
     try:
-        dados = yf.Ticker(ticker).info
-
-        # Preço atual (tenta várias chaves do Yahoo)
-        preco = dados.get('currentPrice') or dados.get('regularMarketPrice') or 0.0
-
-        # Variação Percentual (tenta calcular se não vier pronta)
-        anterior = dados.get('regularMarketPreviousClose', preco)
-        variacao = ((preco - anterior) / anterior * 100) if anterior else 0.0
-
-        return jsonify({
-            "ticker": ticker,
-            "nome": dados.get('shortName', ticker),
-            "preco": float(preco),
-            "variacao": float(variacao),
-            "volume": int(dados.get('volume', 0))
-        })
+        return jsonify(obter_cotacao(ticker))
     except Exception as e:
         return jsonify({"erro": str(e)}), 500
 
 
+@app.route('/cotacoes', methods=['GET'])
+def cotacoes():
+    # Exemplo: /cotacoes?tickers=AAPL,MSFT,BTC-USD
+    # Devolve uma lista com uma entrada por ticker (cotação ou {"ticker", "erro"})
+    tickers = [t.strip().upper() for t in request.args.get('tickers', '').split(',')]
+    tickers = list(dict.fromkeys(t for t in tickers if t))  # sem vazios nem repetidos
+    if not tickers: return jsonify({"erro": "Falta tickers"}), 400
+
+    # Os pedidos ao Yahoo são I/O, por isso correm em paralelo
+    with ThreadPoolExecutor(max_workers=min(MAX_PEDIDOS_PARALELOS, len(tickers))) as executor:
+        resultados = list(executor.map(obter_cotacao_segura, tickers))
+
+    return jsonify(resultados)
+
+
+@app.route('/stream', methods=['GET'])
+def stream():
+    # Exemplo: /stream?tickers=AAPL,BTC-USD&intervalo=2
+    # Server-Sent Events: envia "data: {cotação}" só quando a cotação muda
+    tickers = [t.strip().upper() for t in request.args.get('tickers', '').split(',')]
+    tickers = list(dict.fromkeys(t for t in tickers if t))
+    if not tickers: return jsonify({"erro": "Falta tickers"}), 400
+
+    intervalo = max(request.args.get('intervalo', INTERVALO_STREAM_POR_DEFEITO, type=float),
+                    INTERVALO_STREAM_MINIMO)
+
+    def obter_fresca(ticker):
+        # O stream precisa de cotações mais recentes do que o TTL: pede-as à
+        # cache com idade máxima = intervalo. Vários clientes a seguir o mesmo
+        # ticker partilham assim um único pedido à fonte por intervalo.
+        try:
+            return cache.obter(ticker, idade_maxima=intervalo)
+        except Exception as e:
+            return {"ticker": ticker, "erro": str(e)}
+
+    def gerar():
+        ultimas = {}
+        with ThreadPoolExecutor(max_workers=min(MAX_PEDIDOS_PARALELOS, len(tickers))) as executor:
+            while True:
+                for dados in executor.map(obter_fresca, tickers):
+                    if 'erro' in dados: continue
+                    chave = (dados['preco'], dados['variacao'], dados['volume'])
+                    if ultimas.get(dados['ticker']) != chave:
+                        ultimas[dados['ticker']] = chave
+                        yield "data: " + json.dumps(dados) + "\n\n"
+                # Comentário SSE: mantém a ligação viva e deteta clientes desligados
+                yield ": ping\n\n"
+                time.sleep(intervalo)
+
+    return Response(stream_with_context(gerar()), mimetype='text/event-stream',
+                    headers={'Cache-Control': 'no-cache'})
+
+
 if __name__ == '__main__':
-    app.run(port=5000)
+    # Modo simulado para testes de carga: "python app.py --simulado"
+    # (para milhares de pedidos/s, correr com um servidor WSGI, ex:
+    #  COTACOES_MODO=simulado gunicorn -w 4 --threads 32 -b :5000 app:app)
+    if MODO_SIMULADO:
+        print(" * Modo simulado: cotações sintéticas, sem acesso à rede")
+    app.run(port=5000, threaded=True)
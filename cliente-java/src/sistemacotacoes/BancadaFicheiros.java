@@ -0,0 +1,147 @@
+// BancadaFicheiros.java
+package sistemacotacoes;
+
+import sistemacotacoes.modelo.Ativo;
+import sistemacotacoes.gestao.Carteira;
+import sistemacotacoes.enums.TipoAtivo;
+import sistemacotacoes.fabrica.FabricaAtivos;
+import sistemacotacoes.util.GestorFicheiros;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Mede guardarCSV e guardarTXT contra a escrita anterior
+ * (PrintWriter + String.format por linha) e confirma que os ficheiros
+ * ficam iguais byte a byte.
+ *
+ * Uso: java sistemacotacoes.BancadaFicheiros [ativos] [repetições]
+ * (por defeito 200000 ativos, 5 repetições). Executa sem a API Python.
+ */
+public class BancadaFicheiros {
+
+    public static void main(String[] args) throws IOException {
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int repeticoes = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Carteira carteira = gerarCarteira(quantidade);
+        Path dir = Files.createTempDirectory("bancada");
+        try {
+            System.out.printf("%n── BANCADA: guardar %d ativos (%d repetições) ──%n", quantidade, repeticoes);
+            medir("CSV", dir, repeticoes,
+                pCaminho -> guardarCSVFormatado(carteira, pCaminho),
+                pCaminho -> GestorFicheiros.guardarCSV(carteira, pCaminho));
+            medir("TXT", dir, repeticoes,
+                pCaminho -> guardarTXTFormatado(carteira, pCaminho),
+                pCaminho -> GestorFicheiros.guardarTXT(carteira, pCaminho));
+        } finally {
+            try (var ficheiros = Files.list(dir)) {
+                for (Path f : (Iterable<Path>) ficheiros::iterator) Files.delete(f);
+            }//try
+            Files.delete(dir);
+        }//finally
+    }//main
+
+    //--------------------------------------------------
+    // Medição
+    //--------------------------------------------------
+    private interface Escrita {
+        void guardar(String pCaminho) throws IOException;
+    }//interface Escrita
+
+    private static void medir(String pFormato, Path pDir, int pRepeticoes,
+                              Escrita pAntes, Escrita pAgora) throws IOException {
+        String extensao = pFormato.equals("CSV") ? ".csv" : ".txt";
+        String antes = pDir.resolve("antes" + extensao).toString();
+        String agora = pDir.resolve("agora" + extensao).toString();
+
+        // Aquecimento (JIT) e verificação
+        pAntes.guardar(antes);
+        pAgora.guardar(agora);
+        boolean iguais = Arrays.equals(Files.readAllBytes(Path.of(antes)), Files.readAllBytes(Path.of(agora)));
+        long bytes = Files.size(Path.of(agora));
+
+        long melhorAntes = Long.MAX_VALUE;
+        long melhorAgora = Long.MAX_VALUE;
+        for (int i = 0; i < pRepeticoes; i++) {
+            long t0 = System.nanoTime();
+            pAntes.guardar(antes);
+            long t1 = System.nanoTime();
+            pAgora.guardar(agora);
+            long t2 = System.nanoTime();
+            melhorAntes = Math.min(melhorAntes, t1 - t0);
+            melhorAgora = Math.min(melhorAgora, t2 - t1);
+        }//for
+
+        System.out.printf("%s  %.1f MB  %s%n", pFormato, bytes / 1e6,
+            iguais ? "✅ ficheiros iguais" : "❌ FICHEIROS DIFERENTES");
+        System.out.printf("   antes (String.format): %8.1f ms  %7.1f MB/s%n",
+            melhorAntes / 1e6, bytes / 1e3 / (melhorAntes / 1e6));
+        System.out.printf("   agora (EscritorTexto): %8.1f ms  %7.1f MB/s  (%.1fx)%n",
+            melhorAgora / 1e6, bytes / 1e3 / (melhorAgora / 1e6), (double) melhorAntes / melhorAgora);
+    }//medir
+
+    private static Carteira gerarCarteira(int pQuantidade) {
+        Carteira carteira = new Carteira("Bancada", pQuantidade);
+        Random aleatorio = new Random(2024);
+        TipoAtivo[] tipos = TipoAtivo.values();
+        List<Ativo> ativos = new ArrayList<>(pQuantidade);
+        for (int i = 0; i < pQuantidade; i++) {
+            ativos.add(FabricaAtivos.criarAtivo(
+                tipos[i % tipos.length],
+                "TK" + i,
+                "Empresa Ação " + i,
+                aleatorio.nextDouble() * 5000,
+                aleatorio.nextGaussian() * 4,
+                aleatorio.nextInt(50_000_000)));
+        }//for
+        carteira.adicionarTodos(ativos);
+        return carteira;
+    }//gerarCarteira
+
+    //--------------------------------------------------
+    // Escrita anterior (referência)
+    //--------------------------------------------------
+    private static void guardarCSVFormatado(Carteira pCarteira, String pCaminho) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(pCaminho))) {
+            writer.println("TICKER;TIPO;NOME;PRECO;VARIACAO;VOLUME");
+            for (Ativo a : pCarteira.getAtivos()) {
+                writer.println(String.format("%s;%s;%s;%.2f;%.4f;%d",
+                    a.getTicker(), a.obterTipo().name(), a.getNome(),
+                    a.getPreco(), a.getVariacao(), a.getVolume()));
+            }//for
+        }//try
+    }//guardarCSVFormatado
+
+    private static void guardarTXTFormatado(Carteira pCarteira, String pCaminho) throws IOException {
+        List<Ativo> ativos = pCarteira.getAtivos();
+        try (PrintWriter writer = new PrintWriter(new FileWriter(pCaminho))) {
+            writer.println("╔════════════════════════════════════════════════════════════════╗");
+            writer.println("║          CARTEIRA - RODRIGO SILVA ANÁLISE FUNDAMENTAL         ║");
+            writer.println("╚════════════════════════════════════════════════════════════════╝");
+            writer.println();
+            writer.printf("Nome: %s%n", pCarteira.getNome());
+            writer.printf("Total de ativos: %d%n", ativos.size());
+            writer.println();
+            writer.println("─".repeat(70));
+            writer.printf("%-12s %-8s %-20s %12s %10s%n", "TICKER", "TIPO", "NOME", "PREÇO", "VAR%");
+            writer.println("─".repeat(70));
+            for (Ativo a : ativos) {
+                String nome = a.getNome().length() <= 20 ? a.getNome() : a.getNome().substring(0, 17) + "...";
+                writer.printf("%-12s %-8s %-20s %12.2f %+9.2f%%%n",
+                    a.getTicker(), a.obterTipo().getNome(), nome, a.getPreco(), a.getVariacao());
+            }//for
+            writer.println("─".repeat(70));
+            writer.println();
+            writer.println("[DADOS PARA IMPORTAÇÃO - NÃO EDITAR ABAIXO DESTA LINHA]");
+            writer.println("@DATA_START");
+            for (Ativo a : ativos) {
+                writer.printf("%s|%s|%s|%.2f|%.4f|%d%n",
+                    a.getTicker(), a.obterTipo().name(), a.getNome(),
+                    a.getPreco(), a.getVariacao(), a.getVolume());
+            }//for
+            writer.println("@DATA_END");
+        }//try
+    }//guardarTXTFormatado
+
+}//classe BancadaFicheiros
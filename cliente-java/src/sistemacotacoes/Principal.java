@@ -2,14 +2,22 @@
 package sistemacotacoes;
 
 import sistemacotacoes.api.ClienteApi;
+import sistemacotacoes.api.ClienteApiComCache;
+import sistemacotacoes.api.Subscricao;
 import sistemacotacoes.gestao.Carteira;
 import sistemacotacoes.modelo.Ativo;
 import sistemacotacoes.enums.TipoAtivo;
 import sistemacotacoes.enums.CriterioOrdenacao;
 import sistemacotacoes.util.BoolEMensagem;
+import sistemacotacoes.util.DiarioCarteira;
 import sistemacotacoes.util.GestorFicheiros;
+import sistemacotacoes.util.HistoricoCotacoes;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
 
 /**
  * Classe principal do Sistema de Cotações.
@@ -23,12 +31,26 @@ import java.util.Scanner;
 public class Principal {
 
     private static Carteira carteira = new Carteira("Rodrigo Silva", 20);
-    private static ClienteApi api = new ClienteApi();
+    // Cliente com cache: pedidos repetidos do mesmo ticker não vão à rede
+    private static ClienteApi api = new ClienteApiComCache(new ClienteApi());
     private static Scanner scanner = new Scanner(System.in);
+
+    // Subscrição de cotações em tempo real (null = desligada)
+    private static Subscricao subscricao = null;
     
     // Diretório para guardar ficheiros (atual)
     private static final String DIRETORIO_DADOS = ".";
 
+    // Diário: cada alteração fica gravada; a carteira é reposta ao arrancar
+    private static final String NOME_DIARIO = "diario_carteira";
+    private static DiarioCarteira diario = null;
+
+    // Histórico local de todas as cotações obtidas da API (null = indisponível)
+    private static final String DIRETORIO_HISTORICO = "historico";
+    private static final long JANELA_HISTORICO_MS = 24L * 60 * 60 * 1000;  // últimas 24 h
+    private static final int MAXIMO_HISTORICO_MOSTRADO = 20;
+    private static HistoricoCotacoes historico = null;
+
     //--------------------------------------------------
     // Main
     //--------------------------------------------------
@@ -42,7 +64,14 @@ public class Principal {
             System.out.println("   (Continuando em modo demonstração...)\n");
         }//if
 
+        abrirDiario();
+        abrirHistorico();
+
         menuPrincipal();
+
+        if (subscricao != null) subscricao.cancelar();
+        fecharDiario();
+        fecharHistorico();
         
         // Perguntar se quer guardar antes de sair
         if (!carteira.estaVazia()) {
@@ -56,6 +85,78 @@ public class Principal {
         System.out.println("\n👋 Obrigado por usar o Sistema de Cotações!");
     }//main
 
+    //--------------------------------------------------
+    // Diário da carteira
+    //--------------------------------------------------
+    private static void abrirDiario() {
+        try {
+            diario = GestorFicheiros.abrirDiario(carteira, DIRETORIO_DADOS + "/" + NOME_DIARIO);
+            if (!carteira.estaVazia()) {
+                System.out.println("📒 " + diario.getRelatorio());
+            }//if
+        } catch (IOException e) {
+            System.out.println("⚠️  Diário indisponível (alterações não serão gravadas): " + e.getMessage());
+        }//catch
+    }//abrirDiario
+
+    private static void fecharDiario() {
+        if (diario == null) return;
+        try {
+            diario.close();
+        } catch (IOException e) {
+            System.out.println("❌ Erro ao fechar o diário: " + e.getMessage());
+        }//catch
+    }//fecharDiario
+
+    //--------------------------------------------------
+    // Histórico de cotações
+    //--------------------------------------------------
+    private static void abrirHistorico() {
+        try {
+            historico = new HistoricoCotacoes(Path.of(DIRETORIO_DADOS, DIRETORIO_HISTORICO));
+            api.definirRegisto(historico::registar);
+        } catch (IOException e) {
+            System.out.println("⚠️  Histórico indisponível: " + e.getMessage());
+        }//catch
+    }//abrirHistorico
+
+    private static void fecharHistorico() {
+        if (historico == null) return;
+        api.definirRegisto(null);
+        try {
+            historico.close();
+        } catch (IOException e) {
+            System.out.println("❌ Erro ao fechar o histórico: " + e.getMessage());
+        }//catch
+    }//fecharHistorico
+
+    private static void mostrarHistorico() {
+        if (historico == null) {
+            System.out.println("❌ Histórico indisponível.");
+            return;
+        }//if
+        System.out.print("Ticker: ");
+        String ticker = scanner.nextLine().trim().toUpperCase();
+        if (ticker.isEmpty()) return;
+
+        try {
+            long agora = System.currentTimeMillis();
+            List<HistoricoCotacoes.Observacao> observacoes =
+                historico.obterHistorico(ticker, agora - JANELA_HISTORICO_MS, agora);
+            if (observacoes.isEmpty()) {
+                System.out.println("Sem cotações de " + ticker + " nas últimas 24 h.");
+                return;
+            }//if
+            System.out.printf("\n── 🕒 %s: %d cotações nas últimas 24 h ──\n", ticker, observacoes.size());
+            int inicio = Math.max(0, observacoes.size() - MAXIMO_HISTORICO_MOSTRADO);
+            for (HistoricoCotacoes.Observacao o : observacoes.subList(inicio, observacoes.size())) {
+                System.out.println("  " + o);
+            }//for
+        } catch (IOException e) {
+            System.out.println("❌ Erro ao ler o histórico: " + e.getMessage());
+        }//catch
+    }//mostrarHistorico
+
     //--------------------------------------------------
     // Menu Principal
     //--------------------------------------------------
@@ -73,6 +174,9 @@ public class Principal {
             System.out.println("║  ─────────────────────────────     ║");
             System.out.println("║  7. 💾 Guardar Carteira            ║");
             System.out.println("║  8. 📂 Carregar Carteira           ║");
+            System.out.println("║  9. 📡 Tempo Real (ligar/desligar) ║");
+            System.out.println("║ 10. 📈 Métricas da API             ║");
+            System.out.println("║ 11. 🕒 Histórico de Cotações       ║");
             System.out.println("║  ─────────────────────────────     ║");
             System.out.println("║  0. Sair                           ║");
             System.out.println("╚════════════════════════════════════╝");
@@ -89,12 +193,55 @@ public class Principal {
                 case "6": carteira.listarResumo(); break;
                 case "7": menuGuardar(); break;
                 case "8": menuCarregar(); break;
+                case "9": alternarTempoReal(); break;
+                case "10": mostrarMetricas(); break;
+                case "11": mostrarHistorico(); break;
                 case "0": return;
-                default: System.out.println("❌ Opção inválida! Escolha entre 0-8.");
+                default: System.out.println("❌ Opção inválida! Escolha entre 0-11.");
             }//switch
         }//while
     }//menuPrincipal
 
+    //--------------------------------------------------
+    // Cotações em Tempo Real (liga/desliga)
+    //--------------------------------------------------
+    private static void alternarTempoReal() {
+        if (subscricao != null) {
+            subscricao.cancelar();
+            System.out.println("📡 Tempo real desligado. " + subscricao);
+            subscricao = null;
+            return;
+        }//if
+
+        if (carteira.estaVazia()) {
+            System.out.println("❌ Carteira vazia! Nada para acompanhar.");
+            return;
+        }//if
+
+        Set<String> tickers = new LinkedHashSet<>();
+        for (Ativo a : carteira.getAtivos()) {
+            tickers.add(a.getTicker());
+        }//for
+
+        // As cotações recebidas atualizam os ativos da carteira no próprio objeto
+        subscricao = api.subscrever(tickers, carteira::atualizarCotacao);
+        System.out.println("📡 Tempo real ligado para " + tickers.size() + " ativo(s).");
+        System.out.println("   (Os ativos adicionados depois só entram ao voltar a ligar)");
+    }//alternarTempoReal
+
+    //--------------------------------------------------
+    // Métricas da API (latências, contadores, cache)
+    //--------------------------------------------------
+    private static void mostrarMetricas() {
+        System.out.println("\n── MÉTRICAS DA API ──");
+        System.out.print(api.obterMetricas());
+        System.out.println(api.getTransporte());
+        System.out.println(api.getTransporte().getDisjuntor());
+        if (api instanceof ClienteApiComCache cache) {
+            System.out.println(cache);
+        }//if
+    }//mostrarMetricas
+
     //--------------------------------------------------
     // Submenu: Guardar Carteira
     //--------------------------------------------------
@@ -108,6 +255,7 @@ public class Principal {
             System.out.println("\n── 💾 GUARDAR CARTEIRA ──");
             System.out.println("1. Guardar como CSV (compatível com Excel)");
             System.out.println("2. Guardar como TXT (formato legível)");
+            System.out.println("3. Guardar como CART (binário compacto)");
             System.out.println("0. Voltar");
             System.out.print("Formato: ");
             
@@ -117,8 +265,8 @@ public class Principal {
                 return;
             }//if
             
-            if (!formato.equals("1") && !formato.equals("2")) {
-                System.out.println("❌ Formato inválido! Escolha 1, 2 ou 0.");
+            if (!formato.equals("1") && !formato.equals("2") && !formato.equals("3")) {
+                System.out.println("❌ Formato inválido! Escolha 1, 2, 3 ou 0.");
                 continue;
             }//if
             
@@ -137,8 +285,10 @@ public class Principal {
             
             if (formato.equals("1")) {
                 resultado = GestorFicheiros.guardarCSV(carteira, nomeFicheiro);
-            } else {
+            } else if (formato.equals("2")) {
                 resultado = GestorFicheiros.guardarTXT(carteira, nomeFicheiro);
+            } else {
+                resultado = GestorFicheiros.guardarCART(carteira, nomeFicheiro);
             }//else
             
             System.out.println(resultado.getMensagem());
@@ -170,6 +320,7 @@ public class Principal {
             
             System.out.println("1. Carregar ficheiro CSV");
             System.out.println("2. Carregar ficheiro TXT");
+            System.out.println("3. Carregar ficheiro CART");
             System.out.println("0. Voltar");
             System.out.print("Formato: ");
             
@@ -179,13 +330,13 @@ public class Principal {
                 return;
             }//if
             
-            if (!formato.equals("1") && !formato.equals("2")) {
-                System.out.println("❌ Formato inválido! Escolha 1, 2 ou 0.");
+            if (!formato.equals("1") && !formato.equals("2") && !formato.equals("3")) {
+                System.out.println("❌ Formato inválido! Escolha 1, 2, 3 ou 0.");
                 continue;
             }//if
             
             // Pedir nome do ficheiro
-            String extensao = formato.equals("1") ? ".csv" : ".txt";
+            String extensao = formato.equals("1") ? ".csv" : formato.equals("2") ? ".txt" : ".cart";
             System.out.print("Nome do ficheiro (com ou sem " + extensao + "): ");
             String nomeFicheiro = scanner.nextLine().trim();
             
@@ -209,8 +360,10 @@ public class Principal {
             
             if (formato.equals("1")) {
                 resultado = GestorFicheiros.carregarCSV(carteira, nomeFicheiro);
-            } else {
+            } else if (formato.equals("2")) {
                 resultado = GestorFicheiros.carregarTXT(carteira, nomeFicheiro);
+            } else {
+                resultado = GestorFicheiros.carregarCART(carteira, nomeFicheiro);
             }//else
             
             System.out.println(resultado.getMensagem());
@@ -5,9 +5,26 @@ import sistemacotacoes.modelo.*;
 import sistemacotacoes.enums.TipoAtivo;
 import sistemacotacoes.fabrica.FabricaAtivos;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URLEncoder;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * Cliente HTTP para comunicação com a API Python (Flask).
@@ -16,78 +33,444 @@ import java.net.URL;
  */
 public class ClienteApi {
 
-    private static final String URL_BASE = "http://localhost:5000/cotacao?ticker=";
-    private static final int TIMEOUT_MS = 5000;
+    private static final String CAMINHO_COTACAO = "/cotacao?ticker=";
+    private static final String CAMINHO_LOTE = "/cotacoes?tickers=";
+    private static final String CAMINHO_SAUDE = "/saude";
+    private static final String CAMINHO_STREAM = "/stream?tickers=";
+    private static final int TIMEOUT_MS = (int) TransporteHttp.TIMEOUT_MAXIMO_MS;
+    private static final String MSG_CIRCUITO_ABERTO = "API indisponível (circuito aberto)";
+
+    // Limite de pedidos simultâneos por defeito nas buscas em massa
+    public static final int CONCORRENCIA_POR_DEFEITO = 32;
+
+    // Espera entre tentativas de religar o stream (duplica até ao máximo)
+    private static final long RELIGAR_INICIAL_MS = 1000;
+    private static final long RELIGAR_MAXIMO_MS = 30_000;
+
+    // Pedidos em curso, partilhados entre todas as instâncias (ver pedirPartilhado)
+    private static final Map<String, CompletableFuture<Ativo>> EM_CURSO = new ConcurrentHashMap<>();
+    private static final AtomicLong PEDIDOS_PARTILHADOS = new AtomicLong();
+
+    // Transporte partilhado (ligações reutilizadas entre todos os clientes)
+    private final TransporteHttp mTransporte;
+
+    // Latências e contadores dos pedidos deste cliente
+    private final MetricasApi mMetricas;
+
+    // Recebe todas as cotações obtidas por este cliente (ex: histórico); null = ninguém
+    private volatile OuvinteCotacoes mRegisto;
 
     //--------------------------------------------------
-    // Buscar Ativo (com tipo explícito)
+    // Construtores
     //--------------------------------------------------
-    public Ativo buscarAtivo(String pTicker, TipoAtivo pTipo) {
-        try {
-            String json = fazerRequisicao(pTicker);
+    public ClienteApi() {
+        this(TransporteHttp.obter());
+    }//construtor ClienteApi
 
-            if (json == null || json.contains("erro")) {
-                System.out.println("❌ Erro ao buscar " + pTicker);
-                return null;
-            }//if
+    /**
+     * @param pUrlBase endereço da API (ex: http://localhost:5000)
+     */
+    public ClienteApi(String pUrlBase) {
+        this(TransporteHttp.obter(pUrlBase));
+    }//construtor ClienteApi
 
-            // Extrair dados do JSON
-            String nome = extrairValor(json, "nome");
-            double preco = extrairDouble(json, "preco");
-            double variacao = extrairDouble(json, "variacao");
-            long volume = extrairLong(json, "volume");
+    public ClienteApi(TransporteHttp pTransporte) {
+        this.mTransporte = pTransporte;
+        this.mMetricas = new MetricasApi();
+    }//construtor ClienteApi
 
-            // Usar Factory para criar o objeto correto
-            return FabricaAtivos.criarAtivo(
-                pTipo, pTicker, nome, preco, variacao, volume
-            );
+    /**
+     * Para decoradores (ex: ClienteApiComCache): usa o transporte e as
+     * métricas do cliente envolvido, sem criar os seus.
+     */
+    protected ClienteApi(ClienteApi pOrigem) {
+        this.mTransporte = pOrigem.mTransporte;
+        this.mMetricas = pOrigem.mMetricas;
+    }//construtor ClienteApi
 
-        } catch (Exception e) {
-            System.out.println("Erro: " + e.getMessage());
-            return null;
-        }//catch
+    //--------------------------------------------------
+    // Buscar Ativo (com tipo explícito)
+    //--------------------------------------------------
+    public Ativo buscarAtivo(String pTicker, TipoAtivo pTipo) {
+        // Usar Factory para criar o objeto correto (ver criarAtivoDeCotacao)
+        return esperar(pedirPartilhado(pTicker, pTipo), pTicker);
     }//buscarAtivo
 
     //--------------------------------------------------
     // Buscar Ativo (com detecção automática)
     //--------------------------------------------------
     public Ativo buscarAtivoAuto(String pTicker) {
+        // Factory com detecção automática
+        return esperar(pedirPartilhado(pTicker, null), pTicker);
+    }//buscarAtivoAuto
+
+    //--------------------------------------------------
+    // Buscar vários Ativos num único pedido (com detecção automática)
+    //--------------------------------------------------
+
+    /**
+     * Busca vários tickers num só pedido HTTP à rota /cotacoes.
+     * Os erros são reportados ticker a ticker e não fazem falhar o lote:
+     * o mapa devolvido contém apenas os ativos obtidos com sucesso,
+     * indexados pelo ticker em maiúsculas e pela ordem pedida.
+     */
+    public Map<String, Ativo> buscarAtivos(Collection<String> pTickers) {
+        Map<String, Ativo> resultado = new LinkedHashMap<>();
+
+        // Normalizar e remover repetidos (mantendo a ordem)
+        Set<String> tickers = new LinkedHashSet<>();
+        for (String t : pTickers) {
+            if (t != null && !t.trim().isEmpty()) tickers.add(t.trim().toUpperCase());
+        }//for
+        if (tickers.isEmpty()) return resultado;
+
         try {
-            String json = fazerRequisicao(pTicker);
+            Set<String> respondidos = new LinkedHashSet<>();
+            boolean ok = fazerRequisicaoLote(tickers, cotacao -> {
+                String ticker = cotacao.getTicker();
+                if (ticker == null) return;
+                respondidos.add(ticker);
 
-            if (json == null || json.contains("erro")) {
-                System.out.println("❌ Erro ao buscar " + pTicker);
-                return null;
-            }//if
+                if (cotacao.temErro()) {
+                    System.out.println("❌ Erro ao buscar " + ticker + ": " + cotacao.getErro());
+                    return;
+                }//if
 
-            // Extrair dados do JSON
-            String nome = extrairValor(json, "nome");
-            double preco = extrairDouble(json, "preco");
-            double variacao = extrairDouble(json, "variacao");
-            long volume = extrairLong(json, "volume");
+                registar(cotacao);
+                resultado.put(ticker, FabricaAtivos.criarAtivoAuto(
+                    ticker, nomeOuDefeito(cotacao),
+                    cotacao.getPreco(), cotacao.getVariacao(), cotacao.getVolume()
+                ));
+            });
 
-            // Factory com detecção automática
-            return FabricaAtivos.criarAtivoAuto(
-                pTicker, nome, preco, variacao, volume
-            );
+            if (!ok) {
+                System.out.println("❌ Erro ao buscar lote de " + tickers.size() + " tickers");
+                return resultado;
+            }//if
+
+            // Tickers sem resposta do servidor
+            for (String t : tickers) {
+                if (!respondidos.contains(t)) {
+                    System.out.println("⚠️ Sem dados para " + t);
+                }//if
+            }//for
 
         } catch (Exception e) {
             System.out.println("Erro: " + e.getMessage());
+        }//catch
+
+        return resultado;
+    }//buscarAtivos
+
+    //--------------------------------------------------
+    // Buscas Assíncronas (HttpClient + virtual threads)
+    //--------------------------------------------------
+
+    /**
+     * Versão não bloqueante de buscarAtivo.
+     * O futuro completa com exceção se o ticker não puder ser obtido.
+     * Se pTipo for null, o tipo é detetado automaticamente.
+     */
+    public CompletableFuture<Ativo> buscarAtivoAsync(String pTicker, TipoAtivo pTipo) {
+        return pedirPartilhado(pTicker, pTipo);
+    }//buscarAtivoAsync
+
+    public CompletableFuture<Ativo> buscarAtivoAutoAsync(String pTicker) {
+        return buscarAtivoAsync(pTicker, null);
+    }//buscarAtivoAutoAsync
+
+    //--------------------------------------------------
+    // Pedidos em Curso Partilhados (single-flight)
+    //--------------------------------------------------
+
+    /**
+     * Pedidos simultâneos para o mesmo ticker (e tipo) partilham um único
+     * pedido HTTP: o primeiro faz o pedido, os restantes esperam por ele
+     * e todos recebem o mesmo Ativo (ou o mesmo erro).
+     * Cada chamador recebe a sua cópia do futuro, para que cancelar
+     * um deles não afete os outros.
+     */
+    private CompletableFuture<Ativo> pedirPartilhado(String pTicker, TipoAtivo pTipo) {
+        String ticker = pTicker.trim().toUpperCase();
+        TipoAtivo tipo = pTipo != null ? pTipo : FabricaAtivos.detectarTipo(ticker);
+        String chave = mTransporte.getUrlBase() + "|" + ticker + "|" + tipo.name();
+
+        CompletableFuture<Ativo> novo = new CompletableFuture<>();
+        CompletableFuture<Ativo> existente = EM_CURSO.putIfAbsent(chave, novo);
+        if (existente != null) {
+            PEDIDOS_PARTILHADOS.incrementAndGet();
+            return existente.copy();
+        }//if
+
+        // Retirar do mapa ANTES de completar: quem chegar depois faz pedido novo
+        pedirAtivo(ticker, tipo).whenComplete((ativo, erro) -> {
+            EM_CURSO.remove(chave, novo);
+            if (erro != null) {
+                novo.completeExceptionally(erro);
+            } else {
+                novo.complete(ativo);
+            }//else
+        });
+        return novo.copy();
+    }//pedirPartilhado
+
+    /**
+     * Espera pelo resultado de um pedido e reporta o erro, se houver
+     * (comportamento das buscas síncronas: null em caso de erro).
+     */
+    private static Ativo esperar(CompletableFuture<Ativo> pFuturo, String pTicker) {
+        try {
+            return pFuturo.join();
+        } catch (CompletionException e) {
+            Throwable causa = e.getCause() != null ? e.getCause() : e;
+            System.out.println("❌ Erro ao buscar " + pTicker + ": " + causa.getMessage());
             return null;
         }//catch
-    }//buscarAtivoAuto
+    }//esperar
+
+    public static long getPedidosPartilhados() { return PEDIDOS_PARTILHADOS.get(); }
+
+    /**
+     * Busca muitos tickers em paralelo, com no máximo pMaxConcorrencia
+     * pedidos em curso ao mesmo tempo (para não sobrecarregar a API).
+     * Os tickers que falham são reportados e ficam de fora do mapa.
+     */
+    public CompletableFuture<Map<String, Ativo>> buscarAtivosAsync(
+        Collection<String> pTickers,
+        int pMaxConcorrencia
+    ) {
+        if (pMaxConcorrencia < 1) {
+            throw new IllegalArgumentException("Concorrência inválida: " + pMaxConcorrencia);
+        }//if
+
+        Set<String> tickers = new LinkedHashSet<>();
+        for (String t : pTickers) {
+            if (t != null && !t.trim().isEmpty()) tickers.add(t.trim().toUpperCase());
+        }//for
+
+        Semaphore limite = new Semaphore(pMaxConcorrencia);
+        Map<String, CompletableFuture<Ativo>> futuros = new LinkedHashMap<>();
+
+        for (String ticker : tickers) {
+            // Cada tarefa corre numa virtual thread e espera pela sua vez
+            futuros.put(ticker, CompletableFuture.supplyAsync(() -> {
+                limite.acquireUninterruptibly();
+                try {
+                    return buscarAtivoAsync(ticker, null).join();
+                } finally {
+                    limite.release();
+                }//finally
+            }, TransporteHttp.EXECUTOR_VIRTUAL));
+        }//for
+
+        return CompletableFuture
+            .allOf(futuros.values().stream()
+                .map(f -> f.exceptionally(e -> null))
+                .toArray(CompletableFuture[]::new))
+            .thenApply(v -> {
+                Map<String, Ativo> resultado = new LinkedHashMap<>();
+                for (Map.Entry<String, CompletableFuture<Ativo>> e : futuros.entrySet()) {
+                    try {
+                        resultado.put(e.getKey(), e.getValue().join());
+                    } catch (CompletionException ex) {
+                        Throwable causa = ex.getCause() != null ? ex.getCause() : ex;
+                        System.out.println("❌ Erro ao buscar " + e.getKey() + ": " + causa.getMessage());
+                    }//catch
+                }//for
+                return resultado;
+            });
+    }//buscarAtivosAsync
+
+    public CompletableFuture<Map<String, Ativo>> buscarAtivosAsync(Collection<String> pTickers) {
+        return buscarAtivosAsync(pTickers, CONCORRENCIA_POR_DEFEITO);
+    }//buscarAtivosAsync
+
+    //--------------------------------------------------
+    // Pedido HTTP individual
+    //--------------------------------------------------
+    private CompletableFuture<Ativo> pedirAtivo(String pTicker, TipoAtivo pTipo) {
+        DisjuntorCircuito disjuntor = mTransporte.getDisjuntor();
+        if (!disjuntor.permitirPedido()) {
+            return CompletableFuture.failedFuture(new IOException(MSG_CIRCUITO_ABERTO));
+        }//if
+
+        // Timeout adaptativo: derivado das latências recentes
+        mMetricas.contarPedido();
+        long inicio = System.nanoTime();
+        Duration timeout = disjuntor.obterTimeout();
+        return mTransporte.enviarAsync(CAMINHO_COTACAO + codificar(pTicker), timeout)
+            .whenComplete((resposta, erro) -> {
+                if (erro != null) {
+                    registarErro(disjuntor, erro, timeout);
+                } else {
+                    registarResposta(disjuntor, resposta.statusCode(), System.nanoTime() - inicio);
+                    mMetricas.registarCabecalhos(inicio, resposta);
+                }//else
+            })
+            .thenApply(resposta -> {
+                try (MetricasApi.FluxoMedido corpo = mMetricas.medir(resposta.body())) {
+                    if (resposta.statusCode() != 200) {
+                        throw new IOException("HTTP " + resposta.statusCode());
+                    }//if
+                    long inicioCorpo = System.nanoTime();
+                    DescodificadorCotacoes.Cotacao cotacao = new DescodificadorCotacoes().descodificarUma(corpo);
+                    mMetricas.registarCorpo(corpo, inicioCorpo);
+                    Ativo ativo = criarAtivoDeCotacao(cotacao, pTicker, pTipo);
+                    registar(cotacao);
+                    return ativo;
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }//catch
+            })
+            .whenComplete((ativo, erro) -> {
+                if (erro != null) {
+                    mMetricas.registarErro(erro);
+                } else {
+                    mMetricas.registarFim(inicio);
+                }//else
+            });
+    }//pedirAtivo
+
+    //--------------------------------------------------
+    // Cotações em Tempo Real (Server-Sent Events)
+    //--------------------------------------------------
+
+    /**
+     * Subscreve as cotações de um conjunto de tickers através do /stream.
+     * O servidor só envia uma cotação quando ela muda; cada uma é entregue
+     * ao ouvinte numa thread de fundo, logo que chega.
+     * Se a ligação cair, volta a ligar automaticamente até ser cancelada.
+     *
+     * Exemplo: api.subscrever(tickers, carteira::atualizarCotacao)
+     */
+    public Subscricao subscrever(Set<String> pTickers, OuvinteCotacoes pOuvinte) {
+        Set<String> tickers = new LinkedHashSet<>();
+        for (String t : pTickers) {
+            if (t != null && !t.trim().isEmpty()) tickers.add(t.trim().toUpperCase());
+        }//for
+        if (tickers.isEmpty()) {
+            throw new IllegalArgumentException("Subscrição sem tickers");
+        }//if
+
+        Subscricao subscricao = new Subscricao(tickers);
+        Thread thread = Thread.ofVirtual()
+            .name("subscricao-cotacoes")
+            .unstarted(() -> lerStream(subscricao, pOuvinte));
+        subscricao.iniciar(thread);
+        thread.start();
+        return subscricao;
+    }//subscrever
+
+    private void lerStream(Subscricao pSubscricao, OuvinteCotacoes pOuvinte) {
+        String caminho = CAMINHO_STREAM + codificar(String.join(",", pSubscricao.getTickers()));
+        DescodificadorCotacoes descodificador = new DescodificadorCotacoes();
+        long espera = RELIGAR_INICIAL_MS;
+
+        while (!pSubscricao.estaCancelada()) {
+            try {
+                HttpResponse<InputStream> resposta =
+                    enviarProtegido(caminho, Duration.ofMillis(TIMEOUT_MS), System.nanoTime());
+
+                // No stream só se contam os bytes: a ligação dura indefinidamente
+                InputStream corpo = resposta.body();
+                try (BufferedReader leitor = new BufferedReader(
+                        new InputStreamReader(mMetricas.medir(corpo), StandardCharsets.UTF_8))) {
+                    if (resposta.statusCode() != 200) {
+                        throw new IOException("HTTP " + resposta.statusCode());
+                    }//if
+                    // O corpo, não o leitor: BufferedReader.close espera pelo readLine em curso
+                    pSubscricao.ligado(corpo);
+                    espera = RELIGAR_INICIAL_MS;
+
+                    // Formato SSE: linhas "data: ..." terminadas por uma linha vazia
+                    StringBuilder dados = new StringBuilder();
+                    String linha;
+                    while ((linha = leitor.readLine()) != null) {
+                        if (linha.startsWith("data:")) {
+                            dados.append(linha, linha.startsWith("data: ") ? 6 : 5, linha.length());
+                        } else if (linha.isEmpty() && dados.length() > 0) {
+                            entregar(dados.toString(), descodificador, pSubscricao, pOuvinte);
+                            dados.setLength(0);
+                        }//else if
+                        // Linhas começadas por ':' são comentários (ping)
+                    }//while
+                }//try
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                if (pSubscricao.estaCancelada()) break;
+                mMetricas.registarErro(e);
+            } finally {
+                pSubscricao.desligado();
+            }//finally
+
+            // Ligação caiu: esperar e voltar a tentar
+            try {
+                Thread.sleep(espera);
+            } catch (InterruptedException e) {
+                break;
+            }//catch
+            espera = Math.min(espera * 2, RELIGAR_MAXIMO_MS);
+        }//while
+    }//lerStream
+
+    private void entregar(
+        String pDados,
+        DescodificadorCotacoes pDescodificador,
+        Subscricao pSubscricao,
+        OuvinteCotacoes pOuvinte
+    ) throws IOException {
+        DescodificadorCotacoes.Cotacao cotacao = pDescodificador.descodificarUma(
+            new ByteArrayInputStream(pDados.getBytes(StandardCharsets.UTF_8)));
+        if (cotacao.temErro() || cotacao.getTicker() == null) return;
+
+        pSubscricao.registarRecebida();
+        registar(cotacao);
+        pOuvinte.aoReceberCotacao(
+            cotacao.getTicker(), cotacao.getPreco(), cotacao.getVariacao(), cotacao.getVolume());
+    }//entregar
+
+    //--------------------------------------------------
+    // Registo de todas as cotações obtidas
+    //--------------------------------------------------
+
+    /**
+     * Passa a entregar ao registo cada cotação obtida (pedidos individuais,
+     * lotes e stream), antes de ser transformada em Ativo ou entregue ao
+     * ouvinte. null desliga.
+     *
+     * Exemplo: api.definirRegisto(historico::registar)
+     */
+    public void definirRegisto(OuvinteCotacoes pRegisto) {
+        mRegisto = pRegisto;
+    }//definirRegisto
+
+    private void registar(DescodificadorCotacoes.Cotacao pCotacao) {
+        OuvinteCotacoes registo = mRegisto;
+        if (registo == null || pCotacao.temErro() || pCotacao.getTicker() == null) return;
+        try {
+            registo.aoReceberCotacao(
+                pCotacao.getTicker(), pCotacao.getPreco(), pCotacao.getVariacao(), pCotacao.getVolume());
+        } catch (RuntimeException e) {
+            // Um registo com problemas não faz falhar a busca
+            mMetricas.registarErro(e);
+        }//catch
+    }//registar
 
     //--------------------------------------------------
     // Verificar se API está disponível
     //--------------------------------------------------
     public boolean apiDisponivel() {
         try {
-            URL url = new URL("http://localhost:5000/saude");
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setConnectTimeout(TIMEOUT_MS);
-            conn.setRequestMethod("GET");
-            return conn.getResponseCode() == 200;
+            // Com o circuito aberto responde de imediato, sem ir à rede
+            long inicio = System.nanoTime();
+            HttpResponse<InputStream> resposta =
+                enviarProtegido(CAMINHO_SAUDE, mTransporte.getDisjuntor().obterTimeout(), inicio);
+            resposta.body().close();
+            mMetricas.registarFim(inicio);
+            return resposta.statusCode() == 200;
         } catch (Exception e) {
+            mMetricas.registarErro(e);
             return false;
         }//catch
     }//apiDisponivel
@@ -96,58 +479,132 @@ public class ClienteApi {
     // Métodos Auxiliares (HTTP e Parse JSON)
     //--------------------------------------------------
 
-    private String fazerRequisicao(String pTicker) throws Exception {
-        URL url = new URL(URL_BASE + pTicker.toUpperCase());
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setConnectTimeout(TIMEOUT_MS);
-        conn.setReadTimeout(TIMEOUT_MS);
-        conn.setRequestMethod("GET");
+    /**
+     * Envia um pedido através do disjuntor: recusa de imediato se o
+     * circuito estiver aberto e regista o resultado do pedido.
+     * Os erros ficam a cargo do chamador (contam uma única vez nas métricas).
+     *
+     * @param pInicioNanos System.nanoTime() do início do pedido (métricas)
+     */
+    private HttpResponse<InputStream> enviarProtegido(String pCaminho, Duration pTimeout, long pInicioNanos)
+        throws IOException, InterruptedException {
 
-        if (conn.getResponseCode() != 200) return null;
+        DisjuntorCircuito disjuntor = mTransporte.getDisjuntor();
+        if (!disjuntor.permitirPedido()) {
+            throw new IOException(MSG_CIRCUITO_ABERTO);
+        }//if
 
-        BufferedReader reader = new BufferedReader(
-            new InputStreamReader(conn.getInputStream())
-        );
-        StringBuilder resposta = new StringBuilder();
-        String linha;
-        while ((linha = reader.readLine()) != null) {
-            resposta.append(linha);
-        }//while
-        reader.close();
+        mMetricas.contarPedido();
+        try {
+            HttpResponse<InputStream> resposta = mTransporte.enviar(pCaminho, pTimeout);
+            // Latência de lotes e streams não entra no timeout adaptativo
+            registarResposta(disjuntor, resposta.statusCode(), -1);
+            mMetricas.registarCabecalhos(pInicioNanos, resposta);
+            return resposta;
+        } catch (Exception e) {
+            registarErro(disjuntor, e, pTimeout);
+            throw e;
+        }//catch
+    }//enviarProtegido
 
-        return resposta.toString();
-    }//fazerRequisicao
+    // Um timeout também ensina o timeout adaptativo (ver DisjuntorCircuito)
+    private static void registarErro(DisjuntorCircuito pDisjuntor, Throwable pErro, Duration pTimeout) {
+        Throwable causa = pErro instanceof CompletionException && pErro.getCause() != null
+            ? pErro.getCause() : pErro;
+        if (causa instanceof HttpTimeoutException) {
+            pDisjuntor.registarTimeout(pTimeout);
+        } else {
+            pDisjuntor.registarFalha();
+        }//else
+    }//registarErro
 
-    private String extrairValor(String pJson, String pChave) {
-        String busca = "\"" + pChave + "\":";
-        int inicio = pJson.indexOf(busca);
-        if (inicio == -1) return "N/A";
+    /**
+     * Um erro da aplicação (ex: ticker inexistente -> 500 com "erro") não é
+     * uma falha da API; só gateway/serviço indisponível conta como falha.
+     */
+    private static void registarResposta(DisjuntorCircuito pDisjuntor, int pEstado, long pLatenciaNanos) {
+        if (pEstado == 502 || pEstado == 503 || pEstado == 504) {
+            pDisjuntor.registarFalha();
+        } else {
+            pDisjuntor.registarSucesso(pLatenciaNanos);
+        }//else
+    }//registarResposta
 
-        inicio += busca.length();
-        if (pJson.charAt(inicio) == '"') inicio++;
+    /**
+     * Pede um lote à rota /cotacoes e entrega cada cotação ao destino
+     * à medida que é lida.
+     *
+     * @return false se o servidor não respondeu com sucesso
+     */
+    private boolean fazerRequisicaoLote(
+        Collection<String> pTickers,
+        Consumer<DescodificadorCotacoes.Cotacao> pDestino
+    ) throws Exception {
+        // Um lote demora mais do que um pedido individual no servidor
+        long inicio = System.nanoTime();
+        try {
+            HttpResponse<InputStream> resposta = enviarProtegido(
+                CAMINHO_LOTE + codificar(String.join(",", pTickers)), Duration.ofMillis(TIMEOUT_MS * 4), inicio);
 
-        int fim = pJson.indexOf(",", inicio);
-        if (fim == -1) fim = pJson.indexOf("}", inicio);
+            try (MetricasApi.FluxoMedido corpo = mMetricas.medir(resposta.body())) {
+                if (resposta.statusCode() != 200) {
+                    mMetricas.registarErro();
+                    return false;
+                }//if
+                long inicioCorpo = System.nanoTime();
+                new DescodificadorCotacoes().descodificar(corpo, pDestino);
+                mMetricas.registarCorpo(corpo, inicioCorpo);
+            }//try
+        } catch (Exception e) {
+            mMetricas.registarErro(e);
+            throw e;
+        }//catch
 
-        return pJson.substring(inicio, fim).replace("\"", "").trim();
-    }//extrairValor
+        mMetricas.registarFim(inicio);
+        return true;
+    }//fazerRequisicaoLote
 
-    private double extrairDouble(String pJson, String pChave) {
-        try {
-            return Double.parseDouble(extrairValor(pJson, pChave));
-        } catch (Exception e) { 
-            return 0.0; 
-        }//catch
-    }//extrairDouble
+    /**
+     * Constrói o Ativo a partir de uma cotação descodificada.
+     * Se pTipo for null, usa a detecção automática da Factory.
+     */
+    private Ativo criarAtivoDeCotacao(
+        DescodificadorCotacoes.Cotacao pCotacao,
+        String pTicker,
+        TipoAtivo pTipo
+    ) throws IOException {
+        if (pCotacao.temErro()) {
+            throw new IOException("Erro ao buscar " + pTicker + ": " + pCotacao.getErro());
+        }//if
 
-    private long extrairLong(String pJson, String pChave) {
-        try {
-            String val = extrairValor(pJson, pChave);
-            if (val.contains(".")) val = val.substring(0, val.indexOf("."));
-            return Long.parseLong(val);
-        } catch (Exception e) { 
-            return 0L; 
-        }//catch
-    }//extrairLong
+        String nome = nomeOuDefeito(pCotacao);
+        if (pTipo == null) {
+            return FabricaAtivos.criarAtivoAuto(
+                pTicker, nome, pCotacao.getPreco(), pCotacao.getVariacao(), pCotacao.getVolume());
+        }//if
+        return FabricaAtivos.criarAtivo(
+            pTipo, pTicker, nome, pCotacao.getPreco(), pCotacao.getVariacao(), pCotacao.getVolume());
+    }//criarAtivoDeCotacao
+
+    private static String codificar(String pTexto) {
+        return URLEncoder.encode(pTexto, StandardCharsets.UTF_8);
+    }//codificar
+
+    private static String nomeOuDefeito(DescodificadorCotacoes.Cotacao pCotacao) {
+        return pCotacao.getNome() != null ? pCotacao.getNome() : "N/A";
+    }//nomeOuDefeito
+
+    //--------------------------------------------------
+    // Getters
+    //--------------------------------------------------
+    public TransporteHttp getTransporte() { return mTransporte; }
+
+    /**
+     * Fotografia das métricas deste cliente (latências por fase,
+     * pedidos, erros, timeouts e bytes recebidos).
+     */
+    public MetricasApi.Instantaneo obterMetricas() {
+        return mMetricas.instantaneo(mTransporte.getDisjuntor().getRecusados());
+    }//obterMetricas
 
 }//classe ClienteApi
@@ -0,0 +1,304 @@
+// ClienteApiComCache.java
+package sistemacotacoes.api;
+
+import sistemacotacoes.modelo.Ativo;
+import sistemacotacoes.enums.TipoAtivo;
+import sistemacotacoes.fabrica.FabricaAtivos;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache de cotações à frente de um ClienteApi.
+ *
+ * - Chave: ticker normalizado (maiúsculas, sem espaços)
+ * - Validade (TTL) configurável
+ * - Capacidade limitada com expulsão LRU (menos usado recentemente)
+ * - Stale-while-revalidate: durante a janela de tolerância, uma entrada
+ *   expirada é servida na mesma e atualizada em segundo plano
+ *
+ * Cada acerto devolve uma cópia nova do ativo em cache (FabricaAtivos.copiar):
+ * quem a recebe pode alterá-la ou pô-la numa carteira sem afetar os outros.
+ *
+ * Demonstra: DECORATOR (é um ClienteApi e envolve outro ClienteApi),
+ * por isso pode substituir o cliente original sem alterar quem o usa.
+ * Não tem transporte nem métricas próprios: usa os da origem.
+ */
+public class ClienteApiComCache extends ClienteApi {
+
+    public static final int CAPACIDADE_POR_DEFEITO = 500;
+    public static final long TTL_POR_DEFEITO_MS = 30_000;
+    public static final long JANELA_OBSOLETO_POR_DEFEITO_MS = 5 * 60_000;
+
+    private final ClienteApi mOrigem;
+    private final int mCapacidade;
+    private final long mTtlNanos;
+    private final long mJanelaObsoletoNanos;
+    private final LinkedHashMap<String, Entrada> mEntradas;
+
+    // Contadores (lidos sem bloquear)
+    private final AtomicLong mAcertos = new AtomicLong();
+    private final AtomicLong mAcertosObsoletos = new AtomicLong();
+    private final AtomicLong mFalhas = new AtomicLong();
+    private final AtomicLong mExpulsoes = new AtomicLong();
+    private final AtomicLong mRevalidacoes = new AtomicLong();
+
+    //--------------------------------------------------
+    // Entrada da cache
+    //--------------------------------------------------
+    private static class Entrada {
+        final Ativo mAtivo;
+        final long mObtidoEm;
+        boolean mARevalidar;
+
+        Entrada(Ativo pAtivo, long pObtidoEm) {
+            this.mAtivo = pAtivo;
+            this.mObtidoEm = pObtidoEm;
+        }//construtor Entrada
+    }//Entrada
+
+    //--------------------------------------------------
+    // Construtores
+    //--------------------------------------------------
+    public ClienteApiComCache(ClienteApi pOrigem) {
+        this(pOrigem, CAPACIDADE_POR_DEFEITO, TTL_POR_DEFEITO_MS, JANELA_OBSOLETO_POR_DEFEITO_MS);
+    }//construtor ClienteApiComCache
+
+    public ClienteApiComCache(
+        ClienteApi pOrigem,
+        int pCapacidade,
+        long pTtlMs,
+        long pJanelaObsoletoMs
+    ) {
+        super(pOrigem);
+        if (pCapacidade < 1) {
+            throw new IllegalArgumentException("Capacidade inválida: " + pCapacidade);
+        }//if
+        this.mOrigem = pOrigem;
+        this.mCapacidade = pCapacidade;
+        this.mTtlNanos = TimeUnit.MILLISECONDS.toNanos(pTtlMs);
+        this.mJanelaObsoletoNanos = TimeUnit.MILLISECONDS.toNanos(pJanelaObsoletoMs);
+
+        // accessOrder = true -> a iteração começa no menos usado recentemente
+        this.mEntradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> pMaisAntiga) {
+                if (size() > mCapacidade) {
+                    mExpulsoes.incrementAndGet();
+                    return true;
+                }//if
+                return false;
+            }//removeEldestEntry
+        };
+    }//construtor ClienteApiComCache
+
+    //--------------------------------------------------
+    // Buscas (mesma interface que ClienteApi)
+    //--------------------------------------------------
+    @Override
+    public Ativo buscarAtivo(String pTicker, TipoAtivo pTipo) {
+        String chave = normalizar(pTicker);
+        Ativo emCache = consultar(chave, pTipo);
+        if (emCache != null) return emCache;
+
+        Ativo ativo = mOrigem.buscarAtivo(chave, pTipo);
+        guardar(chave, ativo);
+        return ativo;
+    }//buscarAtivo
+
+    @Override
+    public Ativo buscarAtivoAuto(String pTicker) {
+        String chave = normalizar(pTicker);
+        Ativo emCache = consultar(chave, null);
+        if (emCache != null) return emCache;
+
+        Ativo ativo = mOrigem.buscarAtivoAuto(chave);
+        guardar(chave, ativo);
+        return ativo;
+    }//buscarAtivoAuto
+
+    @Override
+    public CompletableFuture<Ativo> buscarAtivoAsync(String pTicker, TipoAtivo pTipo) {
+        String chave = normalizar(pTicker);
+        Ativo emCache = consultar(chave, pTipo);
+        if (emCache != null) return CompletableFuture.completedFuture(emCache);
+
+        return mOrigem.buscarAtivoAsync(chave, pTipo)
+            .thenApply(ativo -> {
+                guardar(chave, ativo);
+                return ativo;
+            });
+    }//buscarAtivoAsync
+
+    /**
+     * Em lote, só os tickers que não estão em cache seguem para a API.
+     */
+    @Override
+    public Map<String, Ativo> buscarAtivos(Collection<String> pTickers) {
+        Map<String, Ativo> resultado = new LinkedHashMap<>();
+        List<String> emFalta = new ArrayList<>();
+
+        for (String t : pTickers) {
+            if (t == null || t.trim().isEmpty()) continue;
+            String chave = normalizar(t);
+            Ativo emCache = consultar(chave, null);
+            if (emCache != null) {
+                resultado.put(chave, emCache);
+            } else {
+                // Reservar a posição para manter a ordem pedida
+                resultado.put(chave, null);
+                emFalta.add(chave);
+            }//else
+        }//for
+
+        if (!emFalta.isEmpty()) {
+            Map<String, Ativo> obtidos = mOrigem.buscarAtivos(emFalta);
+            for (Map.Entry<String, Ativo> e : obtidos.entrySet()) {
+                guardar(e.getKey(), e.getValue());
+                resultado.put(e.getKey(), e.getValue());
+            }//for
+        }//if
+
+        resultado.values().removeIf(a -> a == null);
+        return resultado;
+    }//buscarAtivos
+
+    @Override
+    public boolean apiDisponivel() {
+        return mOrigem.apiDisponivel();
+    }//apiDisponivel
+
+    // O stream é o da origem: é ela quem faz os pedidos
+    @Override
+    public Subscricao subscrever(Set<String> pTickers, OuvinteCotacoes pOuvinte) {
+        return mOrigem.subscrever(pTickers, pOuvinte);
+    }//subscrever
+
+    // Os acertos da cache não são cotações novas: só a origem regista
+    @Override
+    public void definirRegisto(OuvinteCotacoes pRegisto) {
+        mOrigem.definirRegisto(pRegisto);
+    }//definirRegisto
+
+    //--------------------------------------------------
+    // Gestão da Cache
+    //--------------------------------------------------
+
+    /**
+     * Devolve uma cópia do ativo em cache (fresco ou dentro da janela de
+     * tolerância) ou null se for preciso ir à API. Conta acertos e falhas.
+     */
+    private Ativo consultar(String pChave, TipoAtivo pTipo) {
+        long agora = System.nanoTime();
+        Entrada entrada;
+        boolean revalidar = false;
+
+        synchronized (mEntradas) {
+            entrada = mEntradas.get(pChave);
+
+            // Pedido de um tipo diferente do que está em cache = falha
+            if (entrada == null || (pTipo != null && entrada.mAtivo.obterTipo() != pTipo)) {
+                mFalhas.incrementAndGet();
+                return null;
+            }//if
+
+            long idade = agora - entrada.mObtidoEm;
+            if (idade > mTtlNanos + mJanelaObsoletoNanos) {
+                mEntradas.remove(pChave);
+                mFalhas.incrementAndGet();
+                return null;
+            }//if
+
+            if (idade > mTtlNanos) {
+                mAcertosObsoletos.incrementAndGet();
+                if (!entrada.mARevalidar) {
+                    entrada.mARevalidar = true;
+                    revalidar = true;
+                }//if
+            } else {
+                mAcertos.incrementAndGet();
+            }//else
+        }//synchronized
+
+        if (revalidar) revalidar(pChave, entrada);
+        return FabricaAtivos.copiar(entrada.mAtivo);
+    }//consultar
+
+    /**
+     * Atualiza uma entrada obsoleta em segundo plano.
+     */
+    private void revalidar(String pChave, Entrada pEntrada) {
+        mRevalidacoes.incrementAndGet();
+        mOrigem.buscarAtivoAsync(pChave, pEntrada.mAtivo.obterTipo())
+            .whenComplete((ativo, erro) -> {
+                if (erro == null && ativo != null) {
+                    guardar(pChave, ativo);
+                } else {
+                    // Permite nova tentativa no próximo acesso
+                    synchronized (mEntradas) {
+                        pEntrada.mARevalidar = false;
+                    }//synchronized
+                }//else
+            });
+    }//revalidar
+
+    private void guardar(String pChave, Ativo pAtivo) {
+        if (pAtivo == null) return;  // Erros não ficam em cache
+        // Cópia própria: quem pediu fica com o original e pode alterá-lo
+        Entrada entrada = new Entrada(FabricaAtivos.copiar(pAtivo), System.nanoTime());
+        synchronized (mEntradas) {
+            mEntradas.put(pChave, entrada);
+        }//synchronized
+    }//guardar
+
+    public void invalidar(String pTicker) {
+        synchronized (mEntradas) {
+            mEntradas.remove(normalizar(pTicker));
+        }//synchronized
+    }//invalidar
+
+    public void limpar() {
+        synchronized (mEntradas) {
+            mEntradas.clear();
+        }//synchronized
+    }//limpar
+
+    private static String normalizar(String pTicker) {
+        return pTicker.trim().toUpperCase();
+    }//normalizar
+
+    //--------------------------------------------------
+    // Getters (estatísticas)
+    //--------------------------------------------------
+    public long getAcertos() { return mAcertos.get(); }
+    public long getAcertosObsoletos() { return mAcertosObsoletos.get(); }
+    public long getFalhas() { return mFalhas.get(); }
+    public long getExpulsoes() { return mExpulsoes.get(); }
+    public long getRevalidacoes() { return mRevalidacoes.get(); }
+    public int getCapacidade() { return mCapacidade; }
+
+    public int getTamanho() {
+        synchronized (mEntradas) {
+            return mEntradas.size();
+        }//synchronized
+    }//getTamanho
+
+    //--------------------------------------------------
+    // toString
+    //--------------------------------------------------
+    @Override
+    public String toString() {
+        return String.format(
+            "Cache[%d/%d entradas, acertos=%d, obsoletos=%d, falhas=%d, expulsões=%d, revalidações=%d]",
+            getTamanho(), mCapacidade, getAcertos(), getAcertosObsoletos(),
+            getFalhas(), getExpulsoes(), getRevalidacoes()
+        );
+    }//toString
+
+}//classe ClienteApiComCache
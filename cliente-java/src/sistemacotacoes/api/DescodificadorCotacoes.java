@@ -0,0 +1,575 @@
+// DescodificadorCotacoes.java
+package sistemacotacoes.api;
+
+import sistemacotacoes.util.ConversorDecimal;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Leitor de JSON de cotações numa só passagem, byte a byte, diretamente
+ * sobre o InputStream da resposta HTTP.
+ *
+ * - Aceita um objeto ({...}) ou um array de objetos ([{...}, ...])
+ * - Números convertidos a partir dos bytes, sem Strings intermédias
+ * - Strings respeitam escapes (\" \\ \\uXXXX) e UTF-8, por isso vírgulas
+ *   ou chavetas dentro do nome já não partem a leitura
+ * - Campos desconhecidos são ignorados
+ *
+ * Uma instância reutiliza os seus buffers e a Cotacao entregue ao destino,
+ * por isso não deve ser partilhada entre threads.
+ */
+public class DescodificadorCotacoes {
+
+    private static final int TAMANHO_BUFFER = 8192;
+
+    // Campos reconhecidos (comparados byte a byte, sem criar Strings)
+    private static final int CAMPO_DESCONHECIDO = 0;
+    private static final int CAMPO_TICKER = 1;
+    private static final int CAMPO_NOME = 2;
+    private static final int CAMPO_PRECO = 3;
+    private static final int CAMPO_VARIACAO = 4;
+    private static final int CAMPO_VOLUME = 5;
+    private static final int CAMPO_ERRO = 6;
+
+    private static final byte[][] NOMES_CAMPOS = {
+        null,
+        "ticker".getBytes(StandardCharsets.US_ASCII),
+        "nome".getBytes(StandardCharsets.US_ASCII),
+        "preco".getBytes(StandardCharsets.US_ASCII),
+        "variacao".getBytes(StandardCharsets.US_ASCII),
+        "volume".getBytes(StandardCharsets.US_ASCII),
+        "erro".getBytes(StandardCharsets.US_ASCII)
+    };
+
+    //--------------------------------------------------
+    // Cotação descodificada (reutilizada entre objetos)
+    //--------------------------------------------------
+    public static class Cotacao {
+        private String mTicker;
+        private String mNome;
+        private double mPreco;
+        private double mVariacao;
+        private long mVolume;
+        private String mErro;
+
+        void limpar() {
+            mTicker = null;
+            mNome = null;
+            mPreco = 0.0;
+            mVariacao = 0.0;
+            mVolume = 0L;
+            mErro = null;
+        }//limpar
+
+        public String getTicker() { return mTicker; }
+        public String getNome() { return mNome; }
+        public double getPreco() { return mPreco; }
+        public double getVariacao() { return mVariacao; }
+        public long getVolume() { return mVolume; }
+        public String getErro() { return mErro; }
+        public boolean temErro() { return mErro != null; }
+    }//Cotacao
+
+    // Estado de leitura
+    private final byte[] mBuffer = new byte[TAMANHO_BUFFER];
+    private InputStream mEntrada;
+    private int mPos;
+    private int mLimite;
+    private long mConsumidos;
+
+    private final Cotacao mCotacao = new Cotacao();
+
+    // Área de trabalho para chaves, textos e números
+    private final byte[] mChave = new byte[16];
+    private int mTamChave;
+    private char[] mTexto = new char[64];
+    private int mTamTexto;
+    private char[] mNumero = new char[32];
+    private int mTamNumero;
+
+    // Resultado da última leitura de número
+    private boolean mNegativo;
+    private long mMantissa;
+    private int mExpoente;
+    private boolean mInteiro;
+    private boolean mTruncado;
+    private boolean mNulo;
+
+    //--------------------------------------------------
+    // API pública
+    //--------------------------------------------------
+
+    /**
+     * Lê um objeto ou um array de objetos e entrega cada cotação ao destino.
+     * A Cotacao entregue é reutilizada: o destino deve copiar o que precisar.
+     *
+     * @return número de cotações lidas
+     */
+    public int descodificar(InputStream pEntrada, Consumer<Cotacao> pDestino) throws IOException {
+        iniciar(pEntrada);
+        saltarEspacos();
+        int c = ler();
+
+        if (c == '{') {
+            lerObjeto();
+            pDestino.accept(mCotacao);
+            return 1;
+        }//if
+
+        if (c != '[') throw erro("esperado '{' ou '['", c);
+
+        int contador = 0;
+        saltarEspacos();
+        if (espreitar() == ']') {
+            ler();
+            return 0;
+        }//if
+
+        while (true) {
+            saltarEspacos();
+            c = ler();
+            if (c != '{') throw erro("esperado '{'", c);
+            lerObjeto();
+            pDestino.accept(mCotacao);
+            contador++;
+
+            saltarEspacos();
+            c = ler();
+            if (c == ']') return contador;
+            if (c != ',') throw erro("esperado ',' ou ']'", c);
+        }//while
+    }//descodificar
+
+    /**
+     * Lê um único objeto. A Cotacao devolvida pertence a este descodificador.
+     */
+    public Cotacao descodificarUma(InputStream pEntrada) throws IOException {
+        iniciar(pEntrada);
+        saltarEspacos();
+        int c = ler();
+        if (c != '{') throw erro("esperado '{'", c);
+        lerObjeto();
+        return mCotacao;
+    }//descodificarUma
+
+    /**
+     * Total de bytes consumidos na última descodificação.
+     */
+    public long getBytesLidos() { return mConsumidos + mPos; }
+
+    //--------------------------------------------------
+    // Estrutura JSON
+    //--------------------------------------------------
+    private void lerObjeto() throws IOException {
+        mCotacao.limpar();
+        saltarEspacos();
+        if (espreitar() == '}') {
+            ler();
+            return;
+        }//if
+
+        while (true) {
+            saltarEspacos();
+            int c = ler();
+            if (c != '"') throw erro("esperado nome de campo", c);
+            int campo = lerChave();
+
+            saltarEspacos();
+            c = ler();
+            if (c != ':') throw erro("esperado ':'", c);
+            saltarEspacos();
+
+            switch (campo) {
+                case CAMPO_TICKER: mCotacao.mTicker = lerTextoOuNull(); break;
+                case CAMPO_NOME: mCotacao.mNome = lerTextoOuNull(); break;
+                case CAMPO_ERRO: mCotacao.mErro = lerTextoOuNull(); break;
+                case CAMPO_PRECO: mCotacao.mPreco = lerDouble(); break;
+                case CAMPO_VARIACAO: mCotacao.mVariacao = lerDouble(); break;
+                case CAMPO_VOLUME: mCotacao.mVolume = lerLong(); break;
+                default: saltarValor();
+            }//switch
+
+            saltarEspacos();
+            c = ler();
+            if (c == '}') return;
+            if (c != ',') throw erro("esperado ',' ou '}'", c);
+        }//while
+    }//lerObjeto
+
+    /**
+     * Lê o nome de um campo (já depois da aspa inicial) e identifica-o.
+     */
+    private int lerChave() throws IOException {
+        mTamChave = 0;
+        boolean cabe = true;
+        int c;
+        while ((c = ler()) != '"') {
+            if (c == -1) throw erro("fim inesperado", c);
+            if (c == '\\') {
+                ler();           // nomes de campo conhecidos não têm escapes
+                cabe = false;
+                continue;
+            }//if
+            if (mTamChave < mChave.length) {
+                mChave[mTamChave++] = (byte) c;
+            } else {
+                cabe = false;
+            }//else
+        }//while
+        if (!cabe) return CAMPO_DESCONHECIDO;
+
+        for (int campo = 1; campo < NOMES_CAMPOS.length; campo++) {
+            byte[] nome = NOMES_CAMPOS[campo];
+            if (nome.length != mTamChave) continue;
+            int i = 0;
+            while (i < mTamChave && nome[i] == mChave[i]) i++;
+            if (i == mTamChave) return campo;
+        }//for
+        return CAMPO_DESCONHECIDO;
+    }//lerChave
+
+    /**
+     * Salta qualquer valor JSON (string, número, literal, objeto ou array).
+     */
+    private void saltarValor() throws IOException {
+        int profundidade = 0;
+        do {
+            int c = espreitar();
+            if (c == -1) throw erro("fim inesperado", c);
+
+            if (c == '"') {
+                ler();
+                saltarTexto();
+            } else if (c == '{' || c == '[') {
+                ler();
+                profundidade++;
+            } else if (c == '}' || c == ']') {
+                if (profundidade == 0) return;  // fim do objeto que nos contém
+                ler();
+                profundidade--;
+            } else if (c == ',' && profundidade == 0) {
+                return;
+            } else {
+                ler();
+            }//else
+        } while (profundidade > 0 || !fimDeValor(espreitar()));
+    }//saltarValor
+
+    private static boolean fimDeValor(int pC) {
+        return pC == ',' || pC == '}' || pC == ']' || pC == -1
+            || pC == ' ' || pC == '\t' || pC == '\n' || pC == '\r';
+    }//fimDeValor
+
+    //--------------------------------------------------
+    // Strings
+    //--------------------------------------------------
+    private String lerTextoOuNull() throws IOException {
+        int c = espreitar();
+        if (c != '"') {
+            // null (ou outro tipo inesperado) -> sem valor
+            saltarValor();
+            return null;
+        }//if
+        ler();
+        lerTexto();
+        return new String(mTexto, 0, mTamTexto);
+    }//lerTextoOuNull
+
+    /**
+     * Lê o conteúdo de uma string (depois da aspa inicial) para mTexto,
+     * tratando escapes JSON e sequências UTF-8.
+     */
+    private void lerTexto() throws IOException {
+        mTamTexto = 0;
+        while (true) {
+            int c = ler();
+            if (c == -1) throw erro("string não terminada", c);
+            if (c == '"') return;
+
+            if (c == '\\') {
+                int e = ler();
+                switch (e) {
+                    case '"': case '\\': case '/': acrescentar((char) e); break;
+                    case 'b': acrescentar('\b'); break;
+                    case 'f': acrescentar('\f'); break;
+                    case 'n': acrescentar('\n'); break;
+                    case 'r': acrescentar('\r'); break;
+                    case 't': acrescentar('\t'); break;
+                    case 'u': acrescentar((char) lerHex4()); break;
+                    default: throw erro("escape inválido", e);
+                }//switch
+            } else if (c < 0x80) {
+                acrescentar((char) c);
+            } else {
+                lerUtf8(c);
+            }//else
+        }//while
+    }//lerTexto
+
+    private void saltarTexto() throws IOException {
+        int c;
+        while ((c = ler()) != '"') {
+            if (c == -1) throw erro("string não terminada", c);
+            if (c == '\\') ler();
+        }//while
+    }//saltarTexto
+
+    private int lerHex4() throws IOException {
+        int valor = 0;
+        for (int i = 0; i < 4; i++) {
+            int c = ler();
+            int d = Character.digit(c, 16);
+            if (d < 0) throw erro("escape \\u inválido", c);
+            valor = (valor << 4) | d;
+        }//for
+        return valor;
+    }//lerHex4
+
+    /**
+     * Descodifica uma sequência UTF-8 de 2 a 4 bytes cujo primeiro byte é pPrimeiro.
+     */
+    private void lerUtf8(int pPrimeiro) throws IOException {
+        int extra;
+        int ponto;
+        if ((pPrimeiro & 0xE0) == 0xC0) {
+            extra = 1;
+            ponto = pPrimeiro & 0x1F;
+        } else if ((pPrimeiro & 0xF0) == 0xE0) {
+            extra = 2;
+            ponto = pPrimeiro & 0x0F;
+        } else if ((pPrimeiro & 0xF8) == 0xF0) {
+            extra = 3;
+            ponto = pPrimeiro & 0x07;
+        } else {
+            acrescentar('�');
+            return;
+        }//else
+
+        for (int i = 0; i < extra; i++) {
+            int c = espreitar();
+            if ((c & 0xC0) != 0x80) {
+                acrescentar('�');
+                return;
+            }//if
+            ler();
+            ponto = (ponto << 6) | (c & 0x3F);
+        }//for
+
+        if (Character.isBmpCodePoint(ponto)) {
+            acrescentar((char) ponto);
+        } else if (Character.isValidCodePoint(ponto)) {
+            acrescentar(Character.highSurrogate(ponto));
+            acrescentar(Character.lowSurrogate(ponto));
+        } else {
+            acrescentar('�');
+        }//else
+    }//lerUtf8
+
+    private void acrescentar(char pC) {
+        if (mTamTexto == mTexto.length) {
+            mTexto = Arrays.copyOf(mTexto, mTexto.length * 2);
+        }//if
+        mTexto[mTamTexto++] = pC;
+    }//acrescentar
+
+    //--------------------------------------------------
+    // Números
+    //--------------------------------------------------
+    private double lerDouble() throws IOException {
+        lerNumero();
+        if (mNulo) return 0.0;
+
+        double valor = mTruncado
+            ? Double.NaN
+            : ConversorDecimal.paraDouble(mNegativo, mMantissa, mExpoente);
+        if (Double.isNaN(valor)) {
+            // Caso raro (muitos dígitos ou expoente grande): conversão exata via JDK
+            valor = Double.parseDouble(new String(mNumero, 0, mTamNumero));
+        }//if
+        return valor;
+    }//lerDouble
+
+    private long lerLong() throws IOException {
+        lerNumero();
+        if (mNulo) return 0L;
+        if (mInteiro && !mTruncado) {
+            // Mais de DIGITOS_MAX dígitos, todos zeros no fim: mantissa x 10^expoente
+            long valor = mMantissa;
+            int expoente = mExpoente;
+            while (expoente > 0 && valor <= Long.MAX_VALUE / 10) {
+                valor *= 10;
+                expoente--;
+            }//while
+            if (expoente == 0) return mNegativo ? -valor : valor;
+        }//if
+
+        // Volume com casas decimais, expoente ou mais de DIGITOS_MAX dígitos: parte inteira
+        double valor = mTruncado
+            ? Double.NaN
+            : ConversorDecimal.paraDouble(mNegativo, mMantissa, mExpoente);
+        if (Double.isNaN(valor)) {
+            valor = Double.parseDouble(new String(mNumero, 0, mTamNumero));
+        }//if
+        return (long) valor;
+    }//lerLong
+
+    /**
+     * Lê um número JSON para mantissa + expoente decimal.
+     * Guarda também os caracteres para o caso (raro) de ser preciso
+     * recorrer a Double.parseDouble.
+     */
+    private void lerNumero() throws IOException {
+        mTamNumero = 0;
+        mNegativo = false;
+        mMantissa = 0;
+        mExpoente = 0;
+        mInteiro = true;
+        mTruncado = false;
+        mNulo = false;
+
+        int c = espreitar();
+        if (c == 'n' || c == '"' || c == 't' || c == 'f') {
+            // null, string ou booleano onde se esperava número -> 0
+            saltarValor();
+            mNulo = true;
+            return;
+        }//if
+
+        if (c == '-') {
+            mNegativo = true;
+            guardarNumero(ler());
+        }//if
+
+        c = espreitar();
+        if (c == 'N' || c == 'I') {
+            // NaN, Infinity e -Infinity (o jsonify do Flask escreve-os assim):
+            // ficam como "truncados" para serem convertidos por Double.parseDouble
+            lerLiteralNumerico();
+            return;
+        }//if
+
+        int significativos = 0;
+        int d;
+
+        // Parte inteira
+        while ((d = ConversorDecimal.digito(espreitar())) >= 0) {
+            guardarNumero(ler());
+            if (significativos < ConversorDecimal.DIGITOS_MAX) {
+                if (mMantissa != 0 || d != 0) significativos++;
+                mMantissa = mMantissa * 10 + d;
+            } else {
+                mExpoente++;
+                if (d != 0) mTruncado = true;
+            }//else
+        }//while
+
+        // Parte decimal
+        if (espreitar() == '.') {
+            mInteiro = false;
+            guardarNumero(ler());
+            while ((d = ConversorDecimal.digito(espreitar())) >= 0) {
+                guardarNumero(ler());
+                if (significativos < ConversorDecimal.DIGITOS_MAX) {
+                    if (mMantissa != 0 || d != 0) significativos++;
+                    mMantissa = mMantissa * 10 + d;
+                    mExpoente--;
+                } else if (d != 0) {
+                    mTruncado = true;
+                }//else if
+            }//while
+        }//if
+
+        // Expoente
+        c = espreitar();
+        if (c == 'e' || c == 'E') {
+            mInteiro = false;
+            guardarNumero(ler());
+            boolean expNegativo = false;
+            c = espreitar();
+            if (c == '+' || c == '-') {
+                expNegativo = c == '-';
+                guardarNumero(ler());
+            }//if
+            int exp = 0;
+            while ((d = ConversorDecimal.digito(espreitar())) >= 0) {
+                guardarNumero(ler());
+                if (exp < 10_000) exp = exp * 10 + d;
+            }//while
+            mExpoente += expNegativo ? -exp : exp;
+        }//if
+
+        if (mTamNumero == 0 || (mTamNumero == 1 && mNegativo)) {
+            throw erro("número inválido", espreitar());
+        }//if
+    }//lerNumero
+
+    private void lerLiteralNumerico() throws IOException {
+        int c;
+        while ((c = espreitar()) >= 'A' && c <= 'z') {
+            guardarNumero(ler());
+        }//while
+        String literal = new String(mNumero, 0, mTamNumero);
+        if (!literal.equals("NaN") && !literal.equals("Infinity") && !literal.equals("-Infinity")) {
+            throw erro("número inválido", c);
+        }//if
+        mInteiro = false;
+        mTruncado = true;
+    }//lerLiteralNumerico
+
+    private void guardarNumero(int pC) {
+        if (mTamNumero == mNumero.length) {
+            mNumero = Arrays.copyOf(mNumero, mNumero.length * 2);
+        }//if
+        mNumero[mTamNumero++] = (char) pC;
+    }//guardarNumero
+
+    //--------------------------------------------------
+    // Leitura do stream (com buffer próprio)
+    //--------------------------------------------------
+    private void iniciar(InputStream pEntrada) {
+        mEntrada = pEntrada;
+        mPos = 0;
+        mLimite = 0;
+        mConsumidos = 0;
+    }//iniciar
+
+    private int ler() throws IOException {
+        if (mPos == mLimite && !encher()) return -1;
+        return mBuffer[mPos++] & 0xFF;
+    }//ler
+
+    private int espreitar() throws IOException {
+        if (mPos == mLimite && !encher()) return -1;
+        return mBuffer[mPos] & 0xFF;
+    }//espreitar
+
+    private boolean encher() throws IOException {
+        mConsumidos += mLimite;
+        mPos = 0;
+        mLimite = 0;
+        int n;
+        do {
+            n = mEntrada.read(mBuffer, 0, mBuffer.length);
+        } while (n == 0);
+        if (n < 0) return false;
+        mLimite = n;
+        return true;
+    }//encher
+
+    private void saltarEspacos() throws IOException {
+        int c;
+        while ((c = espreitar()) == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            mPos++;
+        }//while
+    }//saltarEspacos
+
+    private IOException erro(String pMotivo, int pC) {
+        String encontrado = pC == -1 ? "fim dos dados" : "'" + (char) pC + "'";
+        return new IOException(String.format(
+            "JSON inválido: %s, encontrado %s (byte %d)", pMotivo, encontrado, getBytesLidos()));
+    }//erro
+
+}//classe DescodificadorCotacoes
@@ -0,0 +1,226 @@
+// DisjuntorCircuito.java
+package sistemacotacoes.api;
+
+import sistemacotacoes.enums.EstadoCircuito;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Disjuntor (circuit breaker) com timeout adaptativo para os pedidos à API.
+ *
+ * - FECHADO: os pedidos passam; guarda-se o resultado dos últimos N pedidos.
+ *   Se a taxa de falhas passar o limiar, o circuito ABRE.
+ * - ABERTO: os pedidos são recusados de imediato (falha rápida) durante
+ *   o tempo de espera; depois passa a SEMI_ABERTO.
+ * - SEMI_ABERTO: deixa passar um único pedido de teste. Sucesso fecha
+ *   o circuito, falha volta a abri-lo.
+ *
+ * O timeout não é constante: é derivado do percentil 99 das latências
+ * recentes (com margem e limites), para que uma API lenta falhe depressa
+ * em vez de prender cada pedido durante o timeout máximo.
+ *
+ * Um pedido que esgota o timeout também é uma amostra (com o valor do
+ * timeout) e repõe o timeout máximo: se a API ficar mais lenta, o timeout
+ * volta a crescer em vez de fazer falhar todos os pedidos. O pedido de
+ * teste do estado SEMI_ABERTO usa sempre o timeout máximo.
+ */
+public class DisjuntorCircuito {
+
+    // Janela de resultados e regra de abertura
+    private static final int JANELA_RESULTADOS = 20;
+    private static final int MINIMO_PEDIDOS = 10;
+    private static final double LIMIAR_FALHAS = 0.5;
+    private static final long TEMPO_ABERTO_MS = 10_000;
+
+    // Timeout adaptativo
+    private static final int JANELA_LATENCIAS = 128;
+    private static final int MINIMO_AMOSTRAS = 20;
+    private static final double PERCENTIL = 0.99;
+    private static final double MARGEM = 2.0;
+    private static final long TIMEOUT_MINIMO_MS = 500;
+
+    private final long mTimeoutMaximoMs;
+
+    private EstadoCircuito mEstado = EstadoCircuito.FECHADO;
+    private long mAbertoDesde;
+    private boolean mTesteEmCurso;
+
+    // Últimos resultados (true = falha), em buffer circular
+    private final boolean[] mResultados = new boolean[JANELA_RESULTADOS];
+    private int mPosResultado;
+    private int mTotalResultados;
+    private int mFalhasNaJanela;
+
+    // Últimas latências (ms), em buffer circular
+    private final long[] mLatencias = new long[JANELA_LATENCIAS];
+    private int mPosLatencia;
+    private int mTotalLatencias;
+    private long mTimeoutAtualMs;
+    private int mAmostrasDesdeCalculo;
+
+    // Estatísticas
+    private long mRecusados;
+    private long mAberturas;
+
+    //--------------------------------------------------
+    // Construtor
+    //--------------------------------------------------
+    public DisjuntorCircuito(long pTimeoutMaximoMs) {
+        this.mTimeoutMaximoMs = pTimeoutMaximoMs;
+        this.mTimeoutAtualMs = pTimeoutMaximoMs;
+    }//construtor DisjuntorCircuito
+
+    //--------------------------------------------------
+    // Antes do pedido
+    //--------------------------------------------------
+
+    /**
+     * Indica se um pedido pode avançar. Se devolver true, o chamador
+     * tem de registar o resultado (registarSucesso ou registarFalha).
+     */
+    public synchronized boolean permitirPedido() {
+        switch (mEstado) {
+            case FECHADO:
+                return true;
+            case ABERTO:
+                if (System.currentTimeMillis() - mAbertoDesde < TEMPO_ABERTO_MS) {
+                    mRecusados++;
+                    return false;
+                }//if
+                mEstado = EstadoCircuito.SEMI_ABERTO;
+                mTesteEmCurso = true;
+                return true;
+            case SEMI_ABERTO:
+            default:
+                if (mTesteEmCurso) {
+                    mRecusados++;
+                    return false;
+                }//if
+                mTesteEmCurso = true;
+                return true;
+        }//switch
+    }//permitirPedido
+
+    /**
+     * Timeout a usar no próximo pedido: p99 das latências recentes × margem,
+     * entre TIMEOUT_MINIMO_MS e o timeout máximo (sempre o máximo no
+     * pedido de teste, para que um servidor mais lento consiga fechar o circuito).
+     */
+    public synchronized Duration obterTimeout() {
+        if (mEstado == EstadoCircuito.SEMI_ABERTO) return Duration.ofMillis(mTimeoutMaximoMs);
+        return Duration.ofMillis(mTimeoutAtualMs);
+    }//obterTimeout
+
+    //--------------------------------------------------
+    // Depois do pedido
+    //--------------------------------------------------
+    public synchronized void registarSucesso(long pLatenciaNanos) {
+        if (pLatenciaNanos >= 0) registarLatencia(pLatenciaNanos / 1_000_000);
+        registarResultado(false);
+
+        if (mEstado == EstadoCircuito.SEMI_ABERTO) {
+            fechar();
+        }//if
+    }//registarSucesso
+
+    /**
+     * Falha por timeout: conta como falha e como latência igual ao timeout
+     * usado, e o timeout volta ao máximo até haver amostras novas.
+     */
+    public synchronized void registarTimeout(Duration pTimeoutUsado) {
+        registarLatencia(pTimeoutUsado.toMillis());
+        mTimeoutAtualMs = mTimeoutMaximoMs;
+        mAmostrasDesdeCalculo = 0;
+        registarFalha();
+    }//registarTimeout
+
+    public synchronized void registarFalha() {
+        registarResultado(true);
+
+        if (mEstado == EstadoCircuito.SEMI_ABERTO) {
+            abrir();
+        } else if (mEstado == EstadoCircuito.FECHADO
+                && mTotalResultados >= MINIMO_PEDIDOS
+                && (double) mFalhasNaJanela / mTotalResultados >= LIMIAR_FALHAS) {
+            abrir();
+        }//else if
+    }//registarFalha
+
+    //--------------------------------------------------
+    // Transições
+    //--------------------------------------------------
+    private void abrir() {
+        mEstado = EstadoCircuito.ABERTO;
+        mAbertoDesde = System.currentTimeMillis();
+        mTesteEmCurso = false;
+        mAberturas++;
+    }//abrir
+
+    private void fechar() {
+        mEstado = EstadoCircuito.FECHADO;
+        mTesteEmCurso = false;
+        // Começar a contar de novo: as falhas antigas já não interessam
+        Arrays.fill(mResultados, false);
+        mPosResultado = 0;
+        mTotalResultados = 0;
+        mFalhasNaJanela = 0;
+    }//fechar
+
+    private void registarResultado(boolean pFalha) {
+        if (mTotalResultados == JANELA_RESULTADOS) {
+            // Sai o resultado mais antigo
+            if (mResultados[mPosResultado]) mFalhasNaJanela--;
+        } else {
+            mTotalResultados++;
+        }//else
+        mResultados[mPosResultado] = pFalha;
+        if (pFalha) mFalhasNaJanela++;
+        mPosResultado = (mPosResultado + 1) % JANELA_RESULTADOS;
+    }//registarResultado
+
+    private void registarLatencia(long pMs) {
+        mLatencias[mPosLatencia] = pMs;
+        mPosLatencia = (mPosLatencia + 1) % JANELA_LATENCIAS;
+        if (mTotalLatencias < JANELA_LATENCIAS) mTotalLatencias++;
+
+        // Recalcular o percentil de vez em quando (não a cada pedido)
+        if (mTotalLatencias >= MINIMO_AMOSTRAS && ++mAmostrasDesdeCalculo >= 10) {
+            mAmostrasDesdeCalculo = 0;
+            long[] ordenadas = Arrays.copyOf(mLatencias, mTotalLatencias);
+            Arrays.sort(ordenadas);
+            int indice = (int) Math.ceil(PERCENTIL * ordenadas.length) - 1;
+            long p99 = ordenadas[Math.max(0, indice)];
+            long timeout = (long) (p99 * MARGEM);
+            mTimeoutAtualMs = Math.max(TIMEOUT_MINIMO_MS, Math.min(mTimeoutMaximoMs, timeout));
+        }//if
+    }//registarLatencia
+
+    //--------------------------------------------------
+    // Getters
+    //--------------------------------------------------
+    public synchronized EstadoCircuito getEstado() {
+        // Um circuito aberto cujo tempo já passou está, na prática, semi-aberto
+        if (mEstado == EstadoCircuito.ABERTO
+                && System.currentTimeMillis() - mAbertoDesde >= TEMPO_ABERTO_MS) {
+            return EstadoCircuito.SEMI_ABERTO;
+        }//if
+        return mEstado;
+    }//getEstado
+
+    public synchronized long getRecusados() { return mRecusados; }
+    public synchronized long getAberturas() { return mAberturas; }
+
+    public synchronized double getTaxaFalhas() {
+        return mTotalResultados == 0 ? 0.0 : (double) mFalhasNaJanela / mTotalResultados;
+    }//getTaxaFalhas
+
+    //--------------------------------------------------
+    // toString
+    //--------------------------------------------------
+    @Override
+    public synchronized String toString() {
+        return String.format("Disjuntor[%s, falhas=%.0f%%, timeout=%dms, recusados=%d, aberturas=%d]",
+            getEstado(), getTaxaFalhas() * 100, mTimeoutAtualMs, mRecusados, mAberturas);
+    }//toString
+
+}//classe DisjuntorCircuito
@@ -0,0 +1,212 @@
+// MetricasApi.java
+package sistemacotacoes.api;
+
+import sistemacotacoes.enums.FasePedido;
+import sistemacotacoes.util.HistogramaLatencia;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas dos pedidos de um ClienteApi: histogramas de latência por fase
+ * (ver FasePedido) e contadores de pedidos, erros, timeouts e bytes.
+ *
+ * Tudo é registado sem locks (histogramas atómicos e LongAdder), para não
+ * atrasar os pedidos que estão a ser medidos. Para ler, pede-se uma
+ * fotografia imutável com instantaneo().
+ */
+public class MetricasApi {
+
+    // Criado no construtor e nunca alterado depois: leitura segura sem locks
+    private final Map<FasePedido, HistogramaLatencia> mHistogramas = new EnumMap<>(FasePedido.class);
+
+    // LongAdder: várias threads a incrementar não disputam a mesma variável
+    private final LongAdder mPedidos = new LongAdder();
+    private final LongAdder mErros = new LongAdder();
+    private final LongAdder mTimeouts = new LongAdder();
+    private final LongAdder mBytesRecebidos = new LongAdder();
+
+    private final long mInicioNanos = System.nanoTime();
+
+    //--------------------------------------------------
+    // Construtor
+    //--------------------------------------------------
+    public MetricasApi() {
+        for (FasePedido fase : FasePedido.values()) {
+            mHistogramas.put(fase, new HistogramaLatencia());
+        }//for
+    }//construtor MetricasApi
+
+    //--------------------------------------------------
+    // Registo (chamado pelo ClienteApi)
+    //--------------------------------------------------
+
+    /**
+     * Um pedido saiu para a rede (os recusados pelo disjuntor não contam).
+     */
+    void contarPedido() {
+        mPedidos.increment();
+    }//contarPedido
+
+    /**
+     * Cabeçalhos recebidos: separa a espera por ligação do resto do tempo.
+     *
+     * @param pInicioNanos System.nanoTime() antes de enviar o pedido
+     */
+    void registarCabecalhos(long pInicioNanos, HttpResponse<?> pResposta) {
+        long ateCabecalhos = System.nanoTime() - pInicioNanos;
+        long espera = TransporteHttp.esperaDe(pResposta);
+        registar(FasePedido.ESPERA_LIGACAO, espera);
+        registar(FasePedido.PRIMEIRO_BYTE, ateCabecalhos - espera);
+    }//registarCabecalhos
+
+    /**
+     * Corpo lido e descodificado. O tempo passado dentro de read() é
+     * leitura; o restante é descodificação.
+     *
+     * @param pInicioNanos System.nanoTime() antes de começar a ler o corpo
+     */
+    void registarCorpo(FluxoMedido pCorpo, long pInicioNanos) {
+        long leitura = pCorpo.getNanosLeitura();
+        registar(FasePedido.LEITURA_CORPO, leitura);
+        registar(FasePedido.DESCODIFICACAO, System.nanoTime() - pInicioNanos - leitura);
+    }//registarCorpo
+
+    void registarFim(long pInicioNanos) {
+        registar(FasePedido.TOTAL, System.nanoTime() - pInicioNanos);
+    }//registarFim
+
+    void registarErro() {
+        mErros.increment();
+    }//registarErro
+
+    void registarErro(Throwable pErro) {
+        mErros.increment();
+        for (Throwable t = pErro; t != null; t = t.getCause()) {
+            if (t instanceof HttpTimeoutException) {
+                mTimeouts.increment();
+                return;
+            }//if
+        }//for
+    }//registarErro
+
+    /**
+     * Embrulha o corpo de uma resposta para contar bytes e tempo de leitura.
+     */
+    FluxoMedido medir(InputStream pCorpo) {
+        return new FluxoMedido(pCorpo);
+    }//medir
+
+    private void registar(FasePedido pFase, long pNanos) {
+        mHistogramas.get(pFase).registar(pNanos);
+    }//registar
+
+    //--------------------------------------------------
+    // Fotografia
+    //--------------------------------------------------
+    public Instantaneo instantaneo(long pRecusadosDisjuntor) {
+        Map<FasePedido, HistogramaLatencia.Resumo> resumos = new EnumMap<>(FasePedido.class);
+        for (Map.Entry<FasePedido, HistogramaLatencia> e : mHistogramas.entrySet()) {
+            resumos.put(e.getKey(), e.getValue().resumir());
+        }//for
+        return new Instantaneo(
+            (System.nanoTime() - mInicioNanos) / 1e9,
+            mPedidos.sum(), mErros.sum(), mTimeouts.sum(), mBytesRecebidos.sum(),
+            pRecusadosDisjuntor, resumos
+        );
+    }//instantaneo
+
+    //--------------------------------------------------
+    // Corpo de resposta medido (usado por uma única thread)
+    //--------------------------------------------------
+    class FluxoMedido extends FilterInputStream {
+        private long mNanosLeitura;
+
+        private FluxoMedido(InputStream pOriginal) {
+            super(pOriginal);
+        }//construtor FluxoMedido
+
+        @Override
+        public int read() throws IOException {
+            long inicio = System.nanoTime();
+            int b = super.read();
+            mNanosLeitura += System.nanoTime() - inicio;
+            if (b >= 0) mBytesRecebidos.increment();
+            return b;
+        }//read
+
+        @Override
+        public int read(byte[] pBuffer, int pInicio, int pTamanho) throws IOException {
+            long inicio = System.nanoTime();
+            int lidos = super.read(pBuffer, pInicio, pTamanho);
+            mNanosLeitura += System.nanoTime() - inicio;
+            if (lidos > 0) mBytesRecebidos.add(lidos);
+            return lidos;
+        }//read
+
+        long getNanosLeitura() { return mNanosLeitura; }
+    }//classe FluxoMedido
+
+    //--------------------------------------------------
+    // Fotografia imutável das métricas
+    //--------------------------------------------------
+    public static class Instantaneo {
+        private final double mSegundos;
+        private final long mPedidos;
+        private final long mErros;
+        private final long mTimeouts;
+        private final long mBytesRecebidos;
+        private final long mRecusadosDisjuntor;
+        private final Map<FasePedido, HistogramaLatencia.Resumo> mResumos;
+
+        private Instantaneo(double pSegundos, long pPedidos, long pErros, long pTimeouts,
+                            long pBytesRecebidos, long pRecusadosDisjuntor,
+                            Map<FasePedido, HistogramaLatencia.Resumo> pResumos) {
+            this.mSegundos = pSegundos;
+            this.mPedidos = pPedidos;
+            this.mErros = pErros;
+            this.mTimeouts = pTimeouts;
+            this.mBytesRecebidos = pBytesRecebidos;
+            this.mRecusadosDisjuntor = pRecusadosDisjuntor;
+            this.mResumos = Collections.unmodifiableMap(pResumos);
+        }//construtor Instantaneo
+
+        public long getPedidos() { return mPedidos; }
+        public long getErros() { return mErros; }
+        public long getTimeouts() { return mTimeouts; }
+        public long getBytesRecebidos() { return mBytesRecebidos; }
+        public long getRecusadosDisjuntor() { return mRecusadosDisjuntor; }
+        public double getSegundos() { return mSegundos; }
+        public HistogramaLatencia.Resumo getResumo(FasePedido pFase) { return mResumos.get(pFase); }
+        public Map<FasePedido, HistogramaLatencia.Resumo> getResumos() { return mResumos; }
+
+        public double getPedidosPorSegundo() {
+            return mSegundos <= 0 ? 0.0 : mPedidos / mSegundos;
+        }//getPedidosPorSegundo
+
+        public double getKBPorSegundo() {
+            return mSegundos <= 0 ? 0.0 : mBytesRecebidos / 1024.0 / mSegundos;
+        }//getKBPorSegundo
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(
+                "Pedidos: %d (%.2f/s) | Erros: %d | Timeouts: %d | Recusados (disjuntor): %d%n",
+                mPedidos, getPedidosPorSegundo(), mErros, mTimeouts, mRecusadosDisjuntor));
+            sb.append(String.format("Recebido: %.1f KB (%.2f KB/s)%n",
+                mBytesRecebidos / 1024.0, getKBPorSegundo()));
+            for (Map.Entry<FasePedido, HistogramaLatencia.Resumo> e : mResumos.entrySet()) {
+                sb.append(String.format("  %-20s %s%n", e.getKey().getNome() + ":", e.getValue()));
+            }//for
+            return sb.toString();
+        }//toString
+    }//classe Instantaneo
+
+}//classe MetricasApi
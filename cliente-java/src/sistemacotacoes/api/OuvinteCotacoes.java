@@ -0,0 +1,18 @@
+// OuvinteCotacoes.java
+package sistemacotacoes.api;
+
+/**
+ * Interface para quem quer receber cotações enviadas pelo servidor
+ * (ver ClienteApi.subscrever).
+ *
+ * É uma interface funcional: aceita lambdas e referências a métodos,
+ * por exemplo api.subscrever(tickers, carteira::atualizarCotacao).
+ *
+ * Demonstra: INTERFACE FUNCIONAL + OBSERVER
+ */
+@FunctionalInterface
+public interface OuvinteCotacoes {
+
+    void aoReceberCotacao(String pTicker, double pPreco, double pVariacao, long pVolume);
+
+}//interface OuvinteCotacoes
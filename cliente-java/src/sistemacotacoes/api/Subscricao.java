@@ -0,0 +1,95 @@
+// Subscricao.java
+package sistemacotacoes.api;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Subscrição ativa de cotações em tempo real (devolvida por ClienteApi.subscrever).
+ * A leitura do stream corre numa thread própria até ser cancelada.
+ */
+public class Subscricao {
+
+    private final Set<String> mTickers;
+    private final AtomicLong mRecebidas = new AtomicLong();
+    private volatile boolean mCancelada;
+    private volatile boolean mLigada;
+    private volatile Closeable mStreamAtual;
+    private Thread mThread;
+
+    //--------------------------------------------------
+    // Construtor
+    //--------------------------------------------------
+    Subscricao(Set<String> pTickers) {
+        this.mTickers = Collections.unmodifiableSet(pTickers);
+    }//construtor Subscricao
+
+    //--------------------------------------------------
+    // Controlo (usado pelo ClienteApi)
+    //--------------------------------------------------
+    void iniciar(Thread pThread) {
+        this.mThread = pThread;
+    }//iniciar
+
+    /**
+     * @param pStream corpo da resposta HTTP: fechá-lo de outra thread
+     *                desbloqueia a leitura em curso (um Reader não serve,
+     *                porque o close espera que a leitura acabe)
+     */
+    void ligado(Closeable pStream) {
+        this.mStreamAtual = pStream;
+        this.mLigada = true;
+        // Cancelada entretanto: cancelar já não viu este stream
+        if (mCancelada) fecharStream();
+    }//ligado
+
+    void desligado() {
+        this.mLigada = false;
+        this.mStreamAtual = null;
+    }//desligado
+
+    void registarRecebida() {
+        mRecebidas.incrementAndGet();
+    }//registarRecebida
+
+    //--------------------------------------------------
+    // Cancelar
+    //--------------------------------------------------
+    /**
+     * Termina a subscrição: fecha o stream atual e para a thread de leitura.
+     */
+    public void cancelar() {
+        mCancelada = true;
+        fecharStream();
+        if (mThread != null) mThread.interrupt();
+    }//cancelar
+
+    private void fecharStream() {
+        Closeable stream = mStreamAtual;
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // A fechar de qualquer forma
+            }//catch
+        }//if
+    }//fecharStream
+
+    //--------------------------------------------------
+    // Getters
+    //--------------------------------------------------
+    public Set<String> getTickers() { return mTickers; }
+    public long getRecebidas() { return mRecebidas.get(); }
+    public boolean estaCancelada() { return mCancelada; }
+    public boolean estaLigada() { return mLigada; }
+
+    @Override
+    public String toString() {
+        return String.format("Subscricao[%d tickers, %s, %d cotações recebidas]",
+            mTickers.size(), mCancelada ? "cancelada" : (mLigada ? "ligada" : "a ligar"), getRecebidas());
+    }//toString
+
+}//classe Subscricao
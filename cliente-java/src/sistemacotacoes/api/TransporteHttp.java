@@ -0,0 +1,257 @@
+// TransporteHttp.java
+package sistemacotacoes.api;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Transporte HTTP partilhado por todos os ClienteApi.
+ *
+ * - Um único java.net.http.HttpClient para toda a aplicação: as ligações
+ *   ficam abertas (keep-alive) e são reutilizadas entre pedidos, e o
+ *   cliente negoceia HTTP/2 quando o servidor o suporta
+ * - Endereço base configurável (propriedade sistemacotacoes.api.url)
+ * - Máximo de ligações em uso por endereço (sistemacotacoes.api.maxLigacoes);
+ *   quem excede espera pela sua vez em vez de abrir mais ligações
+ * - Ligações inativas fecham ao fim de sistemacotacoes.api.inatividadeSeg
+ * - Métricas: pedidos ativos, capacidade livre e tempo de espera por ligação
+ *
+ * Cada endereço base tem uma única instância (ver obter).
+ */
+public class TransporteHttp {
+
+    public static final String URL_POR_DEFEITO = "http://localhost:5000";
+    public static final int MAX_LIGACOES_POR_DEFEITO = 32;
+    public static final int INATIVIDADE_POR_DEFEITO_SEG = 30;
+
+    // Timeout máximo de um pedido individual (o disjuntor pode usar menos)
+    public static final long TIMEOUT_MAXIMO_MS = 5000;
+
+    private static final String PROP_URL = "sistemacotacoes.api.url";
+    private static final String PROP_MAX_LIGACOES = "sistemacotacoes.api.maxLigacoes";
+    private static final String PROP_INATIVIDADE = "sistemacotacoes.api.inatividadeSeg";
+
+    // Uma virtual thread por pedido: bloquear à espera da rede é barato
+    static final ExecutorService EXECUTOR_VIRTUAL = Executors.newVirtualThreadPerTaskExecutor();
+
+    private static final HttpClient CLIENTE_HTTP = criarClienteHttp();
+
+    private static final Map<String, TransporteHttp> INSTANCIAS = new ConcurrentHashMap<>();
+
+    private final String mUrlBase;
+    private final int mMaxLigacoes;
+    private final Semaphore mLigacoes;
+
+    // Disjuntor partilhado por todos os clientes deste endereço
+    private final DisjuntorCircuito mDisjuntor = new DisjuntorCircuito(TIMEOUT_MAXIMO_MS);
+
+    // Métricas
+    private final AtomicInteger mAtivos = new AtomicInteger();
+    private final AtomicLong mTotalPedidos = new AtomicLong();
+    private final AtomicLong mEsperaTotalNanos = new AtomicLong();
+    private final AtomicLong mEsperaMaximaNanos = new AtomicLong();
+
+    //--------------------------------------------------
+    // Construtor e Instâncias Partilhadas
+    //--------------------------------------------------
+    private TransporteHttp(String pUrlBase, int pMaxLigacoes) {
+        this.mUrlBase = pUrlBase;
+        this.mMaxLigacoes = pMaxLigacoes;
+        this.mLigacoes = new Semaphore(pMaxLigacoes, true);
+    }//construtor TransporteHttp
+
+    /**
+     * Transporte para o endereço configurado (ou localhost:5000).
+     */
+    public static TransporteHttp obter() {
+        return obter(System.getProperty(PROP_URL, URL_POR_DEFEITO));
+    }//obter
+
+    /**
+     * Transporte partilhado para um endereço base (ex: http://servidor:5000).
+     */
+    public static TransporteHttp obter(String pUrlBase) {
+        String url = pUrlBase.endsWith("/")
+            ? pUrlBase.substring(0, pUrlBase.length() - 1)
+            : pUrlBase;
+        int maxLigacoes = Integer.getInteger(PROP_MAX_LIGACOES, MAX_LIGACOES_POR_DEFEITO);
+        return INSTANCIAS.computeIfAbsent(url, u -> new TransporteHttp(u, maxLigacoes));
+    }//obter
+
+    private static HttpClient criarClienteHttp() {
+        // Estas propriedades do JDK só são lidas na primeira utilização do
+        // HttpClient; não se sobrepõem a valores definidos na linha de comandos.
+        int inatividade = Integer.getInteger(PROP_INATIVIDADE, INATIVIDADE_POR_DEFEITO_SEG);
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout", String.valueOf(inatividade));
+        }//if
+        if (System.getProperty("jdk.httpclient.connectionPoolSize") == null) {
+            System.setProperty("jdk.httpclient.connectionPoolSize",
+                String.valueOf(Integer.getInteger(PROP_MAX_LIGACOES, MAX_LIGACOES_POR_DEFEITO)));
+        }//if
+
+        return HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .executor(EXECUTOR_VIRTUAL)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    }//criarClienteHttp
+
+    //--------------------------------------------------
+    // Envio de Pedidos
+    //--------------------------------------------------
+
+    /**
+     * Envia um GET e devolve a resposta com o corpo por ler.
+     * A ligação só é devolvida ao conjunto quando o corpo for fechado,
+     * por isso o chamador deve usar try-with-resources sobre body().
+     *
+     * @param pCaminho caminho e query (ex: /cotacao?ticker=AAPL)
+     */
+    public HttpResponse<InputStream> enviar(String pCaminho, Duration pTimeout)
+        throws IOException, InterruptedException {
+
+        long inicioEspera = System.nanoTime();
+        mLigacoes.acquire();
+        long espera = System.nanoTime() - inicioEspera;
+        registarEspera(espera);
+        mAtivos.incrementAndGet();
+        mTotalPedidos.incrementAndGet();
+
+        boolean entregue = false;
+        try {
+            HttpRequest pedido = HttpRequest.newBuilder(URI.create(mUrlBase + pCaminho))
+                .timeout(pTimeout)
+                .GET()
+                .build();
+            HttpResponse<InputStream> resposta =
+                CLIENTE_HTTP.send(pedido, HttpResponse.BodyHandlers.ofInputStream());
+            HttpResponse<InputStream> comLibertacao = new RespostaComLibertacao(resposta, espera);
+            entregue = true;
+            return comLibertacao;
+        } finally {
+            if (!entregue) libertar();
+        }//finally
+    }//enviar
+
+    /**
+     * Versão assíncrona de enviar, executada numa virtual thread.
+     */
+    public CompletableFuture<HttpResponse<InputStream>> enviarAsync(String pCaminho, Duration pTimeout) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return enviar(pCaminho, pTimeout);
+            } catch (IOException | InterruptedException e) {
+                throw new CompletionException(e);
+            }//catch
+        }, EXECUTOR_VIRTUAL);
+    }//enviarAsync
+
+    /**
+     * Tempo que o pedido esperou por uma ligação livre (0 se a resposta
+     * não veio deste transporte).
+     */
+    static long esperaDe(HttpResponse<?> pResposta) {
+        return pResposta instanceof TransporteHttp.RespostaComLibertacao r ? r.mEsperaNanos : 0;
+    }//esperaDe
+
+    private void libertar() {
+        mAtivos.decrementAndGet();
+        mLigacoes.release();
+    }//libertar
+
+    private void registarEspera(long pNanos) {
+        mEsperaTotalNanos.addAndGet(pNanos);
+        mEsperaMaximaNanos.accumulateAndGet(pNanos, Math::max);
+    }//registarEspera
+
+    //--------------------------------------------------
+    // Resposta cujo corpo liberta a ligação ao ser fechado
+    //--------------------------------------------------
+    private class RespostaComLibertacao implements HttpResponse<InputStream> {
+        private final HttpResponse<InputStream> mOriginal;
+        private final InputStream mCorpo;
+        private final long mEsperaNanos;
+
+        RespostaComLibertacao(HttpResponse<InputStream> pOriginal, long pEsperaNanos) {
+            this.mOriginal = pOriginal;
+            this.mEsperaNanos = pEsperaNanos;
+            this.mCorpo = new FilterInputStream(pOriginal.body()) {
+                // Cancelar uma subscrição e o try-with-resources podem fechar ao
+                // mesmo tempo: só o primeiro liberta a ligação
+                private final AtomicBoolean mFechado = new AtomicBoolean();
+
+                @Override
+                public void close() throws IOException {
+                    if (!mFechado.compareAndSet(false, true)) return;
+                    try {
+                        super.close();
+                    } finally {
+                        libertar();
+                    }//finally
+                }//close
+            };
+        }//construtor RespostaComLibertacao
+
+        @Override public int statusCode() { return mOriginal.statusCode(); }
+        @Override public HttpRequest request() { return mOriginal.request(); }
+        @Override public Optional<HttpResponse<InputStream>> previousResponse() { return mOriginal.previousResponse(); }
+        @Override public HttpHeaders headers() { return mOriginal.headers(); }
+        @Override public InputStream body() { return mCorpo; }
+        @Override public Optional<SSLSession> sslSession() { return mOriginal.sslSession(); }
+        @Override public URI uri() { return mOriginal.uri(); }
+        @Override public HttpClient.Version version() { return mOriginal.version(); }
+    }//RespostaComLibertacao
+
+    //--------------------------------------------------
+    // Getters (configuração e métricas)
+    //--------------------------------------------------
+    public String getUrlBase() { return mUrlBase; }
+    public int getMaxLigacoes() { return mMaxLigacoes; }
+    public DisjuntorCircuito getDisjuntor() { return mDisjuntor; }
+    public int getPedidosAtivos() { return mAtivos.get(); }
+    public int getCapacidadeLivre() { return mLigacoes.availablePermits(); }
+    public int getPedidosEmEspera() { return mLigacoes.getQueueLength(); }
+    public long getTotalPedidos() { return mTotalPedidos.get(); }
+
+    public double getEsperaMediaMs() {
+        long total = mTotalPedidos.get();
+        return total == 0 ? 0.0 : mEsperaTotalNanos.get() / 1e6 / total;
+    }//getEsperaMediaMs
+
+    public double getEsperaMaximaMs() {
+        return mEsperaMaximaNanos.get() / 1e6;
+    }//getEsperaMaximaMs
+
+    //--------------------------------------------------
+    // toString
+    //--------------------------------------------------
+    @Override
+    public String toString() {
+        return String.format(
+            "Transporte[%s, ativos=%d/%d, em espera=%d, pedidos=%d, espera média=%.2fms, máx=%.2fms]",
+            mUrlBase, getPedidosAtivos(), mMaxLigacoes, getPedidosEmEspera(),
+            getTotalPedidos(), getEsperaMediaMs(), getEsperaMaximaMs()
+        );
+    }//toString
+
+}//classe TransporteHttp
@@ -21,12 +21,14 @@ public enum CriterioOrdenacao {
     POR_RISCO_DESC(new ComparadorRisco().reversed());
 
     private final Comparator<Ativo> mComparador;
+    private final Comparator<Ativo> mComparadorEstavel;
 
     //--------------------------------------------------
     // Construtor do Enum
     //--------------------------------------------------
     CriterioOrdenacao(Comparator<Ativo> pComparador) {
         this.mComparador = pComparador;
+        this.mComparadorEstavel = pComparador.thenComparing(Ativo::getChave);
     }//construtor
 
     //--------------------------------------------------
@@ -36,6 +38,14 @@ public enum CriterioOrdenacao {
         return this.mComparador;
     }//getComparador
 
+    /**
+     * Comparador com desempate pelo ticker: dois ativos diferentes nunca
+     * são "iguais", o que permite procurar um ativo por pesquisa binária.
+     */
+    public Comparator<Ativo> getComparadorEstavel() {
+        return this.mComparadorEstavel;
+    }//getComparadorEstavel
+
     //--------------------------------------------------
     // Inner Classes - Comparadores
     //--------------------------------------------------
@@ -0,0 +1,36 @@
+// EstadoCircuito.java
+package sistemacotacoes.enums;
+
+/**
+ * Estados do disjuntor (circuit breaker) que protege os pedidos à API.
+ *
+ * Demonstra: ENUM (máquina de estados)
+ */
+public enum EstadoCircuito {
+    FECHADO("Fechado", "Pedidos passam normalmente"),
+    ABERTO("Aberto", "API com falhas: pedidos recusados de imediato"),
+    SEMI_ABERTO("Semi-aberto", "Um pedido de teste decide se o circuito fecha");
+
+    private final String mNome;
+    private final String mDescricao;
+
+    //--------------------------------------------------
+    // Construtor do enum
+    //--------------------------------------------------
+    EstadoCircuito(String pNome, String pDescricao) {
+        this.mNome = pNome;
+        this.mDescricao = pDescricao;
+    }//construtor EstadoCircuito
+
+    //--------------------------------------------------
+    // Getters
+    //--------------------------------------------------
+    public String getNome() { return mNome; }
+    public String getDescricao() { return mDescricao; }
+
+    @Override
+    public String toString() {
+        return mNome;
+    }//toString
+
+}//enum EstadoCircuito
@@ -0,0 +1,39 @@
+// FasePedido.java
+package sistemacotacoes.enums;
+
+/**
+ * Fases de um pedido à API em que o tempo é medido separadamente.
+ *
+ * O java.net.http não expõe o tempo de ligação isolado: fica incluído
+ * em PRIMEIRO_BYTE (ligação, envio e espera pelos cabeçalhos).
+ */
+public enum FasePedido {
+    ESPERA_LIGACAO("Espera por ligação", "Tempo na fila até haver ligação livre"),
+    PRIMEIRO_BYTE("Primeiro byte", "Ligação, envio e espera pelos cabeçalhos"),
+    LEITURA_CORPO("Leitura do corpo", "Tempo a ler bytes do corpo da resposta"),
+    DESCODIFICACAO("Descodificação", "Tempo a interpretar o JSON recebido"),
+    TOTAL("Total", "Do início do pedido até ao resultado");
+
+    private final String mNome;
+    private final String mDescricao;
+
+    //--------------------------------------------------
+    // Construtor do enum
+    //--------------------------------------------------
+    FasePedido(String pNome, String pDescricao) {
+        this.mNome = pNome;
+        this.mDescricao = pDescricao;
+    }//construtor FasePedido
+
+    //--------------------------------------------------
+    // Getters
+    //--------------------------------------------------
+    public String getNome() { return mNome; }
+    public String getDescricao() { return mDescricao; }
+
+    @Override
+    public String toString() {
+        return mNome;
+    }//toString
+
+}//enum FasePedido
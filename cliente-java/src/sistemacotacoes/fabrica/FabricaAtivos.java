@@ -38,6 +38,31 @@ public class FabricaAtivos {
         }//switch
     }//criarAtivo
 
+    //--------------------------------------------------
+    // Cópia independente
+    //--------------------------------------------------
+
+    /**
+     * Novo Ativo com a mesma cotação (e instante) de pOriginal, sem os
+     * seus ouvintes: alterar a cópia não altera o original.
+     */
+    public static Ativo copiar(Ativo pOriginal) {
+        Ativo.Cotacao cotacao = pOriginal.obterCotacao();
+        Ativo copia = criarAtivo(
+            pOriginal.obterTipo(),
+            pOriginal.getTicker(),
+            pOriginal.getNome(),
+            cotacao.getPreco(),
+            cotacao.getVariacao(),
+            cotacao.getVolume()
+        );
+        if (cotacao.getInstante() > 0) {
+            copia.atualizarCotacao(cotacao.getPreco(), cotacao.getVariacao(),
+                cotacao.getVolume(), cotacao.getInstante());
+        }//if
+        return copia;
+    }//copiar
+
     //--------------------------------------------------
     // Detecção Automática de Tipo
     //--------------------------------------------------
@@ -0,0 +1,163 @@
+// AgregadosCarteira.java
+package sistemacotacoes.gestao;
+
+import sistemacotacoes.modelo.Ativo;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Estatísticas da carteira mantidas à medida que ela muda, para que
+ * os resumos não tenham de percorrer todos os ativos.
+ *
+ * - Somas de preço, variação e risco: O(1) por alteração e por consulta
+ * - Ativos ordenados por risco (TreeSet): mais/menos arriscado em O(log n)
+ *
+ * Guarda os valores de cada ativo no momento em que foi incluído, para
+ * conseguir retirar exatamente o que somou, mesmo que o objeto Ativo
+ * tenha sido alterado entretanto.
+ *
+ * Uso interno da Carteira (não é thread-safe por si só).
+ */
+class AgregadosCarteira {
+
+    // Valores de um ativo tal como entraram nas somas
+    private static final class Registo {
+        final Ativo mAtivo;
+        final String mChave;
+        final double mPreco;
+        final double mVariacao;
+        final double mRisco;
+
+        Registo(Ativo pAtivo) {
+            this.mAtivo = pAtivo;
+            this.mChave = pAtivo.getChave();
+            this.mPreco = pAtivo.getPreco();
+            this.mVariacao = pAtivo.getVariacao();
+            this.mRisco = pAtivo.calcularRisco();
+        }//construtor Registo
+    }//classe Registo
+
+    // Desempate pela chave: dois ativos com o mesmo risco são elementos distintos.
+    // Escrito à mão (e com a chave no Registo): os empates são frequentes e
+    // cada comparação evita ir ao Ativo.
+    private static final Comparator<Registo> POR_RISCO = (pA, pB) -> {
+        int c = Double.compare(pA.mRisco, pB.mRisco);
+        return c != 0 ? c : pA.mChave.compareTo(pB.mChave);
+    };
+
+    private final Map<String, Registo> mRegistos = new HashMap<>();
+    private final TreeSet<Registo> mPorRisco = new TreeSet<>(POR_RISCO);
+
+    private final SomaCompensada mSomaPrecos = new SomaCompensada();
+    private final SomaCompensada mSomaVariacoes = new SomaCompensada();
+    private final SomaCompensada mSomaRiscos = new SomaCompensada();
+
+    //--------------------------------------------------
+    // Alterações
+    //--------------------------------------------------
+    void incluir(Ativo pAtivo) {
+        Registo novo = new Registo(pAtivo);
+        Registo antigo = mRegistos.put(pAtivo.getChave(), novo);
+        if (antigo != null) retirarDasSomas(antigo);
+
+        mSomaPrecos.somar(novo.mPreco);
+        mSomaVariacoes.somar(novo.mVariacao);
+        mSomaRiscos.somar(novo.mRisco);
+        mPorRisco.add(novo);
+    }//incluir
+
+    /**
+     * Inclui muitos ativos de uma vez (ex: carregar um ficheiro grande).
+     * Cada um entra na árvore normalmente, em O(log n); o ganho da carga
+     * em bloco está na Carteira (um só trinco e uma só publicação).
+     */
+    void incluirTodos(Collection<Ativo> pAtivos) {
+        for (Ativo a : pAtivos) {
+            incluir(a);
+        }//for
+    }//incluirTodos
+
+    void retirar(Ativo pAtivo) {
+        Registo antigo = mRegistos.remove(pAtivo.getChave());
+        if (antigo != null) retirarDasSomas(antigo);
+    }//retirar
+
+    private void retirarDasSomas(Registo pRegisto) {
+        mSomaPrecos.somar(-pRegisto.mPreco);
+        mSomaVariacoes.somar(-pRegisto.mVariacao);
+        mSomaRiscos.somar(-pRegisto.mRisco);
+        mPorRisco.remove(pRegisto);
+    }//retirarDasSomas
+
+    /**
+     * Volta a calcular tudo a partir dos ativos dados (O(n log n)).
+     */
+    void reconstruir(Iterable<Ativo> pAtivos) {
+        mRegistos.clear();
+        mPorRisco.clear();
+        mSomaPrecos.limpar();
+        mSomaVariacoes.limpar();
+        mSomaRiscos.limpar();
+        for (Ativo a : pAtivos) {
+            incluir(a);
+        }//for
+    }//reconstruir
+
+    //--------------------------------------------------
+    // Consultas
+    //--------------------------------------------------
+    int getQuantidade() { return mRegistos.size(); }
+
+    double getSomaPrecos() { return mSomaPrecos.valor(); }
+
+    double getMediaVariacoes() {
+        return mRegistos.isEmpty() ? 0.0 : mSomaVariacoes.valor() / mRegistos.size();
+    }//getMediaVariacoes
+
+    double getMediaRiscos() {
+        return mRegistos.isEmpty() ? 0.0 : mSomaRiscos.valor() / mRegistos.size();
+    }//getMediaRiscos
+
+    Ativo getMaisArriscado() {
+        return mPorRisco.isEmpty() ? null : mPorRisco.last().mAtivo;
+    }//getMaisArriscado
+
+    Ativo getMenosArriscado() {
+        return mPorRisco.isEmpty() ? null : mPorRisco.first().mAtivo;
+    }//getMenosArriscado
+
+    //--------------------------------------------------
+    // Soma com compensação de erro (Neumaier)
+    //--------------------------------------------------
+
+    /**
+     * Somar e subtrair milhares de vezes acumula erro de arredondamento;
+     * a compensação guarda a parte perdida em cada operação e mantém
+     * o resultado ao nível de uma soma feita de raiz.
+     */
+    private static final class SomaCompensada {
+        private double mSoma;
+        private double mCompensacao;
+
+        void somar(double pValor) {
+            double t = mSoma + pValor;
+            if (Math.abs(mSoma) >= Math.abs(pValor)) {
+                mCompensacao += (mSoma - t) + pValor;
+            } else {
+                mCompensacao += (pValor - t) + mSoma;
+            }//else
+            mSoma = t;
+        }//somar
+
+        double valor() { return mSoma + mCompensacao; }
+
+        void limpar() {
+            mSoma = 0.0;
+            mCompensacao = 0.0;
+        }//limpar
+    }//classe SomaCompensada
+
+}//classe AgregadosCarteira
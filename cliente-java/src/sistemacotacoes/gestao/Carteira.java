@@ -5,36 +5,89 @@ import sistemacotacoes.modelo.Ativo;
 import sistemacotacoes.enums.CriterioOrdenacao;
 import sistemacotacoes.enums.TipoAtivo;
 import sistemacotacoes.util.BoolEMensagem;
+import sistemacotacoes.modelo.OuvinteAtivo;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
 
 /**
  * Classe que gere uma coleção de ativos financeiros.
  * 
  * Demonstra: 
- * - COMPOSIÇÃO (contém List<Ativo>)
+ * - COMPOSIÇÃO (contém Map<String, Ativo>)
  * - USO DE COMPARATORS
  * - RETORNOS COMPOSTOS (BoolEMensagem)
+ *
+ * THREAD-SAFE: as alterações são feitas uma de cada vez (trinco) e cada
+ * uma publica uma fotografia imutável nova (ver Instantaneo). As leituras
+ * só leem a fotografia atual: sem trinco e sem cópia. Assim, as cotações
+ * podem ser atualizadas numa thread de fundo enquanto outra lista ou
+ * guarda a carteira.
+ *
+ * A carteira ouve os seus ativos (OuvinteAtivo): uma cotação atualizada
+ * no próprio Ativo chega às estatísticas e às listas ordenadas, mesmo que
+ * não passe por esta classe. Ordem dos trincos: primeiro o Ativo, depois
+ * a carteira (nunca o contrário). O trinco da carteira só é tido durante
+ * a alteração das listas e nunca o de duas carteiras ao mesmo tempo; os
+ * ouvintes da carteira (OuvinteCarteira) são avisados já sem ele.
  */
 public class Carteira {
     
-    private List<Ativo> mAtivos;
+    // Indexados pelo ticker normalizado (Ativo.getChave): quem altera sabe
+    // em tempo constante se um ativo pertence. LinkedHashMap mantém a ordem da carteira.
+    private Map<String, Ativo> mAtivos;
+    // Somas e ordem por risco, atualizadas a cada alteração (ver calcular*)
+    private final AgregadosCarteira mAgregados = new AgregadosCarteira();
+    // Registo atual de cada ativo: valores com que está nas vistas e nº de inserção
+    private final Map<String, VistasOrdenadas.Registo> mRegistos = new HashMap<>();
+    private long mProximaInsercao;
+    // Listas ordenadas por critério, mantidas a cada alteração (ver obterOrdenados)
+    private final VistasOrdenadas mVistas = new VistasOrdenadas();
+    // Listas imutáveis publicadas em cada fotografia (ver ListaPersistente):
+    // ordem da carteira, índice pelo ticker normalizado e partição por tipo
+    private ListaPersistente<Ativo> mOrdemCarteira = ListaPersistente.vazia();
+    private ListaPersistente<Ativo> mPorChave = ListaPersistente.vazia();
+    private final ListaPersistente<Ativo>[] mPorTipo = criarParticao();
+    // Ordem usada em listar/getAtivos (null = ordem de inserção)
+    private CriterioOrdenacao mCriterioAtual;
     private int mCapacidadeMaxima;
+
+    // Só quem altera a carteira usa o trinco; quem lê usa as fotografias.
+    // ReentrantLock: o ouvinte bloqueia-o num aviso e liberta-o no seguinte.
+    private final ReentrantLock mTrinco = new ReentrantLock();
+    private final Ouvinte mOuvinte = new Ouvinte();
+    // Interessados nas alterações (copiado a cada alteração; protegido pelo trinco)
+    private static final OuvinteCarteira[] SEM_OUVINTES = new OuvinteCarteira[0];
+    private OuvinteCarteira[] mOuvintes = SEM_OUVINTES;
+    // Avisos que falharam (o ouvinte lançou uma exceção): a alteração mantém-se
+    private volatile long mErrosOuvintes;
+    // Avisos por entregar, pela ordem das alterações (protegidos por mTrinco)
+    private final ArrayDeque<Aviso> mAvisos = new ArrayDeque<>();
+    // Só uma thread entrega avisos de cada vez: chegam pela ordem da fila
+    private final ReentrantLock mTrincoAvisos = new ReentrantLock();
+    private long mVersao;
+    // Estatísticas publicadas a cada alteração (custo O(log n))
+    private volatile Estatisticas mEstatisticas = Estatisticas.VAZIAS;
+    // Fotografia atual, substituída (nunca alterada) a cada alteração
+    private volatile Instantaneo mInstantaneo;
     private String mNome;
 
     //--------------------------------------------------
     // Construtores
     //--------------------------------------------------
     public Carteira() {
-        this.mAtivos = new ArrayList<>();
+        this.mAtivos = new LinkedHashMap<>();
         this.mCapacidadeMaxima = 50;  // Limite por defeito
         this.mNome = "Minha Carteira";
+        this.mInstantaneo = criarInstantaneo();
     }//construtor Carteira
 
     public Carteira(String pNome, int pCapacidade) {
-        this.mAtivos = new ArrayList<>();
+        this.mAtivos = new LinkedHashMap<>();
         this.mCapacidadeMaxima = pCapacidade;
         this.mNome = pNome;
+        this.mInstantaneo = criarInstantaneo();
     }//construtor Carteira
 
     //--------------------------------------------------
@@ -46,55 +99,469 @@ public class Carteira {
             return new BoolEMensagem(false, "Ativo inválido (null)");
         }//if
         
-        if (mAtivos.size() >= mCapacidadeMaxima) {
-            return new BoolEMensagem(false, 
-                String.format("Carteira cheia (%d/%d)", mAtivos.size(), mCapacidadeMaxima));
-        }//if
-        
-        if (mAtivos.contains(pAtivo)) {
-            return new BoolEMensagem(false, 
-                String.format("%s já existe na carteira", pAtivo.getTicker()));
-        }//if
-        
-        mAtivos.add(pAtivo);
+        // O ativo fica bloqueado até o ouvinte estar registado: nenhuma
+        // cotação lhe pode chegar entre a entrada nas somas e o registo
+        boolean avisos;
+        synchronized (pAtivo) {
+            mTrinco.lock();
+            try {
+                if (mAtivos.size() >= mCapacidadeMaxima) {
+                    return new BoolEMensagem(false, 
+                        String.format("Carteira cheia (%d/%d)", mAtivos.size(), mCapacidadeMaxima));
+                }//if
+                
+                if (mAtivos.containsKey(pAtivo.getChave())) {
+                    return new BoolEMensagem(false, 
+                        String.format("%s já existe na carteira", pAtivo.getTicker()));
+                }//if
+                
+                entrar(pAtivo);
+                mAgregados.incluir(pAtivo);
+                mVistas.inserir(mRegistos.get(pAtivo.getChave()));
+                mOrdemCarteira = mOrdemCarteira.inserir(mOrdemCarteira.tamanho(), pAtivo);
+                mPorChave = mPorChave.inserir(-(mPorChave.pesquisar(pAtivo, POR_CHAVE) + 1), pAtivo);
+                int tipo = pAtivo.obterTipo().ordinal();
+                mPorTipo[tipo] = mPorTipo[tipo].inserir(mPorTipo[tipo].tamanho(), pAtivo);
+                pAtivo.adicionarOuvinte(mOuvinte);
+                publicar(true);
+                avisos = avisar(o -> o.adicionado(this, pAtivo));
+            } finally {
+                mTrinco.unlock();
+            }//finally
+        }//synchronized
+        if (avisos) despacharAvisos();
         return new BoolEMensagem(true, 
             String.format("✅ %s adicionado com sucesso", pAtivo.getTicker()));
     }//adicionar
 
+    /**
+     * Adiciona muitos ativos de uma vez (ex: carregar um ficheiro grande).
+     * Um só trinco e uma só publicação; as listas (ordenadas, índice e
+     * partição) são construídas de novo de uma vez, em vez de cada ativo
+     * ser inserido em cada lista.
+     *
+     * @return quantos foram adicionados (os restantes já existiam ou não cabiam)
+     */
+    public int adicionarTodos(Collection<? extends Ativo> pAtivos) {
+        // Ouvinte registado antes de entrarem (fora do trinco, pela ordem
+        // Ativo -> Carteira): uma cotação que chegue entretanto ou é lida
+        // ao entrar ou é avisada depois. Enquanto não pertencem, é ignorada.
+        for (Ativo a : pAtivos) {
+            if (a != null) a.adicionarOuvinte(mOuvinte);
+        }//for
+
+        List<Ativo> rejeitados = new ArrayList<>();
+        List<Ativo> adicionados = new ArrayList<>(pAtivos.size());
+        boolean avisos = false;
+        mTrinco.lock();
+        try {
+            for (Ativo a : pAtivos) {
+                if (a == null) continue;
+                if (mAtivos.size() >= mCapacidadeMaxima || mAtivos.containsKey(a.getChave())) {
+                    rejeitados.add(a);
+                    continue;
+                }//if
+                entrar(a);
+                adicionados.add(a);
+            }//for
+            if (!adicionados.isEmpty()) {
+                mAgregados.incluirTodos(adicionados);
+                reconstruirListas();
+                publicar(true);
+                for (Ativo a : adicionados) avisos = avisar(o -> o.adicionado(this, a));
+            }//if
+        } finally {
+            mTrinco.unlock();
+        }//finally
+        if (avisos) despacharAvisos();
+
+        for (Ativo a : rejeitados) {
+            a.removerOuvinte(mOuvinte);
+        }//for
+        return adicionados.size();
+    }//adicionarTodos
+
     public BoolEMensagem remover(Ativo pAtivo) {
         if (pAtivo == null) {
             return new BoolEMensagem(false, "Ativo inválido (null)");
         }//if
         
-        if (!mAtivos.contains(pAtivo)) {
+        // O objeto guardado pode não ser pAtivo (mesmo ticker): é esse que se bloqueia
+        Ativo guardado = obterPorTicker(pAtivo.getChave());
+        if (guardado == null) {
             return new BoolEMensagem(false, 
                 String.format("%s não encontrado na carteira", pAtivo.getTicker()));
         }//if
+
+        boolean avisos;
+        synchronized (guardado) {
+            mTrinco.lock();
+            try {
+                // Pode ter sido removido entretanto por outra thread
+                if (mAtivos.get(guardado.getChave()) != guardado) {
+                    return new BoolEMensagem(false, 
+                        String.format("%s não encontrado na carteira", pAtivo.getTicker()));
+                }//if
+                // As posições nas listas pela ordem de inserção procuram-se
+                // antes de o registo (com o nº de inserção) sair
+                int tipo = guardado.obterTipo().ordinal();
+                mOrdemCarteira = mOrdemCarteira.remover(mOrdemCarteira.pesquisar(guardado, mPorInsercao));
+                mPorTipo[tipo] = mPorTipo[tipo].remover(mPorTipo[tipo].pesquisar(guardado, mPorInsercao));
+                mPorChave = mPorChave.remover(mPorChave.pesquisar(guardado, POR_CHAVE));
+                mVistas.retirar(mRegistos.remove(guardado.getChave()));
+                mAtivos.remove(guardado.getChave());
+                mAgregados.retirar(guardado);
+                guardado.removerOuvinte(mOuvinte);
+                publicar(true);
+                avisos = avisar(o -> o.removido(this, guardado));
+            } finally {
+                mTrinco.unlock();
+            }//finally
+        }//synchronized
+        if (avisos) despacharAvisos();
         
-        mAtivos.remove(pAtivo);
         return new BoolEMensagem(true, 
             String.format("🗑️ %s removido com sucesso", pAtivo.getTicker()));
     }//remover
 
     public BoolEMensagem removerPorTicker(String pTicker) {
-        Optional<Ativo> encontrado = mAtivos.stream()
-            .filter(a -> a.getTicker().equalsIgnoreCase(pTicker))
-            .findFirst();
+        Ativo encontrado = obterPorTicker(pTicker);
             
-        if (encontrado.isPresent()) {
-            return remover(encontrado.get());
+        if (encontrado != null) {
+            return remover(encontrado);
         }//if
         return new BoolEMensagem(false, pTicker + " não encontrado");
     }//removerPorTicker
 
+    /**
+     * Ativo com este ticker (sem distinguir maiúsculas), ou null.
+     * Pesquisa binária no índice da fotografia atual, sem trinco.
+     */
+    public Ativo obterPorTicker(String pTicker) {
+        if (pTicker == null) return null;
+        return mInstantaneo.obter(pTicker);
+    }//obterPorTicker
+
+    public boolean contem(String pTicker) {
+        return obterPorTicker(pTicker) != null;
+    }//contem
+
+    /**
+     * Atualiza a cotação do ativo com este ticker, no próprio objeto.
+     * Tem a assinatura de OuvinteCotacoes, por isso pode ser usado como
+     * destino de uma subscrição: api.subscrever(tickers, carteira::atualizarCotacao)
+     *
+     * @return true se o ticker existe na carteira
+     */
+    public boolean atualizarCotacao(String pTicker, double pPreco, double pVariacao, long pVolume) {
+        Ativo a = obterPorTicker(pTicker);
+        if (a == null) return false;
+        // O próprio ativo avisa a carteira (ver Ouvinte)
+        a.atualizarCotacao(pPreco, pVariacao, pVolume);
+        return true;
+    }//atualizarCotacao
+
+    /**
+     * Atualiza a cotação se não for mais antiga do que a atual do ativo.
+     *
+     * @param pInstante momento da cotação (ms desde 1970)
+     * @return false se o ticker não existe ou a cotação é obsoleta
+     */
+    public boolean atualizarCotacao(String pTicker, double pPreco, double pVariacao, long pVolume, long pInstante) {
+        Ativo a = obterPorTicker(pTicker);
+        if (a == null) return false;
+        return a.atualizarCotacao(pPreco, pVariacao, pVolume, pInstante);
+    }//atualizarCotacao
+
+    //--------------------------------------------------
+    // Composição (com o trinco)
+    //--------------------------------------------------
+    private static final Comparator<Ativo> POR_CHAVE = Comparator.comparing(Ativo::getChave);
+    // Só para ativos que ainda têm registo
+    private final Comparator<Ativo> mPorInsercao =
+        Comparator.comparingLong(a -> mRegistos.get(a.getChave()).mInsercao);
+
+    // Membro e registo; as listas publicadas ficam a cargo de quem chama
+    private void entrar(Ativo pAtivo) {
+        mAtivos.put(pAtivo.getChave(), pAtivo);
+        mRegistos.put(pAtivo.getChave(), new VistasOrdenadas.Registo(pAtivo, mProximaInsercao++));
+    }//entrar
+
+    /**
+     * Constrói de uma vez as listas publicadas e as vistas já pedidas,
+     * a partir de mAtivos e mRegistos: O(n log n).
+     */
+    private void reconstruirListas() {
+        List<Ativo> ordem = new ArrayList<>(mAtivos.values());
+        mOrdemCarteira = ListaPersistente.de(ordem);
+
+        List<List<Ativo>> porTipo = new ArrayList<>();
+        for (int t = 0; t < mPorTipo.length; t++) porTipo.add(new ArrayList<>());
+        for (Ativo a : ordem) porTipo.get(a.obterTipo().ordinal()).add(a);
+        for (int t = 0; t < mPorTipo.length; t++) mPorTipo[t] = ListaPersistente.de(porTipo.get(t));
+
+        ordem.sort(POR_CHAVE);
+        mPorChave = ListaPersistente.de(ordem);
+        mVistas.reconstruir(mRegistos.values());
+    }//reconstruirListas
+
+    //--------------------------------------------------
+    // Ouvinte dos ativos: mantém somas e vistas a cada cotação
+    //--------------------------------------------------
+    private class Ouvinte implements OuvinteAtivo {
+
+        @Override
+        public void antesDeAtualizar(Ativo pAtivo) {
+            // Nada a guardar: o registo do ativo em mRegistos ainda tem os
+            // valores antigos, e é por ele que se encontra nas vistas
+        }//antesDeAtualizar
+
+        @Override
+        public void depoisDeAtualizar(Ativo pAtivo) {
+            // Cópia da cotação nova antes do trinco (o ativo está bloqueado
+            // para escritas: os valores não mudam entretanto)
+            VistasOrdenadas.Registo novo = new VistasOrdenadas.Registo(pAtivo, 0);
+            boolean avisos;
+            mTrinco.lock();
+            try {
+                VistasOrdenadas.Registo antigo = mRegistos.get(pAtivo.getChave());
+                // Ainda a entrar (adicionarTodos) ou rejeitado: nada a atualizar
+                if (antigo == null || antigo.mAtivo != pAtivo) return;
+                novo = novo.comInsercao(antigo.mInsercao);
+                mRegistos.put(pAtivo.getChave(), novo);
+                mAgregados.incluir(pAtivo);  // substitui os valores antigos nas somas
+                // O registo antigo (valores de antes) diz onde o ativo está em cada vista
+                mVistas.substituir(antigo, novo, mRegistos.values());
+                // A composição não muda: só os valores e a ordem das vistas
+                publicar(false);
+                avisos = avisar(o -> o.cotacaoAtualizada(Carteira.this, pAtivo));
+            } finally {
+                mTrinco.unlock();
+            }//finally
+            if (avisos) despacharAvisos();
+        }//depoisDeAtualizar
+    }//classe Ouvinte
+
+    //--------------------------------------------------
+    // Ouvintes da carteira (ex: diário em disco)
+    //--------------------------------------------------
+
+    /**
+     * Passa a receber os avisos de adicionar, remover e cotações (ver
+     * OuvinteCarteira). Alterações anteriores não são avisadas.
+     */
+    public void adicionarOuvinte(OuvinteCarteira pOuvinte) {
+        mTrinco.lock();
+        try {
+            OuvinteCarteira[] novos = Arrays.copyOf(mOuvintes, mOuvintes.length + 1);
+            novos[mOuvintes.length] = pOuvinte;
+            mOuvintes = novos;
+        } finally {
+            mTrinco.unlock();
+        }//finally
+    }//adicionarOuvinte
+
+    public void removerOuvinte(OuvinteCarteira pOuvinte) {
+        mTrinco.lock();
+        try {
+            List<OuvinteCarteira> restantes = new ArrayList<>(Arrays.asList(mOuvintes));
+            if (restantes.remove(pOuvinte)) {
+                mOuvintes = restantes.toArray(SEM_OUVINTES);
+            }//if
+        } finally {
+            mTrinco.unlock();
+        }//finally
+    }//removerOuvinte
+
+    // Um aviso e os ouvintes que existiam quando a alteração foi feita
+    private static final class Aviso {
+        private final OuvinteCarteira[] mOuvintes;
+        private final Consumer<OuvinteCarteira> mAviso;
+
+        Aviso(OuvinteCarteira[] pOuvintes, Consumer<OuvinteCarteira> pAviso) {
+            this.mOuvintes = pOuvintes;
+            this.mAviso = pAviso;
+        }//construtor Aviso
+    }//classe Aviso
+
+    /**
+     * Põe o aviso na fila (com o trinco, logo pela ordem das alterações).
+     * Quem altera chama depois despacharAvisos, já sem o trinco.
+     *
+     * @return true se há ouvintes a avisar
+     */
+    private boolean avisar(Consumer<OuvinteCarteira> pAviso) {
+        if (mOuvintes.length == 0) return false;
+        mAvisos.add(new Aviso(mOuvintes, pAviso));
+        return true;
+    }//avisar
+
+    /**
+     * Entrega os avisos da fila, sem o trinco da carteira: um ouvinte
+     * lento não atrasa as alterações nem as leituras. Quem chega enquanto
+     * outra thread entrega espera por ela, por isso ao voltar o seu aviso
+     * já foi entregue. Um ouvinte que falhe não impede os outros nem
+     * desfaz a alteração: só conta em getErrosOuvintes.
+     */
+    private void despacharAvisos() {
+        mTrincoAvisos.lock();
+        try {
+            while (true) {
+                Aviso aviso;
+                mTrinco.lock();
+                try {
+                    aviso = mAvisos.poll();
+                } finally {
+                    mTrinco.unlock();
+                }//finally
+                if (aviso == null) return;
+
+                for (OuvinteCarteira o : aviso.mOuvintes) {
+                    try {
+                        aviso.mAviso.accept(o);
+                    } catch (RuntimeException e) {
+                        mErrosOuvintes++;
+                    }//catch
+                }//for
+            }//while
+        } finally {
+            mTrincoAvisos.unlock();
+        }//finally
+    }//despacharAvisos
+
     //--------------------------------------------------
     // Ordenações (usando Enum CriterioOrdenacao)
     //--------------------------------------------------
     
+    /**
+     * Passa a apresentar a carteira por este critério (listar, getAtivos).
+     * Não reordena nada: usa a vista já ordenada, que só é construída
+     * na primeira vez e depois mantida a cada alteração.
+     */
     public void ordenar(CriterioOrdenacao pCriterio) {
-        mAtivos.sort(pCriterio.getComparador());
+        mTrinco.lock();
+        try {
+            if (mCriterioAtual == pCriterio) return;
+            if (pCriterio != null && !mVistas.existe(pCriterio)) {
+                mVistas.construir(pCriterio, mRegistos.values());
+            }//if
+            mCriterioAtual = pCriterio;
+            publicar(true);
+        } finally {
+            mTrinco.unlock();
+        }//finally
     }//ordenar
 
+    /**
+     * Ativos ordenados pelo critério (lista só de leitura, sem cópia):
+     * a vista desse critério publicada na fotografia atual (ver
+     * VistasOrdenadas). Sem trinco, exceto na primeira vez que o critério
+     * é pedido (a vista é construída).
+     */
+    public List<Ativo> obterOrdenados(CriterioOrdenacao pCriterio) {
+        Instantaneo instantaneo = obterInstantaneo();
+        if (instantaneo.getCriterio() == pCriterio) {
+            return instantaneo.getAtivos();
+        }//if
+        return VistasOrdenadas.ativos(vistaPublicada(pCriterio));
+    }//obterOrdenados
+
+    /**
+     * Os pK primeiros ativos pelo critério (ex: POR_VARIACAO = maiores quedas),
+     * sem ordenar a carteira nem mudar a ordem atual: heap limitado, O(n log k).
+     */
+    public List<Ativo> obterTopN(CriterioOrdenacao pCriterio, int pK) {
+        return obterExtremos(pCriterio.getComparadorEstavel(), pK, false);
+    }//obterTopN
+
+    /**
+     * Os pK últimos ativos pelo critério, a começar pelo último.
+     */
+    public List<Ativo> obterUltimosN(CriterioOrdenacao pCriterio, int pK) {
+        return obterExtremos(pCriterio.getComparadorEstavel().reversed(), pK, false);
+    }//obterUltimosN
+
+    /**
+     * Como obterTopN, dividindo a carteira pelos núcleos quando é muito
+     * grande (a partir de SelecaoTopo.LIMIAR_PARALELO ativos).
+     */
+    public List<Ativo> obterTopNParalelo(CriterioOrdenacao pCriterio, int pK) {
+        return obterExtremos(pCriterio.getComparadorEstavel(), pK, true);
+    }//obterTopNParalelo
+
+    public List<Ativo> obterUltimosNParalelo(CriterioOrdenacao pCriterio, int pK) {
+        return obterExtremos(pCriterio.getComparadorEstavel().reversed(), pK, true);
+    }//obterUltimosNParalelo
+
+    private List<Ativo> obterExtremos(Comparator<Ativo> pOrdem, int pK, boolean pParalelo) {
+        // Sobre a fotografia: sem trinco e sem copiar a carteira
+        List<Ativo> ativos = vista();
+        List<Ativo> escolhidos = pParalelo
+            ? SelecaoTopo.selecionarParalelo(ativos, pOrdem, pK)
+            : SelecaoTopo.selecionar(ativos, pOrdem, pK);
+        return Collections.unmodifiableList(escolhidos);
+    }//obterExtremos
+
+    /**
+     * Ativos pela ordem atual (ver ordenar), sem cópia (lista só de leitura).
+     */
+    public List<Ativo> vista() {
+        return obterInstantaneo().getAtivos();
+    }//vista
+
+    //--------------------------------------------------
+    // Fotografias (leitura sem trinco)
+    //--------------------------------------------------
+
+    /**
+     * Fotografia atual da carteira: composição, ordem, índice, partição
+     * por tipo e vistas, imutáveis. É publicada por quem altera; ler é só
+     * ler um campo volatile, sem trinco e sem cópia.
+     */
+    public Instantaneo obterInstantaneo() {
+        return mInstantaneo;
+    }//obterInstantaneo
+
+    /**
+     * Chamado com o trinco, depois de cada alteração: publica estatísticas
+     * e uma fotografia novas. Custo O(log n) mais a cópia das tabelas de
+     * blocos das listas alteradas (ver ListaPersistente), nunca O(n).
+     *
+     * @param pComposicaoMudou true se mudaram os ativos ou a ordem de
+     *        apresentação (false: só cotações)
+     */
+    private void publicar(boolean pComposicaoMudou) {
+        mVersao++;
+        mEstatisticas = new Estatisticas(mVersao, mAgregados);
+        mInstantaneo = criarInstantaneo();
+    }//publicar
+
+    private Instantaneo criarInstantaneo() {
+        return new Instantaneo(mVersao, mCriterioAtual, mEstatisticas,
+            mOrdemCarteira, mPorChave, mPorTipo.clone(), mVistas.publicadas());
+    }//criarInstantaneo
+
+    /**
+     * Vista do critério na fotografia atual. Só a primeira vez que um
+     * critério é pedido se constrói a vista (com o trinco) e se publica
+     * uma fotografia que a inclui.
+     */
+    private ListaPersistente<VistasOrdenadas.Registo> vistaPublicada(CriterioOrdenacao pCriterio) {
+        ListaPersistente<VistasOrdenadas.Registo> vista = mInstantaneo.mVistas[pCriterio.ordinal()];
+        if (vista != null) return vista;
+
+        mTrinco.lock();
+        try {
+            if (!mVistas.existe(pCriterio)) {
+                mVistas.construir(pCriterio, mRegistos.values());
+                mInstantaneo = criarInstantaneo();  // mesma versão: os ativos não mudaram
+            }//if
+            return mVistas.obter(pCriterio);
+        } finally {
+            mTrinco.unlock();
+        }//finally
+    }//vistaPublicada
+
     public void ordenarPorPreco() {
         ordenar(CriterioOrdenacao.POR_PRECO_DESC);
     }//ordenarPorPreco
@@ -115,79 +582,229 @@ public class Carteira {
     // Filtros
     //--------------------------------------------------
     
+    // Índices: a partição por tipo e as vistas ordenadas (ver VistasOrdenadas),
+    // publicados em cada fotografia. Custo O(log n + k) em vez de percorrer
+    // tudo, sem trinco.
+
+    /**
+     * Ativos deste tipo, por ordem de inserção (só de leitura, sem cópia).
+     */
     public List<Ativo> filtrarPorTipo(TipoAtivo pTipo) {
-        return mAtivos.stream()
-            .filter(a -> a.obterTipo() == pTipo)
-            .collect(Collectors.toList());
+        return mInstantaneo.filtrarPorTipo(pTipo);
     }//filtrarPorTipo
 
+    /**
+     * Nova consulta que combina tipo, intervalos, ordem e limite numa só
+     * passagem (ver Consulta).
+     */
+    public Consulta consulta() {
+        return new Consulta(this);
+    }//consulta
+
+    // Intervalos fechados [pMinimo, pMaximo], por ordem crescente do valor
+
+    public List<Ativo> filtrarPorPreco(double pMinimo, double pMaximo) {
+        return filtrarIntervalo(CriterioOrdenacao.POR_PRECO, Ativo::getPreco, pMinimo, pMaximo);
+    }//filtrarPorPreco
+
+    public List<Ativo> filtrarPorVariacao(double pMinimo, double pMaximo) {
+        return filtrarIntervalo(CriterioOrdenacao.POR_VARIACAO, Ativo::getVariacao, pMinimo, pMaximo);
+    }//filtrarPorVariacao
+
+    public List<Ativo> filtrarPorVolume(long pMinimo, long pMaximo) {
+        return filtrarIntervalo(CriterioOrdenacao.POR_VOLUME, Ativo::getVolume, pMinimo, pMaximo);
+    }//filtrarPorVolume
+
+    public List<Ativo> filtrarPorRisco(double pMinimo, double pMaximo) {
+        return filtrarIntervalo(CriterioOrdenacao.POR_RISCO, Ativo::calcularRisco, pMinimo, pMaximo);
+    }//filtrarPorRisco
+
+    /**
+     * Variação acima de 3% (ver Ativo.estaEmAlta), pela ordem da carteira.
+     */
     public List<Ativo> filtrarEmAlta() {
-        return mAtivos.stream()
-            .filter(Ativo::estaEmAlta)
-            .collect(Collectors.toList());
+        return filtrarNaOrdemDaCarteira(Math.nextUp(3.0), Double.POSITIVE_INFINITY);
     }//filtrarEmAlta
 
+    /**
+     * Variação abaixo de -3% (ver Ativo.estaEmQueda), pela ordem da carteira.
+     */
     public List<Ativo> filtrarEmQueda() {
-        return mAtivos.stream()
-            .filter(Ativo::estaEmQueda)
-            .collect(Collectors.toList());
+        return filtrarNaOrdemDaCarteira(Double.NEGATIVE_INFINITY, Math.nextDown(-3.0));
     }//filtrarEmQueda
 
+    /**
+     * Intervalo de variação lido do índice (O(log n + k)) e depois posto
+     * pela ordem de inserção (O(k log k)), como antes dos índices.
+     */
+    private List<Ativo> filtrarNaOrdemDaCarteira(double pMinimo, double pMaximo) {
+        List<VistasOrdenadas.Registo> registos = VistasOrdenadas.intervalo(
+            vistaPublicada(CriterioOrdenacao.POR_VARIACAO), Ativo::getVariacao, pMinimo, pMaximo);
+        registos.sort(Comparator.comparingLong(r -> r.mInsercao));
+        return paraAtivos(registos);
+    }//filtrarNaOrdemDaCarteira
+
+    private List<Ativo> filtrarIntervalo(CriterioOrdenacao pCriterio, ToDoubleFunction<Ativo> pValor,
+                                         double pMinimo, double pMaximo) {
+        if (pMinimo > pMaximo) return new ArrayList<>();
+        return paraAtivos(VistasOrdenadas.intervalo(vistaPublicada(pCriterio), pValor, pMinimo, pMaximo));
+    }//filtrarIntervalo
+
+    private static List<Ativo> paraAtivos(List<VistasOrdenadas.Registo> pRegistos) {
+        List<Ativo> ativos = new ArrayList<>(pRegistos.size());
+        for (VistasOrdenadas.Registo r : pRegistos) {
+            ativos.add(r.mAtivo);
+        }//for
+        return ativos;
+    }//paraAtivos
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ListaPersistente<Ativo>[] criarParticao() {
+        ListaPersistente<Ativo>[] particao = new ListaPersistente[TipoAtivo.values().length];
+        Arrays.fill(particao, ListaPersistente.vazia());
+        return particao;
+    }//criarParticao
+
     //--------------------------------------------------
     // Estatísticas
     //--------------------------------------------------
     
+    // Mantidas incrementalmente e publicadas a cada alteração: leitura O(1)
+
     public double calcularValorTotal() {
-        return mAtivos.stream()
-            .mapToDouble(Ativo::getPreco)
-            .sum();
+        return mEstatisticas.getValorTotal();
     }//calcularValorTotal
 
     public double calcularRiscoMedio() {
-        if (mAtivos.isEmpty()) return 0.0;
-        return mAtivos.stream()
-            .mapToDouble(Ativo::calcularRisco)
-            .average()
-            .orElse(0.0);
+        return mEstatisticas.getRiscoMedio();
     }//calcularRiscoMedio
 
     public double calcularVariacaoMedia() {
-        if (mAtivos.isEmpty()) return 0.0;
-        return mAtivos.stream()
-            .mapToDouble(Ativo::getVariacao)
-            .average()
-            .orElse(0.0);
+        return mEstatisticas.getVariacaoMedia();
     }//calcularVariacaoMedia
 
     public Ativo obterMaisArriscado() {
-        return mAtivos.stream()
-            .max(Comparator.comparingDouble(Ativo::calcularRisco))
-            .orElse(null);
+        return mEstatisticas.getMaisArriscado();
     }//obterMaisArriscado
 
     public Ativo obterMenosArriscado() {
-        return mAtivos.stream()
-            .min(Comparator.comparingDouble(Ativo::calcularRisco))
-            .orElse(null);
+        return mEstatisticas.getMenosArriscado();
     }//obterMenosArriscado
 
+    public Estatisticas getEstatisticas() { return mEstatisticas; }
+
+    /**
+     * Recalcula as estatísticas e as vistas ordenadas de raiz. Necessário apenas se algum Ativo
+     * foi alterado sem passar por atualizarCotacao (que avisa a carteira).
+     */
+    public void recalcularAgregados() {
+        mTrinco.lock();
+        try {
+            mAgregados.reconstruir(mAtivos.values());
+            for (VistasOrdenadas.Registo r : new ArrayList<>(mRegistos.values())) {
+                mRegistos.put(r.mAtivo.getChave(), new VistasOrdenadas.Registo(r.mAtivo, r.mInsercao));
+            }//for
+            mVistas.reconstruir(mRegistos.values());
+            publicar(true);
+        } finally {
+            mTrinco.unlock();
+        }//finally
+    }//recalcularAgregados
+
+    /**
+     * Compara as estatísticas mantidas com as calculadas percorrendo
+     * todos os ativos (verificação de consistência). Percorre a carteira
+     * inteira: só para testes e diagnóstico no pacote, não para a aplicação.
+     */
+    BoolEMensagem verificarAgregados() {
+        mTrinco.lock();
+        try {
+            return verificarAgregadosComTrinco();
+        } finally {
+            mTrinco.unlock();
+        }//finally
+    }//verificarAgregados
+
+    private BoolEMensagem verificarAgregadosComTrinco() {
+        List<String> diferencas = new ArrayList<>();
+
+        double valorTotal = mAtivos.values().stream().mapToDouble(Ativo::getPreco).sum();
+        double riscoMedio = mAtivos.values().stream().mapToDouble(Ativo::calcularRisco).average().orElse(0.0);
+        double variacaoMedia = mAtivos.values().stream().mapToDouble(Ativo::getVariacao).average().orElse(0.0);
+        Ativo maisArriscado = mAtivos.values().stream()
+            .max(Comparator.comparingDouble(Ativo::calcularRisco)).orElse(null);
+        Ativo menosArriscado = mAtivos.values().stream()
+            .min(Comparator.comparingDouble(Ativo::calcularRisco)).orElse(null);
+
+        if (mAgregados.getQuantidade() != mAtivos.size()) diferencas.add("quantidade");
+        int naParticao = 0;
+        for (ListaPersistente<Ativo> doTipo : mPorTipo) naParticao += doTipo.tamanho();
+        if (naParticao != mAtivos.size()) diferencas.add("partição por tipo");
+        if (mOrdemCarteira.tamanho() != mAtivos.size()
+                || !mOrdemCarteira.comoLista().equals(new ArrayList<>(mAtivos.values()))) {
+            diferencas.add("ordem da carteira");
+        }//if
+        for (Ativo a : mAtivos.values()) {
+            if (mInstantaneo.obter(a.getChave()) != a) {
+                diferencas.add("índice por ticker");
+                break;
+            }//if
+        }//for
+        for (VistasOrdenadas.Registo r : mRegistos.values()) {
+            if (!r.atualizado()) {
+                diferencas.add("valores nas vistas");
+                break;
+            }//if
+        }//for
+        for (CriterioOrdenacao c : CriterioOrdenacao.values()) {
+            if (!mVistas.existe(c)) continue;
+            List<Ativo> ordenados = new ArrayList<>(mAtivos.values());
+            ordenados.sort(c.getComparadorEstavel());
+            if (!VistasOrdenadas.ativos(mVistas.obter(c)).equals(ordenados)) {
+                diferencas.add("vista " + c);
+            }//if
+        }//for
+        if (!quaseIgual(valorTotal, calcularValorTotal())) diferencas.add("valor total");
+        if (!quaseIgual(riscoMedio, calcularRiscoMedio())) diferencas.add("risco médio");
+        if (!quaseIgual(variacaoMedia, calcularVariacaoMedia())) diferencas.add("variação média");
+        // Em caso de empate pode ser outro ativo: compara-se o risco
+        if (!mesmoRisco(maisArriscado, obterMaisArriscado())) diferencas.add("mais arriscado");
+        if (!mesmoRisco(menosArriscado, obterMenosArriscado())) diferencas.add("menos arriscado");
+
+        if (diferencas.isEmpty()) {
+            return new BoolEMensagem(true, "Estatísticas consistentes (" + mAtivos.size() + " ativos)");
+        }//if
+        return new BoolEMensagem(false, "Estatísticas divergentes: " + String.join(", ", diferencas));
+    }//verificarAgregadosComTrinco
+
+    private static boolean quaseIgual(double pA, double pB) {
+        return Math.abs(pA - pB) <= 1e-9 * Math.max(1.0, Math.max(Math.abs(pA), Math.abs(pB)));
+    }//quaseIgual
+
+    private static boolean mesmoRisco(Ativo pA, Ativo pB) {
+        if (pA == null || pB == null) return pA == pB;
+        return quaseIgual(pA.calcularRisco(), pB.calcularRisco());
+    }//mesmoRisco
+
     //--------------------------------------------------
     // Listar e Exibir
     //--------------------------------------------------
     
     public void listar() {
+        // Uma única fotografia: contagem e linhas sempre coerentes
+        List<Ativo> ativos = vista();
         System.out.println("\n" + "═".repeat(80));
-        System.out.printf("  📊 %s (%d/%d ativos)\n", mNome, mAtivos.size(), mCapacidadeMaxima);
+        System.out.printf("  📊 %s (%d/%d ativos)\n", mNome, ativos.size(), mCapacidadeMaxima);
         System.out.println("═".repeat(80));
         
-        if (mAtivos.isEmpty()) {
+        if (ativos.isEmpty()) {
             System.out.println("  (Carteira vazia)");
         } else {
             System.out.printf("%-12s | %-6s | %-12s | %-8s | %-8s | %s\n",
                 "TICKER", "TIPO", "PREÇO", "VAR%", "RISCO", "RECOMENDAÇÃO");
             System.out.println("─".repeat(80));
             
-            for (Ativo a : mAtivos) {
+            for (Ativo a : ativos) {
                 System.out.printf("%-12s | %-6s | $%-11.2f | %+7.2f%% | %-8.2f | %s\n",
                     a.getTicker(),
                     a.obterTipo().getNome(),
@@ -203,12 +820,13 @@ public class Carteira {
     }//listar
 
     public void listarResumo() {
+        Estatisticas estatisticas = mEstatisticas;
         System.out.println("\n📈 RESUMO DA CARTEIRA:");
-        System.out.printf("  • Total de ativos: %d\n", mAtivos.size());
-        System.out.printf("  • Variação média: %+.2f%%\n", calcularVariacaoMedia());
-        System.out.printf("  • Risco médio: %.2f\n", calcularRiscoMedio());
+        System.out.printf("  • Total de ativos: %d\n", estatisticas.getQuantidade());
+        System.out.printf("  • Variação média: %+.2f%%\n", estatisticas.getVariacaoMedia());
+        System.out.printf("  • Risco médio: %.2f\n", estatisticas.getRiscoMedio());
         
-        Ativo maisArriscado = obterMaisArriscado();
+        Ativo maisArriscado = estatisticas.getMaisArriscado();
         if (maisArriscado != null) {
             System.out.printf("  • Mais arriscado: %s (Risco: %.2f)\n", 
                 maisArriscado.getTicker(), maisArriscado.calcularRisco());
@@ -218,12 +836,16 @@ public class Carteira {
     //--------------------------------------------------
     // Getters
     //--------------------------------------------------
-    public List<Ativo> getAtivos() { return new ArrayList<>(mAtivos); }
-    public int getQuantidade() { return mAtivos.size(); }
+    // getAtivos devolve a fotografia atual (só de leitura, sem cópia)
+    public List<Ativo> getAtivos() { return vista(); }
+    public CriterioOrdenacao getCriterioAtual() { return obterInstantaneo().getCriterio(); }
+    public long getVersao() { return mEstatisticas.getVersao(); }
+    public int getQuantidade() { return mEstatisticas.getQuantidade(); }
     public int getCapacidadeMaxima() { return mCapacidadeMaxima; }
+    public long getErrosOuvintes() { return mErrosOuvintes; }
     public String getNome() { return mNome; }
-    public boolean estaVazia() { return mAtivos.isEmpty(); }
-    public boolean estaCheia() { return mAtivos.size() >= mCapacidadeMaxima; }
+    public boolean estaVazia() { return getQuantidade() == 0; }
+    public boolean estaCheia() { return getQuantidade() >= mCapacidadeMaxima; }
 
     //--------------------------------------------------
     // toString
@@ -231,7 +853,103 @@ public class Carteira {
     @Override
     public String toString() {
         return String.format("Carteira[%s, %d/%d ativos]", 
-            mNome, mAtivos.size(), mCapacidadeMaxima);
+            mNome, getQuantidade(), mCapacidadeMaxima);
     }//toString
 
+    //--------------------------------------------------
+    // Fotografia imutável da composição
+    //--------------------------------------------------
+    /**
+     * Partilha com as fotografias anteriores tudo o que não mudou (ver
+     * ListaPersistente): criar uma não copia a carteira, e nada nela
+     * muda depois de publicada.
+     */
+    public static final class Instantaneo {
+        private final long mVersao;
+        private final CriterioOrdenacao mCriterio;
+        private final Estatisticas mEstatisticas;
+        private final ListaPersistente<Ativo> mOrdemCarteira;
+        private final ListaPersistente<Ativo> mPorChave;
+        private final ListaPersistente<Ativo>[] mPorTipo;
+        // Uma por critério (índice = ordinal); null = critério ainda não pedido
+        private final ListaPersistente<VistasOrdenadas.Registo>[] mVistas;
+        // Ordem de apresentação: a vista do critério, ou a ordem da carteira
+        private final List<Ativo> mAtivos;
+
+        private Instantaneo(long pVersao, CriterioOrdenacao pCriterio, Estatisticas pEstatisticas,
+                            ListaPersistente<Ativo> pOrdemCarteira, ListaPersistente<Ativo> pPorChave,
+                            ListaPersistente<Ativo>[] pPorTipo,
+                            ListaPersistente<VistasOrdenadas.Registo>[] pVistas) {
+            this.mVersao = pVersao;
+            this.mCriterio = pCriterio;
+            this.mEstatisticas = pEstatisticas;
+            this.mOrdemCarteira = pOrdemCarteira;
+            this.mPorChave = pPorChave;
+            this.mPorTipo = pPorTipo;
+            this.mVistas = pVistas;
+            this.mAtivos = pCriterio == null
+                ? pOrdemCarteira.comoLista()
+                : VistasOrdenadas.ativos(pVistas[pCriterio.ordinal()]);
+        }//construtor Instantaneo
+
+        /**
+         * Pesquisa binária no índice pelo ticker normalizado: O(log n).
+         */
+        public Ativo obter(String pTicker) {
+            String chave = Ativo.normalizarTicker(pTicker);
+            int pos = mPorChave.primeiraPosicao(a -> a.getChave().compareTo(chave) >= 0);
+            if (pos == mPorChave.tamanho()) return null;
+            Ativo encontrado = mPorChave.obter(pos);
+            return encontrado.getChave().equals(chave) ? encontrado : null;
+        }//obter
+
+        /**
+         * Ativos deste tipo, por ordem de inserção (só de leitura, sem cópia).
+         */
+        public List<Ativo> filtrarPorTipo(TipoAtivo pTipo) {
+            return mPorTipo[pTipo.ordinal()].comoLista();
+        }//filtrarPorTipo
+
+        public long getVersao() { return mVersao; }
+        public CriterioOrdenacao getCriterio() { return mCriterio; }
+        // Só de leitura e sem cópia
+        public List<Ativo> getAtivos() { return mAtivos; }
+        public int getQuantidade() { return mAtivos.size(); }
+        // Estatísticas da mesma versão da composição
+        public Estatisticas getEstatisticas() { return mEstatisticas; }
+    }//classe Instantaneo
+
+    //--------------------------------------------------
+    // Estatísticas imutáveis (uma versão da carteira)
+    //--------------------------------------------------
+    public static final class Estatisticas {
+        static final Estatisticas VAZIAS = new Estatisticas(0, new AgregadosCarteira());
+
+        private final long mVersao;
+        private final int mQuantidade;
+        private final double mValorTotal;
+        private final double mRiscoMedio;
+        private final double mVariacaoMedia;
+        private final Ativo mMaisArriscado;
+        private final Ativo mMenosArriscado;
+
+        private Estatisticas(long pVersao, AgregadosCarteira pAgregados) {
+            this.mVersao = pVersao;
+            this.mQuantidade = pAgregados.getQuantidade();
+            this.mValorTotal = pAgregados.getSomaPrecos();
+            this.mRiscoMedio = pAgregados.getMediaRiscos();
+            this.mVariacaoMedia = pAgregados.getMediaVariacoes();
+            this.mMaisArriscado = pAgregados.getMaisArriscado();
+            this.mMenosArriscado = pAgregados.getMenosArriscado();
+        }//construtor Estatisticas
+
+        public long getVersao() { return mVersao; }
+        public int getQuantidade() { return mQuantidade; }
+        public double getValorTotal() { return mValorTotal; }
+        public double getRiscoMedio() { return mRiscoMedio; }
+        public double getVariacaoMedia() { return mVariacaoMedia; }
+        public Ativo getMaisArriscado() { return mMaisArriscado; }
+        public Ativo getMenosArriscado() { return mMenosArriscado; }
+    }//classe Estatisticas
+
 }//classe Carteira
@@ -0,0 +1,445 @@
+// CarteiraColunar.java
+package sistemacotacoes.gestao;
+
+import sistemacotacoes.modelo.Ativo;
+import sistemacotacoes.enums.TipoAtivo;
+import sistemacotacoes.fabrica.FabricaAtivos;
+import sistemacotacoes.util.BoolEMensagem;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Carteira para muitos ativos (centenas de milhar), guardada por colunas.
+ * É uma classe à parte, não um modo da Carteira: quem usa Carteira não
+ * muda; para passar de uma para a outra, deCarteira e materializar.
+ *
+ * Em vez de um objeto Ativo por linha, cada campo é um array primitivo
+ * (preços em double[], volumes em long[], ...) e a linha i é a posição i
+ * de todos eles. Somas, filtros e risco percorrem arrays contíguos em
+ * vez de saltar de objeto em objeto pela memória.
+ *
+ * - Índice ticker normalizado -> número da linha (HashMap); os tickers e
+ *   nomes ficam como String, uma por linha
+ * - Tipo guardado como byte (ordinal de TipoAtivo); o risco usa os
+ *   multiplicadores de TipoAtivo, os mesmos de Acao, Cripto e ETF
+ * - Remover troca a linha com a última: O(1), mas não mantém a ordem
+ * - Para quem espera objetos Ativo: um cursor reutilizável (ver Cursor)
+ *   ou uma cópia independente (materializar)
+ *
+ * Não é thread-safe.
+ */
+public class CarteiraColunar {
+
+    private static final int CAPACIDADE_INICIAL = 16;
+    private static final TipoAtivo[] TIPOS = TipoAtivo.values();
+
+    // Multiplicador de risco por ordinal do tipo, copiado de TipoAtivo (evita ir ao enum no ciclo)
+    private static final double[] MULTIPLICADORES = new double[TIPOS.length];
+    static {
+        for (TipoAtivo t : TIPOS) {
+            MULTIPLICADORES[t.ordinal()] = t.getMultiplicadorRisco();
+        }//for
+    }//static
+
+    private final String mNome;
+
+    // Colunas (válidas de 0 a mTamanho - 1)
+    private String[] mTickers = new String[CAPACIDADE_INICIAL];
+    private String[] mNomes = new String[CAPACIDADE_INICIAL];
+    private byte[] mTipos = new byte[CAPACIDADE_INICIAL];
+    private double[] mPrecos = new double[CAPACIDADE_INICIAL];
+    private double[] mVariacoes = new double[CAPACIDADE_INICIAL];
+    private long[] mVolumes = new long[CAPACIDADE_INICIAL];
+    // Instante (ms) da última cotação de cada linha: rejeitar cotações obsoletas
+    private long[] mInstantes = new long[CAPACIDADE_INICIAL];
+    private int mTamanho;
+
+    // Dicionário: ticker normalizado -> linha
+    private final Map<String, Integer> mLinhas = new HashMap<>();
+
+    //--------------------------------------------------
+    // Construtores
+    //--------------------------------------------------
+    public CarteiraColunar() {
+        this("Carteira Colunar");
+    }//construtor CarteiraColunar
+
+    public CarteiraColunar(String pNome) {
+        this.mNome = pNome;
+    }//construtor CarteiraColunar
+
+    /**
+     * Copia os ativos de uma Carteira para o formato colunar.
+     */
+    public static CarteiraColunar deCarteira(Carteira pCarteira) {
+        CarteiraColunar colunar = new CarteiraColunar(pCarteira.getNome());
+        colunar.garantirCapacidade(pCarteira.getQuantidade());
+        for (Ativo a : pCarteira.vista()) {
+            colunar.adicionar(a);
+        }//for
+        return colunar;
+    }//deCarteira
+
+    //--------------------------------------------------
+    // Adicionar/Remover/Atualizar
+    //--------------------------------------------------
+    public BoolEMensagem adicionar(Ativo pAtivo) {
+        if (pAtivo == null) {
+            return new BoolEMensagem(false, "Ativo inválido (null)");
+        }//if
+        return adicionar(pAtivo.getTicker(), pAtivo.getNome(), pAtivo.obterTipo(),
+            pAtivo.getPreco(), pAtivo.getVariacao(), pAtivo.getVolume());
+    }//adicionar
+
+    public BoolEMensagem adicionar(
+        String pTicker,
+        String pNome,
+        TipoAtivo pTipo,
+        double pPreco,
+        double pVariacao,
+        long pVolume
+    ) {
+        String chave = Ativo.normalizarTicker(pTicker);
+        if (mLinhas.containsKey(chave)) {
+            return new BoolEMensagem(false, String.format("%s já existe na carteira", pTicker));
+        }//if
+
+        garantirCapacidade(mTamanho + 1);
+        int linha = mTamanho++;
+        mTickers[linha] = pTicker;
+        mNomes[linha] = pNome;
+        mTipos[linha] = (byte) pTipo.ordinal();
+        mPrecos[linha] = pPreco;
+        mVariacoes[linha] = pVariacao;
+        mVolumes[linha] = pVolume;
+        mInstantes[linha] = 0;
+        mLinhas.put(chave, linha);
+        return new BoolEMensagem(true, String.format("✅ %s adicionado com sucesso", pTicker));
+    }//adicionar
+
+    public BoolEMensagem removerPorTicker(String pTicker) {
+        Integer linha = mLinhas.remove(Ativo.normalizarTicker(pTicker));
+        if (linha == null) {
+            return new BoolEMensagem(false, pTicker + " não encontrado");
+        }//if
+
+        // A última linha passa para o lugar da removida
+        int ultima = --mTamanho;
+        if (linha != ultima) {
+            mTickers[linha] = mTickers[ultima];
+            mNomes[linha] = mNomes[ultima];
+            mTipos[linha] = mTipos[ultima];
+            mPrecos[linha] = mPrecos[ultima];
+            mVariacoes[linha] = mVariacoes[ultima];
+            mVolumes[linha] = mVolumes[ultima];
+            mInstantes[linha] = mInstantes[ultima];
+            mLinhas.put(Ativo.normalizarTicker(mTickers[linha]), linha);
+        }//if
+        mTickers[ultima] = null;
+        mNomes[ultima] = null;
+        return new BoolEMensagem(true, String.format("🗑️ %s removido com sucesso", pTicker));
+    }//removerPorTicker
+
+    /**
+     * Mesma assinatura de OuvinteCotacoes (pode receber uma subscrição).
+     *
+     * @return true se o ticker existe na carteira
+     */
+    public boolean atualizarCotacao(String pTicker, double pPreco, double pVariacao, long pVolume) {
+        int linha = linhaDe(pTicker);
+        if (linha < 0) return false;
+        return atualizarLinha(linha, pPreco, pVariacao, pVolume,
+            Math.max(System.currentTimeMillis(), mInstantes[linha]));
+    }//atualizarCotacao
+
+    /**
+     * Atualiza a cotação se não for mais antiga do que a da linha.
+     *
+     * @return false se o ticker não existe ou a cotação é obsoleta
+     */
+    public boolean atualizarCotacao(String pTicker, double pPreco, double pVariacao, long pVolume, long pInstante) {
+        int linha = linhaDe(pTicker);
+        if (linha < 0) return false;
+        return atualizarLinha(linha, pPreco, pVariacao, pVolume, pInstante);
+    }//atualizarCotacao
+
+    private boolean atualizarLinha(int pLinha, double pPreco, double pVariacao, long pVolume, long pInstante) {
+        if (pInstante < mInstantes[pLinha]) return false;
+        mPrecos[pLinha] = pPreco;
+        mVariacoes[pLinha] = pVariacao;
+        mVolumes[pLinha] = pVolume;
+        mInstantes[pLinha] = pInstante;
+        return true;
+    }//atualizarLinha
+
+    /**
+     * Linha do ticker, ou -1 se não existir.
+     */
+    public int linhaDe(String pTicker) {
+        Integer linha = mLinhas.get(Ativo.normalizarTicker(pTicker));
+        return linha == null ? -1 : linha;
+    }//linhaDe
+
+    private void garantirCapacidade(int pMinimo) {
+        if (pMinimo <= mPrecos.length) return;
+        int nova = Math.max(pMinimo, mPrecos.length * 2);
+        mTickers = Arrays.copyOf(mTickers, nova);
+        mNomes = Arrays.copyOf(mNomes, nova);
+        mTipos = Arrays.copyOf(mTipos, nova);
+        mPrecos = Arrays.copyOf(mPrecos, nova);
+        mVariacoes = Arrays.copyOf(mVariacoes, nova);
+        mVolumes = Arrays.copyOf(mVolumes, nova);
+        mInstantes = Arrays.copyOf(mInstantes, nova);
+    }//garantirCapacidade
+
+    //--------------------------------------------------
+    // Estatísticas (ciclos sobre as colunas)
+    //--------------------------------------------------
+
+    // Quatro somas independentes por ciclo: cada soma não tem de esperar
+    // pela anterior, e o processador faz várias ao mesmo tempo
+
+    public double calcularValorTotal() {
+        return somar(mPrecos, mTamanho);
+    }//calcularValorTotal
+
+    public double calcularVariacaoMedia() {
+        return mTamanho == 0 ? 0.0 : somar(mVariacoes, mTamanho) / mTamanho;
+    }//calcularVariacaoMedia
+
+    public double calcularRiscoMedio() {
+        if (mTamanho == 0) return 0.0;
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < mTamanho; i += 4) {
+            s0 += Math.abs(mVariacoes[i]) * MULTIPLICADORES[mTipos[i]];
+            s1 += Math.abs(mVariacoes[i + 1]) * MULTIPLICADORES[mTipos[i + 1]];
+            s2 += Math.abs(mVariacoes[i + 2]) * MULTIPLICADORES[mTipos[i + 2]];
+            s3 += Math.abs(mVariacoes[i + 3]) * MULTIPLICADORES[mTipos[i + 3]];
+        }//for
+        for (; i < mTamanho; i++) {
+            s0 += Math.abs(mVariacoes[i]) * MULTIPLICADORES[mTipos[i]];
+        }//for
+        return (s0 + s1 + s2 + s3) / mTamanho;
+    }//calcularRiscoMedio
+
+    public long calcularVolumeTotal() {
+        long soma = 0;
+        for (int i = 0; i < mTamanho; i++) {
+            soma += mVolumes[i];
+        }//for
+        return soma;
+    }//calcularVolumeTotal
+
+    public double calcularRisco(int pLinha) {
+        return Math.abs(mVariacoes[pLinha]) * MULTIPLICADORES[mTipos[pLinha]];
+    }//calcularRisco
+
+    /**
+     * Linha do ativo mais arriscado, ou -1 se a carteira estiver vazia.
+     */
+    public int linhaMaisArriscada() {
+        int melhor = -1;
+        double maximo = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < mTamanho; i++) {
+            double risco = Math.abs(mVariacoes[i]) * MULTIPLICADORES[mTipos[i]];
+            if (risco > maximo) {
+                maximo = risco;
+                melhor = i;
+            }//if
+        }//for
+        return melhor;
+    }//linhaMaisArriscada
+
+    private static double somar(double[] pColuna, int pTamanho) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < pTamanho; i += 4) {
+            s0 += pColuna[i];
+            s1 += pColuna[i + 1];
+            s2 += pColuna[i + 2];
+            s3 += pColuna[i + 3];
+        }//for
+        for (; i < pTamanho; i++) {
+            s0 += pColuna[i];
+        }//for
+        return (s0 + s1) + (s2 + s3);
+    }//somar
+
+    //--------------------------------------------------
+    // Filtros (devolvem números de linha)
+    //--------------------------------------------------
+    public int[] filtrarPorTipo(TipoAtivo pTipo) {
+        byte tipo = (byte) pTipo.ordinal();
+        int[] linhas = new int[mTamanho];
+        int n = 0;
+        for (int i = 0; i < mTamanho; i++) {
+            if (mTipos[i] == tipo) linhas[n++] = i;
+        }//for
+        return Arrays.copyOf(linhas, n);
+    }//filtrarPorTipo
+
+    /**
+     * Linhas com variação em [pMinimo, pMaximo].
+     */
+    public int[] filtrarPorVariacao(double pMinimo, double pMaximo) {
+        int[] linhas = new int[mTamanho];
+        int n = 0;
+        for (int i = 0; i < mTamanho; i++) {
+            double v = mVariacoes[i];
+            if (v >= pMinimo && v <= pMaximo) linhas[n++] = i;
+        }//for
+        return Arrays.copyOf(linhas, n);
+    }//filtrarPorVariacao
+
+    public int[] filtrarEmAlta() {
+        return filtrarPorVariacao(Math.nextUp(3.0), Double.POSITIVE_INFINITY);
+    }//filtrarEmAlta
+
+    public int[] filtrarEmQueda() {
+        return filtrarPorVariacao(Double.NEGATIVE_INFINITY, Math.nextDown(-3.0));
+    }//filtrarEmQueda
+
+    //--------------------------------------------------
+    // Acesso como Ativo
+    //--------------------------------------------------
+
+    /**
+     * Percorre todas as linhas com um único cursor (sem criar objetos).
+     * O Ativo recebido só é válido durante a chamada.
+     */
+    public void paraCada(Consumer<Ativo> pAcao) {
+        Cursor cursor = new Cursor();
+        for (int i = 0; i < mTamanho; i++) {
+            pAcao.accept(cursor.posicionar(i));
+        }//for
+    }//paraCada
+
+    /**
+     * Percorre as linhas dadas (ex: resultado de um filtro) com um único cursor.
+     */
+    public void paraCada(int[] pLinhas, Consumer<Ativo> pAcao) {
+        Cursor cursor = new Cursor();
+        for (int linha : pLinhas) {
+            pAcao.accept(cursor.posicionar(linha));
+        }//for
+    }//paraCada
+
+    /**
+     * Cópia independente da linha como Acao/Cripto/ETF.
+     */
+    public Ativo materializar(int pLinha) {
+        verificarLinha(pLinha);
+        return FabricaAtivos.criarAtivo(TIPOS[mTipos[pLinha]], mTickers[pLinha], mNomes[pLinha],
+            mPrecos[pLinha], mVariacoes[pLinha], mVolumes[pLinha]);
+    }//materializar
+
+    /**
+     * Cursor novo posicionado na linha.
+     */
+    public Cursor cursor(int pLinha) {
+        return new Cursor().posicionar(pLinha);
+    }//cursor
+
+    private void verificarLinha(int pLinha) {
+        if (pLinha < 0 || pLinha >= mTamanho) {
+            throw new IndexOutOfBoundsException("Linha inválida: " + pLinha);
+        }//if
+    }//verificarLinha
+
+    //--------------------------------------------------
+    // Cursor: um Ativo que "aponta" para uma linha (flyweight)
+    //--------------------------------------------------
+
+    /**
+     * Ativo reutilizável: posicionar(i) copia os valores da linha i para
+     * os campos herdados, por isso todos os métodos de Ativo funcionam.
+     * atualizarCotacao escreve diretamente nas colunas.
+     *
+     * Não deve ser guardado em coleções nem comparado com equals
+     * (a chave herdada não muda com a posição); para isso usar materializar.
+     */
+    public class Cursor extends Ativo {
+        private int mLinha = -1;
+
+        // Um Ativo real de cada tipo, para reaproveitar a recomendação
+        private final Ativo[] mDelegados = new Ativo[TIPOS.length];
+
+        private Cursor() {
+            super("", "", 0.0, 0.0, 0);
+        }//construtor Cursor
+
+        public Cursor posicionar(int pLinha) {
+            verificarLinha(pLinha);
+            this.mLinha = pLinha;
+            this.mTicker = mTickers[pLinha];
+            this.mNome = mNomes[pLinha];
+            this.mPreco = mPrecos[pLinha];
+            this.mVariacao = mVariacoes[pLinha];
+            this.mVolume = mVolumes[pLinha];
+            this.mInstante = mInstantes[pLinha];
+            return this;
+        }//posicionar
+
+        public int getLinha() { return mLinha; }
+
+        @Override
+        public String getChave() {
+            return Ativo.normalizarTicker(mTicker);
+        }//getChave
+
+        @Override
+        public TipoAtivo obterTipo() {
+            return TIPOS[mTipos[mLinha]];
+        }//obterTipo
+
+        @Override
+        public double calcularRisco() {
+            return Math.abs(mVariacao) * MULTIPLICADORES[mTipos[mLinha]];
+        }//calcularRisco
+
+        @Override
+        public String obterRecomendacao() {
+            int tipo = mTipos[mLinha];
+            if (mDelegados[tipo] == null) {
+                mDelegados[tipo] = FabricaAtivos.criarAtivo(TIPOS[tipo], "", "", 0.0, 0.0, 0);
+            }//if
+            mDelegados[tipo].atualizarCotacao(mPreco, mVariacao, mVolume);
+            return mDelegados[tipo].obterRecomendacao();
+        }//obterRecomendacao
+
+        @Override
+        public boolean atualizarCotacao(double pPreco, double pVariacao, long pVolume, long pInstante) {
+            if (!atualizarLinha(mLinha, pPreco, pVariacao, pVolume, pInstante)) return false;
+            return super.atualizarCotacao(pPreco, pVariacao, pVolume, pInstante);
+        }//atualizarCotacao
+    }//classe Cursor
+
+    //--------------------------------------------------
+    // Getters por linha
+    //--------------------------------------------------
+    public String getTicker(int pLinha) { verificarLinha(pLinha); return mTickers[pLinha]; }
+    public double getPreco(int pLinha) { verificarLinha(pLinha); return mPrecos[pLinha]; }
+    public double getVariacao(int pLinha) { verificarLinha(pLinha); return mVariacoes[pLinha]; }
+    public long getVolume(int pLinha) { verificarLinha(pLinha); return mVolumes[pLinha]; }
+    public long getInstante(int pLinha) { verificarLinha(pLinha); return mInstantes[pLinha]; }
+    public TipoAtivo getTipo(int pLinha) { verificarLinha(pLinha); return TIPOS[mTipos[pLinha]]; }
+
+    //--------------------------------------------------
+    // Getters
+    //--------------------------------------------------
+    public String getNome() { return mNome; }
+    public int getQuantidade() { return mTamanho; }
+    public boolean estaVazia() { return mTamanho == 0; }
+
+    //--------------------------------------------------
+    // toString
+    //--------------------------------------------------
+    @Override
+    public String toString() {
+        return String.format("CarteiraColunar[%s, %d ativos]", mNome, mTamanho);
+    }//toString
+
+}//classe CarteiraColunar
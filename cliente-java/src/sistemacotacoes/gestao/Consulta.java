@@ -0,0 +1,323 @@
+// Consulta.java
+package sistemacotacoes.gestao;
+
+import sistemacotacoes.enums.CriterioOrdenacao;
+import sistemacotacoes.enums.TipoAtivo;
+import sistemacotacoes.modelo.Ativo;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Consulta à carteira que combina vários critérios numa só passagem.
+ *
+ * Exemplo: "CRIPTO em queda com volume acima de 1M, por risco":
+ *
+ *   carteira.consulta()
+ *       .doTipo(TipoAtivo.CRIPTO)
+ *       .emQueda()
+ *       .volumeAcimaDe(1_000_000)
+ *       .ordenarPor(CriterioOrdenacao.POR_RISCO_DESC)
+ *       .limite(10)
+ *       .executar();
+ *
+ * - Todas as condições são testadas no mesmo ciclo, sem listas
+ *   intermédias; as mais baratas primeiro (tipo, variação, preço, volume,
+ *   risco e por fim a condição livre)
+ * - Com ordem e limite usa-se um heap limitado (ver SelecaoTopo)
+ * - Sem ordem, com limite, o ciclo pára ao atingir o limite
+ * - A partir de LIMIAR_PARALELO ativos a carteira é dividida em partes
+ *   executadas em paralelo (fork/join)
+ * - Cada execução devolve o tempo que demorou (ver Resultado)
+ *
+ * Lê a fotografia atual da carteira: não bloqueia quem a altera.
+ */
+public final class Consulta {
+
+    // Abaixo disto, dividir pelos núcleos custa mais do que ganha
+    public static final int LIMIAR_PARALELO = SelecaoTopo.LIMIAR_PARALELO;
+    private static final int TAMANHO_MINIMO_PARTE = 8_192;
+
+    private final Carteira mCarteira;
+
+    // Condições (por defeito, tudo passa)
+    private Set<TipoAtivo> mTipos;  // null = todos os tipos
+    private double mPrecoMinimo = Double.NEGATIVE_INFINITY;
+    private double mPrecoMaximo = Double.POSITIVE_INFINITY;
+    private double mVariacaoMinima = Double.NEGATIVE_INFINITY;
+    private double mVariacaoMaxima = Double.POSITIVE_INFINITY;
+    private long mVolumeMinimo = Long.MIN_VALUE;
+    private long mVolumeMaximo = Long.MAX_VALUE;
+    private double mRiscoMinimo = Double.NEGATIVE_INFINITY;
+    private double mRiscoMaximo = Double.POSITIVE_INFINITY;
+    private Predicate<Ativo> mCondicao;
+
+    // Resultado
+    private CriterioOrdenacao mOrdem;
+    private int mLimite = Integer.MAX_VALUE;
+    private boolean mPermitirParalelo = true;
+
+    //--------------------------------------------------
+    // Construtor (ver Carteira.consulta)
+    //--------------------------------------------------
+    Consulta(Carteira pCarteira) {
+        this.mCarteira = pCarteira;
+    }//construtor Consulta
+
+    //--------------------------------------------------
+    // Condições (cada chamada restringe mais o resultado)
+    //--------------------------------------------------
+
+    /**
+     * Só estes tipos (chamadas repetidas juntam tipos).
+     */
+    public Consulta doTipo(TipoAtivo... pTipos) {
+        if (mTipos == null) mTipos = EnumSet.noneOf(TipoAtivo.class);
+        Collections.addAll(mTipos, pTipos);
+        return this;
+    }//doTipo
+
+    public Consulta precoEntre(double pMinimo, double pMaximo) {
+        mPrecoMinimo = Math.max(mPrecoMinimo, pMinimo);
+        mPrecoMaximo = Math.min(mPrecoMaximo, pMaximo);
+        return this;
+    }//precoEntre
+
+    public Consulta variacaoEntre(double pMinimo, double pMaximo) {
+        mVariacaoMinima = Math.max(mVariacaoMinima, pMinimo);
+        mVariacaoMaxima = Math.min(mVariacaoMaxima, pMaximo);
+        return this;
+    }//variacaoEntre
+
+    public Consulta volumeEntre(long pMinimo, long pMaximo) {
+        mVolumeMinimo = Math.max(mVolumeMinimo, pMinimo);
+        mVolumeMaximo = Math.min(mVolumeMaximo, pMaximo);
+        return this;
+    }//volumeEntre
+
+    public Consulta riscoEntre(double pMinimo, double pMaximo) {
+        mRiscoMinimo = Math.max(mRiscoMinimo, pMinimo);
+        mRiscoMaximo = Math.min(mRiscoMaximo, pMaximo);
+        return this;
+    }//riscoEntre
+
+    /**
+     * Volume estritamente acima de pVolume.
+     */
+    public Consulta volumeAcimaDe(long pVolume) {
+        return pVolume == Long.MAX_VALUE
+            ? volumeEntre(Long.MAX_VALUE, Long.MIN_VALUE)  // nada passa
+            : volumeEntre(pVolume + 1, Long.MAX_VALUE);
+    }//volumeAcimaDe
+
+    /**
+     * Variação acima de 3% (ver Ativo.estaEmAlta).
+     */
+    public Consulta emAlta() {
+        return variacaoEntre(Math.nextUp(3.0), Double.POSITIVE_INFINITY);
+    }//emAlta
+
+    /**
+     * Variação abaixo de -3% (ver Ativo.estaEmQueda).
+     */
+    public Consulta emQueda() {
+        return variacaoEntre(Double.NEGATIVE_INFINITY, Math.nextDown(-3.0));
+    }//emQueda
+
+    /**
+     * Condição livre, testada depois de todas as outras.
+     * Tem de poder ser chamada por várias threads ao mesmo tempo.
+     */
+    public Consulta onde(Predicate<Ativo> pCondicao) {
+        mCondicao = mCondicao == null ? pCondicao : mCondicao.and(pCondicao);
+        return this;
+    }//onde
+
+    //--------------------------------------------------
+    // Ordem, limite e execução
+    //--------------------------------------------------
+    public Consulta ordenarPor(CriterioOrdenacao pCriterio) {
+        mOrdem = pCriterio;
+        return this;
+    }//ordenarPor
+
+    /**
+     * No máximo pLimite ativos (os primeiros pela ordem pedida, ou pela
+     * ordem atual da carteira se não houver ordem).
+     */
+    public Consulta limite(int pLimite) {
+        mLimite = Math.max(0, pLimite);
+        return this;
+    }//limite
+
+    /**
+     * Nunca dividir em partes paralelas (ex: condição livre que não é thread-safe).
+     */
+    public Consulta sequencial() {
+        mPermitirParalelo = false;
+        return this;
+    }//sequencial
+
+    public Resultado executar() {
+        List<Ativo> ativos = mCarteira.vista();
+        long inicio = System.nanoTime();
+
+        int n = ativos.size();
+        boolean paralelo = mPermitirParalelo
+            && n >= LIMIAR_PARALELO
+            && Runtime.getRuntime().availableProcessors() > 1;
+        // Sem ordem e com limite, cada parte pára cedo: contam-se os ativos realmente vistos
+        LongAdder analisados = new LongAdder();
+        List<Ativo> escolhidos = paralelo
+            ? ForkJoinPool.commonPool().invoke(new Parte(ativos, 0, n, tamanhoParte(n), analisados))
+            : percorrer(ativos, 0, n, analisados);
+        escolhidos = concluir(escolhidos);
+
+        long duracao = System.nanoTime() - inicio;
+        return new Resultado(Collections.unmodifiableList(escolhidos), analisados.intValue(), paralelo, duracao);
+    }//executar
+
+    //--------------------------------------------------
+    // Passagem única
+    //--------------------------------------------------
+    private boolean aceita(Ativo pAtivo) {
+        if (mTipos != null && !mTipos.contains(pAtivo.obterTipo())) return false;
+        double variacao = pAtivo.getVariacao();
+        if (variacao < mVariacaoMinima || variacao > mVariacaoMaxima) return false;
+        double preco = pAtivo.getPreco();
+        if (preco < mPrecoMinimo || preco > mPrecoMaximo) return false;
+        long volume = pAtivo.getVolume();
+        if (volume < mVolumeMinimo || volume > mVolumeMaximo) return false;
+        if (mRiscoMinimo != Double.NEGATIVE_INFINITY || mRiscoMaximo != Double.POSITIVE_INFINITY) {
+            double risco = pAtivo.calcularRisco();
+            if (risco < mRiscoMinimo || risco > mRiscoMaximo) return false;
+        }//if
+        return mCondicao == null || mCondicao.test(pAtivo);
+    }//aceita
+
+    /**
+     * Ativos aceites entre pInicio e pFim. Com ordem e limite só guarda
+     * os melhores (heap limitado); sem ordem pára ao atingir o limite.
+     * Soma a pAnalisados os ativos percorridos.
+     */
+    private List<Ativo> percorrer(List<Ativo> pAtivos, int pInicio, int pFim, LongAdder pAnalisados) {
+        if (mLimite == 0) return new ArrayList<>();
+
+        if (mOrdem != null && mLimite < pFim - pInicio) {
+            SelecaoTopo.Limitado<Ativo> heap =
+                new SelecaoTopo.Limitado<>(mOrdem.getComparadorEstavel(), mLimite, pFim - pInicio);
+            for (int i = pInicio; i < pFim; i++) {
+                Ativo a = pAtivos.get(i);
+                if (aceita(a)) heap.oferecer(a);
+            }//for
+            pAnalisados.add(pFim - pInicio);
+            return heap.paraLista();
+        }//if
+
+        int limite = mOrdem == null ? mLimite : Integer.MAX_VALUE;
+        List<Ativo> aceites = new ArrayList<>();
+        int i = pInicio;
+        for (; i < pFim && aceites.size() < limite; i++) {
+            Ativo a = pAtivos.get(i);
+            if (aceita(a)) aceites.add(a);
+        }//for
+        pAnalisados.add(i - pInicio);
+        return aceites;
+    }//percorrer
+
+    /**
+     * Junta os resultados de duas partes consecutivas (a da esquerda primeiro).
+     */
+    private List<Ativo> juntar(List<Ativo> pEsquerda, List<Ativo> pDireita) {
+        List<Ativo> juntos = new ArrayList<>(pEsquerda.size() + pDireita.size());
+        juntos.addAll(pEsquerda);
+        juntos.addAll(pDireita);
+        if (mOrdem != null && juntos.size() > mLimite) {
+            return SelecaoTopo.selecionar(juntos, mOrdem.getComparadorEstavel(), mLimite);
+        }//if
+        return juntos;
+    }//juntar
+
+    private List<Ativo> concluir(List<Ativo> pAceites) {
+        if (mOrdem != null) {
+            pAceites.sort(mOrdem.getComparadorEstavel());
+        }//if
+        return pAceites.size() > mLimite ? new ArrayList<>(pAceites.subList(0, mLimite)) : pAceites;
+    }//concluir
+
+    private static int tamanhoParte(int pTotal) {
+        // Algumas partes por núcleo, para equilibrar partes mais lentas
+        int partes = Runtime.getRuntime().availableProcessors() * 4;
+        return Math.max(TAMANHO_MINIMO_PARTE, (pTotal + partes - 1) / partes);
+    }//tamanhoParte
+
+    //--------------------------------------------------
+    // Execução paralela (fork/join)
+    //--------------------------------------------------
+    @SuppressWarnings("serial")  // nunca é serializada
+    private class Parte extends RecursiveTask<List<Ativo>> {
+        private final List<Ativo> mAtivos;
+        private final int mInicio;
+        private final int mFim;
+        private final int mTamanhoParte;
+        private final LongAdder mAnalisados;
+
+        Parte(List<Ativo> pAtivos, int pInicio, int pFim, int pTamanhoParte, LongAdder pAnalisados) {
+            this.mAtivos = pAtivos;
+            this.mInicio = pInicio;
+            this.mFim = pFim;
+            this.mTamanhoParte = pTamanhoParte;
+            this.mAnalisados = pAnalisados;
+        }//construtor Parte
+
+        @Override
+        protected List<Ativo> compute() {
+            if (mFim - mInicio <= mTamanhoParte) {
+                return percorrer(mAtivos, mInicio, mFim, mAnalisados);
+            }//if
+            int meio = (mInicio + mFim) >>> 1;
+            Parte esquerda = new Parte(mAtivos, mInicio, meio, mTamanhoParte, mAnalisados);
+            esquerda.fork();
+            List<Ativo> direita = new Parte(mAtivos, meio, mFim, mTamanhoParte, mAnalisados).compute();
+            return juntar(esquerda.join(), direita);
+        }//compute
+    }//classe Parte
+
+    //--------------------------------------------------
+    // Resultado de uma execução
+    //--------------------------------------------------
+    public static final class Resultado {
+        private final List<Ativo> mAtivos;
+        private final int mAnalisados;
+        private final boolean mParalelo;
+        private final long mDuracaoNanos;
+
+        private Resultado(List<Ativo> pAtivos, int pAnalisados, boolean pParalelo, long pDuracaoNanos) {
+            this.mAtivos = pAtivos;
+            this.mAnalisados = pAnalisados;
+            this.mParalelo = pParalelo;
+            this.mDuracaoNanos = pDuracaoNanos;
+        }//construtor Resultado
+
+        // Lista só de leitura
+        public List<Ativo> getAtivos() { return mAtivos; }
+        public int getQuantidade() { return mAtivos.size(); }
+        public int getAnalisados() { return mAnalisados; }
+        public boolean foiParalelo() { return mParalelo; }
+        public long getDuracaoNanos() { return mDuracaoNanos; }
+        public double getDuracaoMs() { return mDuracaoNanos / 1e6; }
+
+        @Override
+        public String toString() {
+            return String.format("Consulta[%d de %d ativos, %.3fms%s]",
+                mAtivos.size(), mAnalisados, getDuracaoMs(), mParalelo ? ", paralela" : "");
+        }//toString
+    }//classe Resultado
+
+}//classe Consulta
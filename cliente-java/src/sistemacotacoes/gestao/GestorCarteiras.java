@@ -0,0 +1,230 @@
+// GestorCarteiras.java
+package sistemacotacoes.gestao;
+
+import sistemacotacoes.modelo.Ativo;
+import sistemacotacoes.util.BoolEMensagem;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gere muitas carteiras (ex: uma por cliente) que partilham os ativos.
+ *
+ * - Existe um único Ativo por ticker (o "canónico"); todas as carteiras
+ *   que o têm guardam esse mesmo objeto, em vez de uma cópia cada
+ * - Atualizar a cotação de um ticker altera o Ativo canónico uma vez; o
+ *   próprio ativo avisa as carteiras que o têm (OuvinteAtivo), que
+ *   atualizam as suas estatísticas e listas sem recalcular tudo.
+ *   Custo O(carteiras que o têm), não O(todas as carteiras)
+ * - Um ticker que deixa de estar em qualquer carteira é esquecido
+ *
+ * Para haver partilha, os ativos têm de ser adicionados e removidos
+ * através do gestor (não diretamente na Carteira).
+ *
+ * Ordem dos trincos: gestor, depois Ativo, depois Carteira. O de cada
+ * carteira é curto e nunca se tem o de duas ao mesmo tempo: uma cotação
+ * passa pelas carteiras que têm o ativo uma a uma, e os ouvintes delas
+ * são avisados já sem o trinco. As cotações não usam o trinco do gestor.
+ */
+public class GestorCarteiras {
+
+    // Carteiras pelo nome
+    private final Map<String, Carteira> mCarteiras = new ConcurrentHashMap<>();
+    // Ativo canónico pelo ticker normalizado (leitura sem trinco nas cotações)
+    private final Map<String, Canonico> mCanonicos = new ConcurrentHashMap<>();
+    // Protege a composição (carteiras, ativos e contagem de detentores)
+    private final Object mTrinco = new Object();
+
+    //--------------------------------------------------
+    // Carteiras
+    //--------------------------------------------------
+    public BoolEMensagem criarCarteira(String pNome, int pCapacidade) {
+        if (pNome == null || pNome.isBlank()) {
+            return new BoolEMensagem(false, "Nome de carteira inválido");
+        }//if
+        synchronized (mTrinco) {
+            if (mCarteiras.containsKey(pNome)) {
+                return new BoolEMensagem(false, String.format("Carteira %s já existe", pNome));
+            }//if
+            mCarteiras.put(pNome, new Carteira(pNome, pCapacidade));
+        }//synchronized
+        return new BoolEMensagem(true, String.format("✅ Carteira %s criada", pNome));
+    }//criarCarteira
+
+    /**
+     * Carteira com este nome, ou null. Só para leitura: adicionar e remover
+     * ativos deve passar pelo gestor.
+     */
+    public Carteira obterCarteira(String pNome) {
+        return pNome == null ? null : mCarteiras.get(pNome);
+    }//obterCarteira
+
+    /**
+     * Remove a carteira e liberta os seus ativos (a carteira deixa de
+     * receber cotações).
+     */
+    public BoolEMensagem removerCarteira(String pNome) {
+        synchronized (mTrinco) {
+            Carteira carteira = obterCarteira(pNome);
+            if (carteira == null) {
+                return new BoolEMensagem(false, String.format("Carteira %s não existe", pNome));
+            }//if
+            for (Ativo a : carteira.vista()) {
+                if (carteira.remover(a).sucesso()) libertar(a.getChave());
+            }//for
+            mCarteiras.remove(pNome);
+        }//synchronized
+        return new BoolEMensagem(true, String.format("🗑️ Carteira %s removida", pNome));
+    }//removerCarteira
+
+    //--------------------------------------------------
+    // Ativos (partilhados entre carteiras)
+    //--------------------------------------------------
+
+    /**
+     * Adiciona o ativo à carteira. Se o ticker já existe noutra carteira,
+     * é guardado o Ativo canónico (pAtivo só serve para o identificar).
+     */
+    public BoolEMensagem adicionar(String pNomeCarteira, Ativo pAtivo) {
+        if (pAtivo == null) {
+            return new BoolEMensagem(false, "Ativo inválido (null)");
+        }//if
+        synchronized (mTrinco) {
+            Carteira carteira = obterCarteira(pNomeCarteira);
+            if (carteira == null) {
+                return new BoolEMensagem(false, String.format("Carteira %s não existe", pNomeCarteira));
+            }//if
+
+            Canonico canonico = mCanonicos.get(pAtivo.getChave());
+            if (canonico != null && canonico.mAtivo.obterTipo() != pAtivo.obterTipo()) {
+                return new BoolEMensagem(false, String.format("%s já existe como %s",
+                    pAtivo.getTicker(), canonico.mAtivo.obterTipo().getNome()));
+            }//if
+
+            Ativo partilhado = canonico == null ? pAtivo : canonico.mAtivo;
+            BoolEMensagem resultado = carteira.adicionar(partilhado);
+            if (resultado.sucesso()) {
+                if (canonico == null) {
+                    mCanonicos.put(pAtivo.getChave(), new Canonico(pAtivo));
+                } else {
+                    canonico.mDetentores++;
+                }//else
+            }//if
+            return resultado;
+        }//synchronized
+    }//adicionar
+
+    public BoolEMensagem remover(String pNomeCarteira, String pTicker) {
+        synchronized (mTrinco) {
+            Carteira carteira = obterCarteira(pNomeCarteira);
+            if (carteira == null) {
+                return new BoolEMensagem(false, String.format("Carteira %s não existe", pNomeCarteira));
+            }//if
+            BoolEMensagem resultado = carteira.removerPorTicker(pTicker);
+            if (resultado.sucesso()) libertar(Ativo.normalizarTicker(pTicker));
+            return resultado;
+        }//synchronized
+    }//remover
+
+    // Chamado com o trinco, depois de uma carteira largar o ativo
+    private void libertar(String pChave) {
+        Canonico canonico = mCanonicos.get(pChave);
+        if (canonico != null && --canonico.mDetentores == 0) {
+            mCanonicos.remove(pChave);
+        }//if
+    }//libertar
+
+    //--------------------------------------------------
+    // Cotações (sem o trinco do gestor)
+    //--------------------------------------------------
+
+    /**
+     * Atualiza a cotação do ticker uma única vez; chega a todas as
+     * carteiras que o têm. Tem a assinatura de OuvinteCotacoes:
+     * api.subscrever(gestor.getTickers(), gestor::atualizarCotacao)
+     *
+     * @return true se alguma carteira tem o ticker
+     */
+    public boolean atualizarCotacao(String pTicker, double pPreco, double pVariacao, long pVolume) {
+        Ativo ativo = obterAtivo(pTicker);
+        if (ativo == null) return false;
+        ativo.atualizarCotacao(pPreco, pVariacao, pVolume);
+        return true;
+    }//atualizarCotacao
+
+    /**
+     * Como a anterior, mas ignora cotações mais antigas do que a atual.
+     *
+     * @return false se nenhuma carteira tem o ticker ou a cotação é obsoleta
+     */
+    public boolean atualizarCotacao(String pTicker, double pPreco, double pVariacao, long pVolume, long pInstante) {
+        Ativo ativo = obterAtivo(pTicker);
+        if (ativo == null) return false;
+        return ativo.atualizarCotacao(pPreco, pVariacao, pVolume, pInstante);
+    }//atualizarCotacao
+
+    /**
+     * Ativo canónico do ticker (sem distinguir maiúsculas), ou null.
+     */
+    public Ativo obterAtivo(String pTicker) {
+        if (pTicker == null) return null;
+        Canonico canonico = mCanonicos.get(Ativo.normalizarTicker(pTicker));
+        return canonico == null ? null : canonico.mAtivo;
+    }//obterAtivo
+
+    /**
+     * Número de carteiras que têm o ticker.
+     */
+    public int contarDetentores(String pTicker) {
+        synchronized (mTrinco) {
+            Canonico canonico = pTicker == null ? null : mCanonicos.get(Ativo.normalizarTicker(pTicker));
+            return canonico == null ? 0 : canonico.mDetentores;
+        }//synchronized
+    }//contarDetentores
+
+    //--------------------------------------------------
+    // Getters
+    //--------------------------------------------------
+    // Tickers com pelo menos um detentor (cópia)
+    public Set<String> getTickers() { return Set.copyOf(mCanonicos.keySet()); }
+    public Collection<Carteira> getCarteiras() { return Collections.unmodifiableCollection(mCarteiras.values()); }
+    public int getQuantidadeCarteiras() { return mCarteiras.size(); }
+    public int getQuantidadeAtivos() { return mCanonicos.size(); }
+
+    /**
+     * Nomes das carteiras que têm o ticker (percorre todas as carteiras).
+     */
+    public List<String> listarDetentores(String pTicker) {
+        List<String> nomes = new ArrayList<>();
+        for (Carteira c : mCarteiras.values()) {
+            if (c.contem(pTicker)) nomes.add(c.getNome());
+        }//for
+        return nomes;
+    }//listarDetentores
+
+    //--------------------------------------------------
+    // toString
+    //--------------------------------------------------
+    @Override
+    public String toString() {
+        return String.format("GestorCarteiras[%d carteiras, %d ativos partilhados]",
+            getQuantidadeCarteiras(), getQuantidadeAtivos());
+    }//toString
+
+    //--------------------------------------------------
+    // Ativo canónico e quantas carteiras o têm
+    //--------------------------------------------------
+    private static final class Canonico {
+        private final Ativo mAtivo;
+        private int mDetentores = 1;  // protegido pelo trinco do gestor
+
+        private Canonico(Ativo pAtivo) {
+            this.mAtivo = pAtivo;
+        }//construtor Canonico
+    }//classe Canonico
+
+}//classe GestorCarteiras
@@ -0,0 +1,313 @@
+// ListaPersistente.java
+package sistemacotacoes.gestao;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Lista imutável guardada em blocos: cada alteração devolve uma lista
+ * nova que partilha com a anterior todos os blocos que não mudaram.
+ *
+ * - Inserir, remover ou substituir copia um bloco (até MAXIMO_BLOCO
+ *   elementos) e a tabela de blocos (n / MAXIMO_BLOCO entradas), não
+ *   a lista inteira
+ * - Ler uma posição: pesquisa binária na tabela de blocos, O(log n)
+ * - Percorrer: O(1) por elemento
+ *
+ * É o que a Carteira publica nas fotografias (ver Carteira.Instantaneo):
+ * quem escreve cria a versão seguinte com o trinco e quem lê usa a versão
+ * que tem, sem trinco e sem cópia, sem nunca a ver mudar.
+ */
+final class ListaPersistente<T> {
+
+    static final int MAXIMO_BLOCO = 256;
+    // Blocos feitos de raiz ficam a meio: ainda há espaço para inserir sem dividir
+    private static final int BLOCO_INICIAL = MAXIMO_BLOCO / 2;
+    // Um bloco que fica abaixo disto junta-se a um vizinho (se couberem os dois)
+    private static final int MINIMO_BLOCO = MAXIMO_BLOCO / 8;
+
+    private static final ListaPersistente<Object> VAZIA =
+        new ListaPersistente<>(new Object[0][], new int[] {0});
+
+    // Nenhum bloco está vazio nem é alterado depois de criado
+    private final Object[][] mBlocos;
+    // mInicios[b] = posição do primeiro elemento do bloco b; mInicios[nº de blocos] = tamanho
+    private final int[] mInicios;
+
+    private ListaPersistente(Object[][] pBlocos, int[] pInicios) {
+        this.mBlocos = pBlocos;
+        this.mInicios = pInicios;
+    }//construtor ListaPersistente
+
+    @SuppressWarnings("unchecked")
+    static <T> ListaPersistente<T> vazia() {
+        return (ListaPersistente<T>) VAZIA;
+    }//vazia
+
+    /**
+     * Lista com os elementos de pElementos, pela mesma ordem (O(n)).
+     */
+    static <T> ListaPersistente<T> de(List<? extends T> pElementos) {
+        int n = pElementos.size();
+        int quantos = (n + BLOCO_INICIAL - 1) / BLOCO_INICIAL;
+        Object[][] blocos = new Object[quantos][];
+        int[] inicios = new int[quantos + 1];
+        for (int b = 0; b < quantos; b++) {
+            int inicio = b * BLOCO_INICIAL;
+            blocos[b] = pElementos.subList(inicio, Math.min(n, inicio + BLOCO_INICIAL)).toArray();
+            inicios[b] = inicio;
+        }//for
+        inicios[quantos] = n;
+        return new ListaPersistente<>(blocos, inicios);
+    }//de
+
+    //--------------------------------------------------
+    // Leitura
+    //--------------------------------------------------
+    int tamanho() {
+        return mInicios[mBlocos.length];
+    }//tamanho
+
+    @SuppressWarnings("unchecked")
+    T obter(int pPosicao) {
+        Objects.checkIndex(pPosicao, tamanho());
+        int b = bloco(pPosicao);
+        return (T) mBlocos[b][pPosicao - mInicios[b]];
+    }//obter
+
+    /**
+     * Primeira posição em que pCondicao é verdadeira, numa lista em que ela
+     * é falsa até certo ponto e verdadeira daí em diante (tamanho() se
+     * nunca for). Pesquisa binária: primeiro o bloco, depois dentro dele.
+     */
+    @SuppressWarnings("unchecked")
+    int primeiraPosicao(Predicate<? super T> pCondicao) {
+        int inicio = 0;
+        int fim = mBlocos.length;
+        while (inicio < fim) {
+            int meio = (inicio + fim) >>> 1;
+            Object[] bloco = mBlocos[meio];
+            if (pCondicao.test((T) bloco[bloco.length - 1])) {
+                fim = meio;
+            } else {
+                inicio = meio + 1;
+            }//else
+        }//while
+        if (inicio == mBlocos.length) return tamanho();
+
+        Object[] bloco = mBlocos[inicio];
+        int primeiro = 0;
+        int ultimo = bloco.length - 1;  // sabe-se que aqui é verdadeira
+        while (primeiro < ultimo) {
+            int meio = (primeiro + ultimo) >>> 1;
+            if (pCondicao.test((T) bloco[meio])) {
+                ultimo = meio;
+            } else {
+                primeiro = meio + 1;
+            }//else
+        }//while
+        return mInicios[inicio] + primeiro;
+    }//primeiraPosicao
+
+    /**
+     * Como Collections.binarySearch numa lista ordenada por pComparador:
+     * a posição de pChave, ou -(posição onde entraria) - 1.
+     */
+    int pesquisar(T pChave, Comparator<? super T> pComparador) {
+        int pos = primeiraPosicao(e -> pComparador.compare(e, pChave) >= 0);
+        if (pos < tamanho() && pComparador.compare(obter(pos), pChave) == 0) return pos;
+        return -(pos + 1);
+    }//pesquisar
+
+    /**
+     * Percorre a partir de pDe, bloco a bloco (sem pesquisar cada posição).
+     */
+    Iterator<T> percorrer(int pDe) {
+        Objects.checkIndex(pDe, tamanho() + 1);
+        return new Iterator<T>() {
+            private int mBloco = pDe < tamanho() ? bloco(pDe) : mBlocos.length;
+            private int mPos = mBloco < mBlocos.length ? pDe - mInicios[mBloco] : 0;
+
+            @Override
+            public boolean hasNext() {
+                return mBloco < mBlocos.length;
+            }//hasNext
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Object[] bloco = mBlocos[mBloco];
+                T valor = (T) bloco[mPos++];
+                if (mPos == bloco.length) {
+                    mBloco++;
+                    mPos = 0;
+                }//if
+                return valor;
+            }//next
+        };
+    }//percorrer
+
+    /**
+     * A lista como List só de leitura, sem cópia, com cada elemento
+     * convertido por pConversao (ex: de um registo para o seu ativo).
+     */
+    <R> List<R> comoLista(Function<? super T, ? extends R> pConversao) {
+        return new Vista<>(this, pConversao);
+    }//comoLista
+
+    List<T> comoLista() {
+        return comoLista(Function.identity());
+    }//comoLista
+
+    //--------------------------------------------------
+    // Alterações (devolvem uma lista nova; esta não muda)
+    //--------------------------------------------------
+    ListaPersistente<T> inserir(int pPosicao, T pValor) {
+        Objects.checkIndex(pPosicao, tamanho() + 1);
+        if (mBlocos.length == 0) {
+            return new ListaPersistente<>(new Object[][] {{pValor}}, new int[] {0, 1});
+        }//if
+
+        // No fim entra no último bloco
+        int b = pPosicao == tamanho() ? mBlocos.length - 1 : bloco(pPosicao);
+        Object[] antigo = mBlocos[b];
+        int i = pPosicao - mInicios[b];
+        Object[] novo = new Object[antigo.length + 1];
+        System.arraycopy(antigo, 0, novo, 0, i);
+        novo[i] = pValor;
+        System.arraycopy(antigo, i, novo, i + 1, antigo.length - i);
+
+        if (novo.length <= MAXIMO_BLOCO) {
+            return trocarBlocos(b, 1, novo);
+        }//if
+        // Bloco cheio: divide-se em dois
+        int metade = novo.length / 2;
+        return trocarBlocos(b, 1, Arrays.copyOfRange(novo, 0, metade), Arrays.copyOfRange(novo, metade, novo.length));
+    }//inserir
+
+    ListaPersistente<T> remover(int pPosicao) {
+        Objects.checkIndex(pPosicao, tamanho());
+        int b = bloco(pPosicao);
+        Object[] antigo = mBlocos[b];
+        if (antigo.length == 1) {
+            return trocarBlocos(b, 1);
+        }//if
+
+        int i = pPosicao - mInicios[b];
+        Object[] novo = new Object[antigo.length - 1];
+        System.arraycopy(antigo, 0, novo, 0, i);
+        System.arraycopy(antigo, i + 1, novo, i, novo.length - i);
+
+        // Blocos muito pequenos juntam-se a um vizinho: a tabela não cresce sem fim
+        if (novo.length < MINIMO_BLOCO) {
+            if (b + 1 < mBlocos.length && novo.length + mBlocos[b + 1].length <= BLOCO_INICIAL) {
+                return trocarBlocos(b, 2, juntar(novo, mBlocos[b + 1]));
+            }//if
+            if (b > 0 && mBlocos[b - 1].length + novo.length <= BLOCO_INICIAL) {
+                return trocarBlocos(b - 1, 2, juntar(mBlocos[b - 1], novo));
+            }//if
+        }//if
+        return trocarBlocos(b, 1, novo);
+    }//remover
+
+    ListaPersistente<T> substituir(int pPosicao, T pValor) {
+        Objects.checkIndex(pPosicao, tamanho());
+        int b = bloco(pPosicao);
+        Object[] novo = mBlocos[b].clone();
+        novo[pPosicao - mInicios[b]] = pValor;
+        return trocarBlocos(b, 1, novo);
+    }//substituir
+
+    //--------------------------------------------------
+    // Auxiliares
+    //--------------------------------------------------
+
+    // Bloco que contém a posição (0 <= pPosicao < tamanho())
+    private int bloco(int pPosicao) {
+        int inicio = 0;
+        int fim = mBlocos.length - 1;
+        while (inicio < fim) {
+            int meio = (inicio + fim + 1) >>> 1;
+            if (mInicios[meio] <= pPosicao) {
+                inicio = meio;
+            } else {
+                fim = meio - 1;
+            }//else
+        }//while
+        return inicio;
+    }//bloco
+
+    /**
+     * Lista nova com os pQuantos blocos a partir de pDe trocados por pNovos.
+     * Copia só a tabela de blocos; os blocos não tocados são partilhados.
+     */
+    private ListaPersistente<T> trocarBlocos(int pDe, int pQuantos, Object[]... pNovos) {
+        int total = mBlocos.length - pQuantos + pNovos.length;
+        Object[][] blocos = new Object[total][];
+        System.arraycopy(mBlocos, 0, blocos, 0, pDe);
+        System.arraycopy(pNovos, 0, blocos, pDe, pNovos.length);
+        System.arraycopy(mBlocos, pDe + pQuantos, blocos, pDe + pNovos.length, mBlocos.length - pDe - pQuantos);
+
+        int[] inicios = new int[total + 1];
+        System.arraycopy(mInicios, 0, inicios, 0, pDe + 1);
+        for (int b = pDe; b < total; b++) {
+            inicios[b + 1] = inicios[b] + blocos[b].length;
+        }//for
+        return new ListaPersistente<>(blocos, inicios);
+    }//trocarBlocos
+
+    private static Object[] juntar(Object[] pA, Object[] pB) {
+        Object[] junto = Arrays.copyOf(pA, pA.length + pB.length);
+        System.arraycopy(pB, 0, junto, pA.length, pB.length);
+        return junto;
+    }//juntar
+
+    //--------------------------------------------------
+    // List só de leitura sobre uma versão da lista
+    //--------------------------------------------------
+    private static final class Vista<T, R> extends AbstractList<R> implements RandomAccess {
+        private final ListaPersistente<T> mLista;
+        private final Function<? super T, ? extends R> mConversao;
+
+        Vista(ListaPersistente<T> pLista, Function<? super T, ? extends R> pConversao) {
+            this.mLista = pLista;
+            this.mConversao = pConversao;
+        }//construtor Vista
+
+        @Override
+        public R get(int pIndice) {
+            return mConversao.apply(mLista.obter(pIndice));
+        }//get
+
+        @Override
+        public int size() {
+            return mLista.tamanho();
+        }//size
+
+        @Override
+        public Iterator<R> iterator() {
+            Iterator<T> elementos = mLista.percorrer(0);
+            return new Iterator<R>() {
+                @Override
+                public boolean hasNext() {
+                    return elementos.hasNext();
+                }//hasNext
+
+                @Override
+                public R next() {
+                    return mConversao.apply(elementos.next());
+                }//next
+            };
+        }//iterator
+    }//classe Vista
+
+}//classe ListaPersistente
@@ -0,0 +1,32 @@
+// OuvinteCarteira.java
+package sistemacotacoes.gestao;
+
+import sistemacotacoes.modelo.Ativo;
+
+/**
+ * Interessado nas alterações de uma Carteira (ex: o diário que as
+ * grava em disco, ver DiarioCarteira).
+ *
+ * Os avisos são dados depois de cada alteração, já sem o trinco da
+ * carteira, por uma thread de cada vez: chegam pela mesma ordem em que
+ * as alterações aconteceram. Devem ser rápidos (quem alterou espera pela
+ * entrega) e não podem alterar a carteira nem esperar por I/O.
+ * Uma exceção lançada num aviso é ignorada (conta em
+ * Carteira.getErrosOuvintes): a alteração e os outros ouvintes seguem.
+ *
+ * Demonstra: INTERFACE (padrão Observer)
+ */
+public interface OuvinteCarteira {
+
+    void adicionado(Carteira pCarteira, Ativo pAtivo);
+
+    void removido(Carteira pCarteira, Ativo pAtivo);
+
+    /**
+     * Cotação de um ativo da carteira alterada. Uma cotação seguinte pode
+     * já ter chegado: leia-se pAtivo.obterCotacao() para ter valores
+     * coerentes (talvez os mais recentes, cujo aviso vem a seguir).
+     */
+    void cotacaoAtualizada(Carteira pCarteira, Ativo pAtivo);
+
+}//interface OuvinteCarteira
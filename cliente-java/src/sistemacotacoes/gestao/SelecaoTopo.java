@@ -0,0 +1,105 @@
+// SelecaoTopo.java
+package sistemacotacoes.gestao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Os K primeiros elementos de uma lista segundo uma ordem, sem a ordenar.
+ *
+ * Usa um heap limitado a K elementos cujo topo é o "pior" dos guardados:
+ * cada elemento novo só entra se for melhor do que esse, trocando-o.
+ * Custo O(n log K) em vez de O(n log n), e a lista original não é alterada.
+ *
+ * Uso interno da Carteira.
+ */
+final class SelecaoTopo {
+
+    // Abaixo disto, dividir pelos núcleos custa mais do que ganha
+    static final int LIMIAR_PARALELO = 50_000;
+
+    private SelecaoTopo() {
+    }//construtor SelecaoTopo
+
+    /**
+     * Os pK primeiros de pItens pela ordem pOrdem, já ordenados.
+     */
+    static <T> List<T> selecionar(List<T> pItens, Comparator<? super T> pOrdem, int pK) {
+        return selecionar(pItens, 0, pItens.size(), pOrdem, pK);
+    }//selecionar
+
+    /**
+     * Igual a selecionar, mas divide a lista pelos núcleos disponíveis:
+     * cada parte escolhe os seus K primeiros e no fim escolhem-se os K
+     * primeiros dessas escolhas (no máximo K × partes elementos).
+     */
+    static <T> List<T> selecionarParalelo(List<T> pItens, Comparator<? super T> pOrdem, int pK) {
+        int n = pItens.size();
+        int partes = Runtime.getRuntime().availableProcessors();
+        if (n < LIMIAR_PARALELO || partes < 2) {
+            return selecionar(pItens, pOrdem, pK);
+        }//if
+
+        int tamanhoParte = (n + partes - 1) / partes;
+        List<T> candidatos = IntStream.range(0, partes)
+            .parallel()
+            .mapToObj(p -> selecionar(pItens, p * tamanhoParte,
+                Math.min(n, (p + 1) * tamanhoParte), pOrdem, pK))
+            .flatMap(List::stream)
+            .collect(Collectors.toList());
+        return selecionar(candidatos, pOrdem, pK);
+    }//selecionarParalelo
+
+    private static <T> List<T> selecionar(List<T> pItens, int pInicio, int pFim,
+                                          Comparator<? super T> pOrdem, int pK) {
+        if (pK <= 0 || pInicio >= pFim) return Collections.emptyList();
+
+        Limitado<T> heap = new Limitado<>(pOrdem, pK, pFim - pInicio);
+        for (int i = pInicio; i < pFim; i++) {
+            heap.oferecer(pItens.get(i));
+        }//for
+        return heap.paraLista();
+    }//selecionar
+
+    //--------------------------------------------------
+    // Heap limitado aos K melhores (também usado pela Consulta)
+    //--------------------------------------------------
+    static final class Limitado<T> {
+        private final Comparator<? super T> mOrdem;
+        private final int mK;
+        // Topo do heap = o pior dos K guardados
+        private final PriorityQueue<T> mHeap;
+
+        Limitado(Comparator<? super T> pOrdem, int pK, int pTamanhoPrevisto) {
+            this.mOrdem = pOrdem;
+            this.mK = pK;
+            this.mHeap = new PriorityQueue<>(Math.max(1, Math.min(pK, pTamanhoPrevisto)),
+                Collections.reverseOrder(pOrdem));
+        }//construtor Limitado
+
+        void oferecer(T pItem) {
+            if (mK <= 0) return;
+            if (mHeap.size() < mK) {
+                mHeap.add(pItem);
+            } else if (mOrdem.compare(pItem, mHeap.peek()) < 0) {
+                mHeap.poll();
+                mHeap.add(pItem);
+            }//else if
+        }//oferecer
+
+        /**
+         * Os guardados, do melhor para o pior.
+         */
+        List<T> paraLista() {
+            List<T> resultado = new ArrayList<>(mHeap);
+            resultado.sort(mOrdem);
+            return resultado;
+        }//paraLista
+    }//classe Limitado
+
+}//classe SelecaoTopo
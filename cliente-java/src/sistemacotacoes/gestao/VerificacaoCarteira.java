@@ -0,0 +1,113 @@
+// VerificacaoCarteira.java
+package sistemacotacoes.gestao;
+
+import sistemacotacoes.modelo.Ativo;
+import sistemacotacoes.enums.CriterioOrdenacao;
+import sistemacotacoes.enums.TipoAtivo;
+import sistemacotacoes.fabrica.FabricaAtivos;
+import sistemacotacoes.util.BoolEMensagem;
+import java.util.*;
+
+/**
+ * Verifica as estatísticas e os índices mantidos pela Carteira contra
+ * os calculados de raiz (verificarAgregados), depois de cada passo de uma
+ * sequência aleatória de adicionar, remover, atualizar cotações, adicionar
+ * muitos de uma vez e mudar de critério.
+ *
+ * Uso: java sistemacotacoes.gestao.VerificacaoCarteira [passos] [semente]
+ * (por defeito 20000 passos, semente 42). Executa sem a API Python.
+ * Termina com código 1 à primeira divergência.
+ */
+public class VerificacaoCarteira {
+
+    private static final CriterioOrdenacao[] CRITERIOS = CriterioOrdenacao.values();
+    private static final TipoAtivo[] TIPOS = TipoAtivo.values();
+    // Poucos tickers: há repetidos, remoções de ativos que existem e empates
+    private static final int TICKERS = 300;
+
+    public static void main(String[] args) {
+        int passos = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        long semente = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+
+        Random aleatorio = new Random(semente);
+        Carteira carteira = new Carteira("Verificação", TICKERS);
+        int[] contagem = new int[5];
+
+        System.out.printf("%n── VERIFICAÇÃO: %d passos (semente %d) ──%n", passos, semente);
+        for (int passo = 1; passo <= passos; passo++) {
+            int operacao = escolherOperacao(aleatorio);
+            contagem[operacao]++;
+            String descricao = executar(carteira, operacao, aleatorio);
+
+            BoolEMensagem resultado = carteira.verificarAgregados();
+            if (resultado.falhou()) {
+                System.out.printf("❌ Passo %d (%s): %s%n", passo, descricao, resultado.getMensagem());
+                System.exit(1);
+            }//if
+        }//for
+
+        System.out.printf("  adicionar: %d | remover: %d | cotações: %d | em bloco: %d | ordenar: %d%n",
+            contagem[0], contagem[1], contagem[2], contagem[3], contagem[4]);
+        System.out.println("✅ " + carteira.verificarAgregados().getMensagem());
+    }//main
+
+    // Mais cotações do que alterações da composição, como na aplicação
+    private static int escolherOperacao(Random pAleatorio) {
+        int sorteio = pAleatorio.nextInt(100);
+        if (sorteio < 25) return 0;
+        if (sorteio < 40) return 1;
+        if (sorteio < 90) return 2;
+        if (sorteio < 93) return 3;
+        return 4;
+    }//escolherOperacao
+
+    private static String executar(Carteira pCarteira, int pOperacao, Random pAleatorio) {
+        switch (pOperacao) {
+            case 0: {
+                Ativo ativo = gerarAtivo(pAleatorio);
+                pCarteira.adicionar(ativo);
+                return "adicionar " + ativo.getTicker();
+            }
+            case 1: {
+                String ticker = gerarTicker(pAleatorio);
+                pCarteira.removerPorTicker(ticker);
+                return "remover " + ticker;
+            }
+            case 2: {
+                String ticker = gerarTicker(pAleatorio);
+                // Valores repetidos de propósito: empates nas vistas ordenadas
+                pCarteira.atualizarCotacao(ticker, 1 + pAleatorio.nextInt(50),
+                    pAleatorio.nextInt(21) - 10, pAleatorio.nextInt(1000));
+                return "cotação " + ticker;
+            }
+            case 3: {
+                List<Ativo> ativos = new ArrayList<>();
+                int quantos = 1 + pAleatorio.nextInt(40);
+                for (int i = 0; i < quantos; i++) {
+                    ativos.add(gerarAtivo(pAleatorio));
+                }//for
+                pCarteira.adicionarTodos(ativos);
+                return "adicionarTodos (" + quantos + ")";
+            }
+            default: {
+                // null volta à ordem da carteira
+                int i = pAleatorio.nextInt(CRITERIOS.length + 1);
+                CriterioOrdenacao criterio = i < CRITERIOS.length ? CRITERIOS[i] : null;
+                pCarteira.ordenar(criterio);
+                // Pedir outra vista também a constrói e passa a mantê-la
+                pCarteira.obterOrdenados(CRITERIOS[pAleatorio.nextInt(CRITERIOS.length)]);
+                return "ordenar " + criterio;
+            }
+        }//switch
+    }//executar
+
+    private static Ativo gerarAtivo(Random pAleatorio) {
+        return FabricaAtivos.criarAtivo(TIPOS[pAleatorio.nextInt(TIPOS.length)], gerarTicker(pAleatorio),
+            "Ativo", 1 + pAleatorio.nextInt(50), pAleatorio.nextInt(21) - 10, pAleatorio.nextInt(1000));
+    }//gerarAtivo
+
+    private static String gerarTicker(Random pAleatorio) {
+        return "V" + pAleatorio.nextInt(TICKERS);
+    }//gerarTicker
+
+}//classe VerificacaoCarteira
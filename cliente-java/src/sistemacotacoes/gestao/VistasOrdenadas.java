@@ -0,0 +1,217 @@
+// VistasOrdenadas.java
+package sistemacotacoes.gestao;
+
+import sistemacotacoes.enums.CriterioOrdenacao;
+import sistemacotacoes.fabrica.FabricaAtivos;
+import sistemacotacoes.modelo.Ativo;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Listas da carteira já ordenadas, uma por CriterioOrdenacao.
+ *
+ * - Cada vista só é construída (ordenação completa) quando é pedida
+ * - Depois disso é mantida a cada alteração: o registo é procurado e
+ *   inserido por pesquisa binária, sem voltar a ordenar tudo
+ * - Cada vista é uma ListaPersistente: uma alteração cria a versão
+ *   seguinte sem mudar a anterior, que a Carteira pode ter publicado
+ *   numa fotografia (ver publicadas)
+ *
+ * As vistas guardam Registos (o ativo e uma cópia dos valores pelos quais
+ * está ordenado), não o Ativo: a ordem nunca depende de valores que outra
+ * thread esteja a mudar, e o registo antigo de um ativo encontra-se por
+ * pesquisa binária mesmo depois de a cotação dele mudar.
+ *
+ * As vistas ascendentes servem também de índices para intervalos
+ * (ex: variação entre -8% e -3%), ver intervalo.
+ *
+ * Uso interno da Carteira: as alterações são feitas com o trinco dela.
+ */
+class VistasOrdenadas {
+
+    // values() cria um array novo a cada chamada; as vistas são alteradas a cada cotação
+    private static final CriterioOrdenacao[] CRITERIOS = CriterioOrdenacao.values();
+    // Comparador de cada critério aplicado às cópias guardadas (índice = ordinal)
+    private static final Comparator<Registo>[] COMPARADORES = criarComparadores();
+    private static final Function<Registo, Ativo> ATIVO = r -> r.mAtivo;
+
+    // Versão atual de cada vista; null = ainda não foi pedida
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ListaPersistente<Registo>[] mVistas = new ListaPersistente[CRITERIOS.length];
+
+    //--------------------------------------------------
+    // Registo: um ativo e os valores com que foi ordenado
+    //--------------------------------------------------
+
+    /**
+     * Imutável: uma cotação nova dá um Registo novo, que substitui
+     * este nas vistas (ver substituir).
+     */
+    static final class Registo {
+        final Ativo mAtivo;
+        // Cópia com a cotação da altura: é nela que os comparadores leem
+        final Ativo mFoto;
+        // Número de inserção na carteira (repõe a ordem da carteira)
+        final long mInsercao;
+
+        Registo(Ativo pAtivo, long pInsercao) {
+            // Valores da mesma atualização, mesmo sem o ativo bloqueado
+            Ativo.Cotacao cotacao = pAtivo.obterCotacao();
+            this.mAtivo = pAtivo;
+            this.mFoto = FabricaAtivos.criarAtivo(pAtivo.obterTipo(), pAtivo.getTicker(), pAtivo.getNome(),
+                cotacao.getPreco(), cotacao.getVariacao(), cotacao.getVolume());
+            this.mInsercao = pInsercao;
+        }//construtor Registo
+
+        private Registo(Registo pOrigem, long pInsercao) {
+            this.mAtivo = pOrigem.mAtivo;
+            this.mFoto = pOrigem.mFoto;
+            this.mInsercao = pInsercao;
+        }//construtor Registo
+
+        // Os mesmos valores com outro número de inserção (sem nova cópia)
+        Registo comInsercao(long pInsercao) {
+            return new Registo(this, pInsercao);
+        }//comInsercao
+
+        // Os valores guardados são os do ativo agora? (verificação de consistência)
+        boolean atualizado() {
+            return mFoto.getPreco() == mAtivo.getPreco()
+                && mFoto.getVariacao() == mAtivo.getVariacao()
+                && mFoto.getVolume() == mAtivo.getVolume();
+        }//atualizado
+    }//classe Registo
+
+    //--------------------------------------------------
+    // Leitura de uma vista publicada (sem trinco)
+    //--------------------------------------------------
+
+    /**
+     * Os ativos da vista, pela ordem dela (só de leitura, sem cópia).
+     */
+    static List<Ativo> ativos(ListaPersistente<Registo> pVista) {
+        return pVista.comoLista(ATIVO);
+    }//ativos
+
+    /**
+     * Registos com pMinimo <= valor <= pMaximo, por ordem crescente do
+     * valor, lido da cópia guardada em cada registo. A vista tem de ser
+     * de um critério que ordena por pValor de forma crescente (ex:
+     * POR_PRECO com Ativo::getPreco). Pesquisa binária do início e
+     * leitura até ao fim do intervalo: O(log n + k).
+     */
+    static List<Registo> intervalo(ListaPersistente<Registo> pVista, ToDoubleFunction<Ativo> pValor,
+                                   double pMinimo, double pMaximo) {
+        // Negado: um NaN (ordenado no fim) conta como "depois do mínimo"
+        int inicio = pVista.primeiraPosicao(r -> !(pValor.applyAsDouble(r.mFoto) < pMinimo));
+
+        List<Registo> resultado = new ArrayList<>();
+        for (Iterator<Registo> i = pVista.percorrer(inicio); i.hasNext(); ) {
+            Registo r = i.next();
+            if (!(pValor.applyAsDouble(r.mFoto) <= pMaximo)) break;
+            resultado.add(r);
+        }//for
+        return resultado;
+    }//intervalo
+
+    //--------------------------------------------------
+    // Alterações (com o trinco da carteira)
+    //--------------------------------------------------
+    boolean existe(CriterioOrdenacao pCriterio) {
+        return mVistas[pCriterio.ordinal()] != null;
+    }//existe
+
+    /**
+     * Ordena todos os registos pelo critério (O(n log n)).
+     */
+    void construir(CriterioOrdenacao pCriterio, Collection<Registo> pTodos) {
+        List<Registo> ordenados = new ArrayList<>(pTodos);
+        ordenados.sort(COMPARADORES[pCriterio.ordinal()]);
+        mVistas[pCriterio.ordinal()] = ListaPersistente.de(ordenados);
+    }//construir
+
+    /**
+     * Volta a construir as vistas já pedidas (ex: muitos ativos de uma vez).
+     */
+    void reconstruir(Collection<Registo> pTodos) {
+        for (CriterioOrdenacao c : CRITERIOS) {
+            if (existe(c)) construir(c, pTodos);
+        }//for
+    }//reconstruir
+
+    void inserir(Registo pRegisto) {
+        for (int i = 0; i < mVistas.length; i++) {
+            ListaPersistente<Registo> vista = mVistas[i];
+            if (vista == null) continue;
+            int pos = vista.pesquisar(pRegisto, COMPARADORES[i]);
+            if (pos < 0) mVistas[i] = vista.inserir(-(pos + 1), pRegisto);
+        }//for
+    }//inserir
+
+    void retirar(Registo pRegisto) {
+        for (int i = 0; i < mVistas.length; i++) {
+            ListaPersistente<Registo> vista = mVistas[i];
+            if (vista == null) continue;
+            int pos = vista.pesquisar(pRegisto, COMPARADORES[i]);
+            if (pos >= 0) mVistas[i] = vista.remover(pos);
+        }//for
+    }//retirar
+
+    /**
+     * Troca o registo de um ativo pelo da sua cotação nova. Se o novo
+     * continua bem posicionado entre os vizinhos fica no mesmo lugar (só
+     * o bloco dele é copiado); senão sai e volta a entrar por pesquisa
+     * binária. pTodos (já com pNovo) só é usado se uma vista não tiver
+     * pAntigo: essa é construída de novo.
+     */
+    void substituir(Registo pAntigo, Registo pNovo, Collection<Registo> pTodos) {
+        for (CriterioOrdenacao c : CRITERIOS) {
+            ListaPersistente<Registo> vista = mVistas[c.ordinal()];
+            if (vista == null) continue;
+            Comparator<Registo> comparador = COMPARADORES[c.ordinal()];
+
+            int pos = vista.pesquisar(pAntigo, comparador);
+            if (pos < 0) {
+                construir(c, pTodos);
+                continue;
+            }//if
+
+            boolean ordenadoEsquerda = pos == 0 || comparador.compare(vista.obter(pos - 1), pNovo) < 0;
+            boolean ordenadoDireita = pos == vista.tamanho() - 1 || comparador.compare(pNovo, vista.obter(pos + 1)) < 0;
+            if (ordenadoEsquerda && ordenadoDireita) {
+                mVistas[c.ordinal()] = vista.substituir(pos, pNovo);
+            } else {
+                vista = vista.remover(pos);
+                mVistas[c.ordinal()] = vista.inserir(-(vista.pesquisar(pNovo, comparador) + 1), pNovo);
+            }//else
+        }//for
+    }//substituir
+
+    /**
+     * As versões atuais de todas as vistas (null = não pedida), para uma
+     * fotografia: as alterações seguintes já não as mudam.
+     */
+    ListaPersistente<Registo>[] publicadas() {
+        return mVistas.clone();
+    }//publicadas
+
+    ListaPersistente<Registo> obter(CriterioOrdenacao pCriterio) {
+        return mVistas[pCriterio.ordinal()];
+    }//obter
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<Registo>[] criarComparadores() {
+        Comparator<Registo>[] comparadores = new Comparator[CRITERIOS.length];
+        for (CriterioOrdenacao c : CRITERIOS) {
+            Comparator<Ativo> estavel = c.getComparadorEstavel();
+            comparadores[c.ordinal()] = (pA, pB) -> estavel.compare(pA.mFoto, pB.mFoto);
+        }//for
+        return comparadores;
+    }//criarComparadores
+
+}//classe VistasOrdenadas
@@ -11,6 +11,9 @@ import sistemacotacoes.enums.TipoAtivo;
  */
 public class Acao extends Ativo {
 
+    // Multiplicador de risco para ações (risco base; definido em TipoAtivo)
+    private static final double MULTIPLICADOR_RISCO = TipoAtivo.ACAO.getMultiplicadorRisco();
+
     //--------------------------------------------------
     // Construtor
     //--------------------------------------------------
@@ -34,7 +37,7 @@ public class Acao extends Ativo {
      */
     @Override
     public double calcularRisco() {
-        return Math.abs(this.mVariacao) * 1.0;
+        return Math.abs(this.mVariacao) * MULTIPLICADOR_RISCO;
     }//calcularRisco
 
     /**
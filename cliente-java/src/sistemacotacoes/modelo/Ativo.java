@@ -2,6 +2,7 @@
 package sistemacotacoes.modelo;
 
 import sistemacotacoes.enums.TipoAtivo;
+import java.util.Locale;
 
 /**
  * Classe abstrata que representa um ativo financeiro genérico.
@@ -18,9 +19,22 @@ public abstract class Ativo implements Analisavel, Comparable<Ativo> {
     // Prefixo "m" = member (membro de instância)
     protected String mTicker;
     protected String mNome;
-    protected double mPreco;
-    protected double mVariacao;  // Variação percentual
-    protected long mVolume;
+    // volatile: a cotação pode ser atualizada por uma thread de fundo
+    protected volatile double mPreco;
+    protected volatile double mVariacao;  // Variação percentual
+    protected volatile long mVolume;
+
+    // Ticker normalizado (maiúsculas), calculado uma vez: chave de índices
+    protected final String mChave;
+
+    // Instante (ms) da cotação atual: cotações mais antigas são rejeitadas
+    protected volatile long mInstante;
+    // Contador de escritas: ímpar enquanto uma escrita está a meio (ver obterCotacao)
+    private volatile long mSequencia;
+
+    // Interessados nas atualizações (copiado a cada alteração; protegido por this)
+    private static final OuvinteAtivo[] SEM_OUVINTES = new OuvinteAtivo[0];
+    private OuvinteAtivo[] mOuvintes = SEM_OUVINTES;
 
     //--------------------------------------------------
     // Construtor
@@ -38,8 +52,16 @@ public abstract class Ativo implements Analisavel, Comparable<Ativo> {
         this.mPreco = pPreco;
         this.mVariacao = pVariacao;
         this.mVolume = pVolume;
+        this.mChave = normalizarTicker(pTicker);
     }//construtor Ativo
 
+    /**
+     * Forma normalizada de um ticker, usada como chave (ex: " btc-usd" -> "BTC-USD").
+     */
+    public static String normalizarTicker(String pTicker) {
+        return pTicker.trim().toUpperCase(Locale.ROOT);
+    }//normalizarTicker
+
     //--------------------------------------------------
     // Métodos Concretos (iguais para todas as subclasses)
     //--------------------------------------------------
@@ -67,6 +89,107 @@ public abstract class Ativo implements Analisavel, Comparable<Ativo> {
         return this.mVariacao > 3.0;
     }//estaEmAlta
 
+    /**
+     * Atualiza a cotação no próprio objeto (sem criar um novo Ativo),
+     * com o instante atual. Nunca é rejeitada.
+     */
+    public void atualizarCotacao(double pPreco, double pVariacao, long pVolume) {
+        atualizarCotacao(pPreco, pVariacao, pVolume, Math.max(System.currentTimeMillis(), mInstante));
+    }//atualizarCotacao
+
+    /**
+     * Atualiza a cotação no próprio objeto, se não for mais antiga do que
+     * a atual. Incrementa a versão e avisa os ouvintes (ver OuvinteAtivo).
+     *
+     * @param pInstante momento da cotação (ms desde 1970)
+     * @return false se a cotação foi rejeitada por ser obsoleta
+     */
+    public boolean atualizarCotacao(double pPreco, double pVariacao, long pVolume, long pInstante) {
+        // Rejeição barata, sem trinco (a maioria das cotações repetidas fica aqui)
+        if (pInstante < mInstante) return false;
+
+        synchronized (this) {
+            if (pInstante < mInstante) return false;
+
+            OuvinteAtivo[] ouvintes = mOuvintes;
+            int avisados = 0;
+            try {
+                for (OuvinteAtivo o : ouvintes) {
+                    o.antesDeAtualizar(this);
+                    avisados++;
+                }//for
+
+                mSequencia++;  // ímpar: escrita em curso
+                this.mPreco = pPreco;
+                this.mVariacao = pVariacao;
+                this.mVolume = pVolume;
+                this.mInstante = pInstante;
+                mSequencia++;  // par: escrita concluída
+            } finally {
+                // Quem recebeu "antes" recebe sempre "depois", mesmo que um
+                // dos anteriores falhe (senão ficaria com o trinco preso)
+                RuntimeException erro = null;
+                for (int i = 0; i < avisados; i++) {
+                    try {
+                        ouvintes[i].depoisDeAtualizar(this);
+                    } catch (RuntimeException e) {
+                        if (erro == null) erro = e;
+                        else erro.addSuppressed(e);
+                    }//catch
+                }//for
+                if (erro != null) throw erro;
+            }//finally
+        }//synchronized
+        return true;
+    }//atualizarCotacao
+
+    /**
+     * Cotação coerente (preço, variação e volume da mesma atualização),
+     * lida sem trinco: se uma escrita acontecer a meio, lê-se de novo.
+     */
+    public Cotacao obterCotacao() {
+        while (true) {
+            long antes = mSequencia;
+            if ((antes & 1) == 0) {
+                double preco = mPreco;
+                double variacao = mVariacao;
+                long volume = mVolume;
+                long instante = mInstante;
+                if (mSequencia == antes) {
+                    return new Cotacao(preco, variacao, volume, instante, antes >>> 1);
+                }//if
+            }//if
+            Thread.onSpinWait();
+        }//while
+    }//obterCotacao
+
+    //--------------------------------------------------
+    // Ouvintes (padrão Observer)
+    //--------------------------------------------------
+    public synchronized void adicionarOuvinte(OuvinteAtivo pOuvinte) {
+        // Mantidos por ordem crescente de getOrdem (ver OuvinteAtivo)
+        int i = 0;
+        while (i < mOuvintes.length && mOuvintes[i].getOrdem() <= pOuvinte.getOrdem()) i++;
+
+        OuvinteAtivo[] novos = new OuvinteAtivo[mOuvintes.length + 1];
+        System.arraycopy(mOuvintes, 0, novos, 0, i);
+        novos[i] = pOuvinte;
+        System.arraycopy(mOuvintes, i, novos, i + 1, mOuvintes.length - i);
+        mOuvintes = novos;
+    }//adicionarOuvinte
+
+    public synchronized void removerOuvinte(OuvinteAtivo pOuvinte) {
+        for (int i = 0; i < mOuvintes.length; i++) {
+            if (mOuvintes[i] == pOuvinte) {
+                OuvinteAtivo[] novos = new OuvinteAtivo[mOuvintes.length - 1];
+                System.arraycopy(mOuvintes, 0, novos, 0, i);
+                System.arraycopy(mOuvintes, i + 1, novos, i, mOuvintes.length - i - 1);
+                mOuvintes = novos;
+                return;
+            }//if
+        }//for
+    }//removerOuvinte
+
     //--------------------------------------------------
     // Métodos Abstratos (obrigatórios nas subclasses)
     //--------------------------------------------------
@@ -98,12 +221,13 @@ public abstract class Ativo implements Analisavel, Comparable<Ativo> {
         if (this == pObj) return true;
         if (!(pObj instanceof Ativo)) return false;
         Ativo outro = (Ativo) pObj;
-        return this.mTicker.equalsIgnoreCase(outro.mTicker);
+        return this.mChave.equals(outro.mChave);
     }//equals
 
     @Override
     public int hashCode() {
-        return mTicker.toUpperCase().hashCode();
+        // String guarda o seu hash: não há cálculo repetido
+        return mChave.hashCode();
     }//hashCode
 
     //--------------------------------------------------
@@ -125,9 +249,38 @@ public abstract class Ativo implements Analisavel, Comparable<Ativo> {
     // Getters (para Comparators e acesso externo)
     //--------------------------------------------------
     public String getTicker() { return mTicker; }
+    public String getChave() { return mChave; }
     public String getNome() { return mNome; }
     public double getPreco() { return mPreco; }
     public double getVariacao() { return mVariacao; }
     public long getVolume() { return mVolume; }
+    public long getInstante() { return mInstante; }
+    // Número de atualizações de cotação feitas a este ativo
+    public long getVersao() { return mSequencia >>> 1; }
+
+    //--------------------------------------------------
+    // Cotação imutável (uma versão do ativo)
+    //--------------------------------------------------
+    public static final class Cotacao {
+        private final double mPreco;
+        private final double mVariacao;
+        private final long mVolume;
+        private final long mInstante;
+        private final long mVersao;
+
+        private Cotacao(double pPreco, double pVariacao, long pVolume, long pInstante, long pVersao) {
+            this.mPreco = pPreco;
+            this.mVariacao = pVariacao;
+            this.mVolume = pVolume;
+            this.mInstante = pInstante;
+            this.mVersao = pVersao;
+        }//construtor Cotacao
+
+        public double getPreco() { return mPreco; }
+        public double getVariacao() { return mVariacao; }
+        public long getVolume() { return mVolume; }
+        public long getInstante() { return mInstante; }
+        public long getVersao() { return mVersao; }
+    }//classe Cotacao
 
 }//classe Ativo
@@ -12,8 +12,8 @@ import sistemacotacoes.enums.TipoAtivo;
  */
 public class Cripto extends Ativo {
 
-    // Multiplicador de risco para criptomoedas
-    private static final double MULTIPLICADOR_RISCO = 3.0;
+    // Multiplicador de risco para criptomoedas (definido em TipoAtivo)
+    private static final double MULTIPLICADOR_RISCO = TipoAtivo.CRIPTO.getMultiplicadorRisco();
 
     //--------------------------------------------------
     // Construtor
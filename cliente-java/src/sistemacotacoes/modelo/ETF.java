@@ -12,8 +12,8 @@ import sistemacotacoes.enums.TipoAtivo;
  */
 public class ETF extends Ativo {
 
-    // Multiplicador de risco para ETFs (menor por ser diversificado)
-    private static final double MULTIPLICADOR_RISCO = 0.5;
+    // Multiplicador de risco para ETFs (menor por ser diversificado; definido em TipoAtivo)
+    private static final double MULTIPLICADOR_RISCO = TipoAtivo.ETF.getMultiplicadorRisco();
 
     //--------------------------------------------------
     // Construtor
@@ -0,0 +1,32 @@
+// OuvinteAtivo.java
+package sistemacotacoes.modelo;
+
+/**
+ * Interessado nas alterações de cotação de um Ativo (ex: a Carteira,
+ * que mantém estatísticas e listas ordenadas a partir das cotações).
+ *
+ * Os dois avisos são dados pela thread que atualiza, com o ativo
+ * bloqueado para outras escritas:
+ * - antesDeAtualizar: os valores ainda são os antigos
+ * - depoisDeAtualizar: os valores já são os novos; é sempre chamado
+ *   quando antesDeAtualizar terminou sem exceção
+ *
+ * Demonstra: INTERFACE (padrão Observer)
+ */
+public interface OuvinteAtivo {
+
+    void antesDeAtualizar(Ativo pAtivo);
+
+    void depoisDeAtualizar(Ativo pAtivo);
+
+    /**
+     * Ordem dos avisos (crescente). Quem bloqueia um trinco em
+     * antesDeAtualizar e o liberta em depoisDeAtualizar deve ter uma
+     * ordem única, para que vários ativos adquiram os trincos sempre
+     * pela mesma ordem.
+     */
+    default long getOrdem() {
+        return 0;
+    }//getOrdem
+
+}//interface OuvinteAtivo
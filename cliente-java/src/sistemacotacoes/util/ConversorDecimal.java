@@ -0,0 +1,56 @@
+// ConversorDecimal.java
+package sistemacotacoes.util;
+
+/**
+ * Conversão de números decimais lidos dígito a dígito (mantissa + expoente)
+ * para double, sem passar por String.
+ *
+ * Usado pelos leitores que trabalham diretamente sobre bytes.
+ */
+public class ConversorDecimal {
+
+    // Potências de 10 exatamente representáveis em double (10^0 .. 10^22)
+    private static final double[] POTENCIAS_10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+        1e21, 1e22
+    };
+
+    // Maior mantissa representável exatamente num double (2^53)
+    private static final long MANTISSA_EXATA_MAX = 1L << 53;
+
+    // Número máximo de dígitos significativos que cabem num long sem overflow
+    public static final int DIGITOS_MAX = 18;
+
+    /**
+     * Converte mantissa × 10^expoente em double quando o resultado é exato
+     * (caminho rápido de Clinger: mantissa ≤ 2^53 e |expoente| ≤ 22).
+     *
+     * @return o valor, ou NaN se não for possível converter sem perda;
+     *         nesse caso o chamador deve recorrer a Double.parseDouble
+     */
+    public static double paraDouble(boolean pNegativo, long pMantissa, int pExpoente) {
+        if (pMantissa > MANTISSA_EXATA_MAX) return Double.NaN;
+
+        double valor = pMantissa;
+        if (pExpoente == 0 || pMantissa == 0) {
+            // nada a fazer
+        } else if (pExpoente > 0 && pExpoente <= 22) {
+            valor *= POTENCIAS_10[pExpoente];
+        } else if (pExpoente < 0 && pExpoente >= -22) {
+            valor /= POTENCIAS_10[-pExpoente];
+        } else {
+            return Double.NaN;
+        }//else
+        return pNegativo ? -valor : valor;
+    }//paraDouble
+
+    /**
+     * Valor de um dígito ASCII, ou -1 se o byte não for um dígito.
+     */
+    public static int digito(int pByte) {
+        int d = pByte - '0';
+        return (d >= 0 && d <= 9) ? d : -1;
+    }//digito
+
+}//classe ConversorDecimal
@@ -0,0 +1,453 @@
+// DiarioCarteira.java
+package sistemacotacoes.util;
+
+import sistemacotacoes.enums.TipoAtivo;
+import sistemacotacoes.fabrica.FabricaAtivos;
+import sistemacotacoes.gestao.Carteira;
+import sistemacotacoes.gestao.OuvinteCarteira;
+import sistemacotacoes.modelo.Ativo;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Diário de uma carteira: cada alteração (adicionar, remover, cotação) é
+ * acrescentada ao fim de um ficheiro, em vez de se reescrever a carteira
+ * inteira. O custo de cada gravação é o da alteração, não o da carteira.
+ *
+ * Ficheiros (base = caminho sem extensão, ex: "./carteira"):
+ *   base.cart       instantâneo (FicheiroCarteiraBinario), marca = geração G
+ *   base.N.diario   alterações da geração N, uma por linha:
+ *                   "crc32 evento", com o CRC em 8 dígitos hexadecimais
+ *                     A|TICKER|TIPO|NOME|PRECO|VARIACAO|VOLUME  adicionado
+ *                     R|TICKER                                  removido
+ *                     C|TICKER|PRECO|VARIACAO|VOLUME|INSTANTE   cotação
+ *
+ * - Escrita: os avisos da carteira só copiam a linha para memória; uma
+ *   thread escreve e faz fsync de tudo o que se juntou entretanto (group
+ *   commit). sincronizar() espera até o já registado estar em disco
+ * - Compactação: quando o diário passa de LIMITE_COMPACTACAO, as
+ *   alterações seguintes vão para a geração G+1 e grava-se um instantâneo
+ *   (ficheiro temporário + mudança de nome atómica). Só depois são
+ *   apagados os diários anteriores
+ * - Recuperação (abrir): lê o instantâneo e repete, por ordem, os diários
+ *   de geração ≥ G. Uma linha incompleta ou com CRC errado (ex: queda a
+ *   meio de uma escrita) marca o fim do diário e é cortada
+ *
+ * O instantâneo pode já incluir algumas alterações da geração G (foi
+ * tirado depois de ela começar, e a carteira avisa depois de alterar). Repeti-las dá o mesmo estado final:
+ * adicionar um ativo que já existe ou remover um que não existe não tem
+ * efeito, e as cotações são repetidas pela ordem original.
+ */
+public final class DiarioCarteira implements OuvinteCarteira, Closeable {
+
+    public static final String EXTENSAO_DIARIO = ".diario";
+
+    // Tamanho do diário a partir do qual se grava um instantâneo novo
+    private static final long LIMITE_COMPACTACAO = 8L << 20;  // 8 MB
+    private static final int TAMANHO_INICIAL = 16 * 1024;
+    private static final char SEPARADOR = '|';
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final Carteira mCarteira;
+    private final Path mDiretorio;
+    private final String mNomeBase;
+    private final Path mInstantaneo;
+    private final String mRelatorio;
+
+    // Protegidos por this (os avisos chegam de várias threads)
+    private final StringBuilder mLinha = new StringBuilder(128);
+    private final CRC32 mCrc = new CRC32();
+    private byte[] mPendentes = new byte[TAMANHO_INICIAL];
+    private int mTamanhoPendentes;
+    private long mRegistados;   // alterações registadas
+    private long mDuraveis;     // alterações já em disco
+    private boolean mFechado;
+    private IOException mErro;
+
+    // Só usados pela thread de escrita (e por abrir/close, antes e depois dela)
+    private byte[] mEmEscrita = new byte[TAMANHO_INICIAL];
+    private FileChannel mCanal;
+    private int mGeracao;
+    private long mTamanhoDiario;
+    private volatile int mCompactacoes;
+
+    private final Thread mEscritor;
+
+    //--------------------------------------------------
+    // Abrir (recuperação)
+    //--------------------------------------------------
+
+    /**
+     * Recupera a carteira a partir do instantâneo e dos diários (se
+     * existirem) e passa a registar as suas alterações.
+     *
+     * @param pCarteira carteira onde os ativos são repostos
+     * @param pBase caminho dos ficheiros sem extensão (ex: "./carteira")
+     */
+    public static DiarioCarteira abrir(Carteira pCarteira, Path pBase) throws IOException {
+        return new DiarioCarteira(pCarteira, pBase.toAbsolutePath());
+    }//abrir
+
+    private DiarioCarteira(Carteira pCarteira, Path pBase) throws IOException {
+        this.mCarteira = pCarteira;
+        this.mDiretorio = pBase.getParent();
+        this.mNomeBase = pBase.getFileName().toString();
+        this.mInstantaneo = mDiretorio.resolve(mNomeBase + GestorFicheiros.EXTENSAO_CART);
+        Files.createDirectories(mDiretorio);
+
+        // 1. Instantâneo
+        int geracaoInstantaneo = 0;
+        int doInstantaneo = 0;
+        if (Files.exists(mInstantaneo)) {
+            FicheiroCarteiraBinario instantaneo = FicheiroCarteiraBinario.abrir(mInstantaneo);
+            geracaoInstantaneo = instantaneo.getMarca();
+            doInstantaneo = pCarteira.adicionarTodos(instantaneo.lerTodos());
+        }//if
+
+        // 2. Diários, por geração: os anteriores ao instantâneo já estão nele
+        int[] repetidos = new int[2];  // alterações, linhas descartadas
+        int ultima = Math.max(1, geracaoInstantaneo);
+        for (var diario : listarDiarios().entrySet()) {
+            if (diario.getKey() < geracaoInstantaneo) {
+                Files.delete(diario.getValue());
+            } else {
+                repetir(diario.getValue(), repetidos);
+                ultima = Math.max(ultima, diario.getKey());
+            }//else
+        }//for
+
+        // 3. Continuar a escrever na geração mais recente
+        this.mGeracao = ultima;
+        this.mCanal = abrirDiario(ultima);
+        this.mTamanhoDiario = mCanal.size();
+        this.mRelatorio = String.format(
+            "Recuperados %d ativos do instantâneo e %d alterações do diário (%d linhas descartadas)",
+            doInstantaneo, repetidos[0], repetidos[1]);
+
+        pCarteira.adicionarOuvinte(this);
+        this.mEscritor = new Thread(this::escreverContinuamente, "diario-" + mNomeBase);
+        mEscritor.setDaemon(true);
+        mEscritor.start();
+    }//construtor DiarioCarteira
+
+    /**
+     * Diários existentes, por geração.
+     */
+    private TreeMap<Integer, Path> listarDiarios() throws IOException {
+        TreeMap<Integer, Path> diarios = new TreeMap<>();
+        String prefixo = mNomeBase + ".";
+        try (var ficheiros = Files.newDirectoryStream(mDiretorio, prefixo + "*" + EXTENSAO_DIARIO)) {
+            for (Path f : ficheiros) {
+                String nome = f.getFileName().toString();
+                String numero = nome.substring(prefixo.length(), nome.length() - EXTENSAO_DIARIO.length());
+                try {
+                    diarios.put(Integer.parseInt(numero), f);
+                } catch (NumberFormatException e) {
+                    // outro ficheiro com nome parecido: não é nosso
+                }//catch
+            }//for
+        }//try
+        return diarios;
+    }//listarDiarios
+
+    /**
+     * Aplica à carteira as linhas válidas do diário. A primeira linha
+     * inválida e tudo o que vem depois são cortados do ficheiro.
+     */
+    private void repetir(Path pDiario, int[] pContagem) throws IOException {
+        byte[] bytes = Files.readAllBytes(pDiario);
+        int inicio = 0;
+        while (inicio < bytes.length) {
+            int fim = inicio;
+            while (fim < bytes.length && bytes[fim] != '\n') fim++;
+            if (fim == bytes.length || !linhaValida(bytes, inicio, fim)) break;
+
+            String evento = new String(bytes, inicio + 9, fim - inicio - 9, StandardCharsets.UTF_8);
+            try {
+                if (aplicar(evento)) pContagem[0]++;
+            } catch (RuntimeException e) {
+                pContagem[1]++;  // CRC certo mas evento desconhecido: ignorar só esta linha
+            }//catch
+            inicio = fim + 1;
+        }//while
+
+        if (inicio < bytes.length) {
+            pContagem[1]++;
+            try (FileChannel canal = FileChannel.open(pDiario, StandardOpenOption.WRITE)) {
+                canal.truncate(inicio);
+                canal.force(true);
+            }//try
+        }//if
+    }//repetir
+
+    private boolean linhaValida(byte[] pBytes, int pInicio, int pFim) {
+        if (pFim - pInicio < 10 || pBytes[pInicio + 8] != ' ') return false;
+        mCrc.reset();
+        mCrc.update(pBytes, pInicio + 9, pFim - pInicio - 9);
+        long crc = mCrc.getValue();
+        for (int i = 0; i < 8; i++) {
+            if (pBytes[pInicio + i] != HEX[(int) (crc >>> (28 - 4 * i)) & 0xF]) return false;
+        }//for
+        return true;
+    }//linhaValida
+
+    /**
+     * @return true se a carteira mudou
+     */
+    private boolean aplicar(String pEvento) {
+        String[] campos = pEvento.split("\\|", -1);
+        switch (campos[0]) {
+            case "A": {
+                // O nome pode conter o separador: fica entre o tipo e os 3 números
+                int n = campos.length;
+                String nome = String.join("|", Arrays.copyOfRange(campos, 3, n - 3));
+                Ativo ativo = FabricaAtivos.criarAtivo(TipoAtivo.valueOf(campos[2]), campos[1], nome,
+                    Double.parseDouble(campos[n - 3]), Double.parseDouble(campos[n - 2]), Long.parseLong(campos[n - 1]));
+                return mCarteira.adicionar(ativo).sucesso();
+            }
+            case "R":
+                return mCarteira.removerPorTicker(campos[1]).sucesso();
+            case "C":
+                return mCarteira.atualizarCotacao(campos[1], Double.parseDouble(campos[2]),
+                    Double.parseDouble(campos[3]), Long.parseLong(campos[4]), Long.parseLong(campos[5]));
+            default:
+                throw new IllegalArgumentException("Evento desconhecido: " + campos[0]);
+        }//switch
+    }//aplicar
+
+    //--------------------------------------------------
+    // Registo (avisos da carteira, pela ordem das alterações)
+    //--------------------------------------------------
+    @Override
+    public synchronized void adicionado(Carteira pCarteira, Ativo pAtivo) {
+        if (!aceitaRegistos()) return;
+        Ativo.Cotacao cotacao = pAtivo.obterCotacao();  // valores da mesma cotação
+        mLinha.setLength(0);
+        mLinha.append('A').append(SEPARADOR).append(pAtivo.getTicker())
+              .append(SEPARADOR).append(pAtivo.obterTipo().name())
+              .append(SEPARADOR).append(semQuebras(pAtivo.getNome()))
+              .append(SEPARADOR).append(cotacao.getPreco())
+              .append(SEPARADOR).append(cotacao.getVariacao())
+              .append(SEPARADOR).append(cotacao.getVolume());
+        registar();
+    }//adicionado
+
+    @Override
+    public synchronized void removido(Carteira pCarteira, Ativo pAtivo) {
+        if (!aceitaRegistos()) return;
+        mLinha.setLength(0);
+        mLinha.append('R').append(SEPARADOR).append(pAtivo.getTicker());
+        registar();
+    }//removido
+
+    @Override
+    public synchronized void cotacaoAtualizada(Carteira pCarteira, Ativo pAtivo) {
+        if (!aceitaRegistos()) return;
+        mLinha.setLength(0);
+        Ativo.Cotacao cotacao = pAtivo.obterCotacao();  // valores da mesma cotação
+        mLinha.append('C').append(SEPARADOR).append(pAtivo.getTicker())
+              .append(SEPARADOR).append(cotacao.getPreco())
+              .append(SEPARADOR).append(cotacao.getVariacao())
+              .append(SEPARADOR).append(cotacao.getVolume())
+              .append(SEPARADOR).append(cotacao.getInstante());
+        registar();
+    }//cotacaoAtualizada
+
+    // Chamado com this bloqueado
+    private boolean aceitaRegistos() {
+        return !mFechado && mErro == null;
+    }//aceitaRegistos
+
+    // Acrescenta mLinha (com CRC e fim de linha) às pendentes; chamado com this bloqueado
+    private void registar() {
+        byte[] evento = mLinha.toString().getBytes(StandardCharsets.UTF_8);
+        int necessario = mTamanhoPendentes + 10 + evento.length;
+        if (necessario > mPendentes.length) {
+            mPendentes = Arrays.copyOf(mPendentes, Math.max(necessario, mPendentes.length * 2));
+        }//if
+
+        mCrc.reset();
+        mCrc.update(evento);
+        long crc = mCrc.getValue();
+        for (int i = 0; i < 8; i++) {
+            mPendentes[mTamanhoPendentes++] = HEX[(int) (crc >>> (28 - 4 * i)) & 0xF];
+        }//for
+        mPendentes[mTamanhoPendentes++] = ' ';
+        System.arraycopy(evento, 0, mPendentes, mTamanhoPendentes, evento.length);
+        mTamanhoPendentes += evento.length;
+        mPendentes[mTamanhoPendentes++] = '\n';
+
+        mRegistados++;
+        notifyAll();
+    }//registar
+
+    private static String semQuebras(String pTexto) {
+        return pTexto.replace('\n', ' ').replace('\r', ' ');
+    }//semQuebras
+
+    //--------------------------------------------------
+    // Escrita em disco (thread própria)
+    //--------------------------------------------------
+    private void escreverContinuamente() {
+        try {
+            while (true) {
+                int tamanho;
+                long alvo;
+                boolean compactar;
+                synchronized (this) {
+                    while (mTamanhoPendentes == 0 && !mFechado) wait();
+                    if (mTamanhoPendentes == 0) return;  // fechado e tudo escrito
+
+                    // Troca de buffers: os avisos continuam a registar no outro
+                    byte[] lote = mPendentes;
+                    mPendentes = mEmEscrita;
+                    mEmEscrita = lote;
+                    tamanho = mTamanhoPendentes;
+                    mTamanhoPendentes = 0;
+                    alvo = mRegistados;
+                    compactar = !mFechado && mTamanhoDiario + tamanho >= LIMITE_COMPACTACAO;
+                }//synchronized
+
+                // Um só write + fsync para todas as alterações que se juntaram
+                ByteBuffer bytes = ByteBuffer.wrap(mEmEscrita, 0, tamanho);
+                while (bytes.hasRemaining()) {
+                    mCanal.write(bytes);
+                }//while
+                mCanal.force(false);
+                mTamanhoDiario += tamanho;
+
+                synchronized (this) {
+                    mDuraveis = alvo;
+                    notifyAll();
+                }//synchronized
+
+                if (compactar) compactar();
+            }//while
+        } catch (IOException e) {
+            synchronized (this) {
+                mErro = e;
+                notifyAll();
+            }//synchronized
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }//catch
+    }//escreverContinuamente
+
+    /**
+     * Grava um instantâneo e descarta os diários que ele substitui.
+     * Corre na thread de escrita, entre dois lotes.
+     */
+    private void compactar() throws IOException {
+        // 1. Nova geração: os lotes seguintes já vão para o diário novo.
+        //    O instantâneo é tirado depois: inclui tudo o que está nos anteriores
+        int nova = mGeracao + 1;
+        FileChannel novo = abrirDiario(nova);
+        mCanal.close();
+        mCanal = novo;
+        mGeracao = nova;
+        mTamanhoDiario = 0;
+        sincronizarDiretorio();
+
+        // 2. Instantâneo: ficheiro temporário, fsync e mudança de nome atómica
+        Path temporario = mDiretorio.resolve(mNomeBase + GestorFicheiros.EXTENSAO_CART + ".tmp");
+        FicheiroCarteiraBinario.escrever(mCarteira.getAtivos(), temporario, nova);
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.WRITE)) {
+            canal.force(true);
+        }//try
+        Files.move(temporario, mInstantaneo,
+            StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        sincronizarDiretorio();
+
+        // 3. Só agora os diários anteriores deixam de ser precisos
+        for (var diario : listarDiarios().entrySet()) {
+            if (diario.getKey() < nova) Files.delete(diario.getValue());
+        }//for
+        mCompactacoes++;
+    }//compactar
+
+    private FileChannel abrirDiario(int pGeracao) throws IOException {
+        Path caminho = mDiretorio.resolve(mNomeBase + "." + pGeracao + EXTENSAO_DIARIO);
+        return FileChannel.open(caminho, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }//abrirDiario
+
+    // Torna duráveis criações e mudanças de nome (nem todos os sistemas o permitem)
+    private void sincronizarDiretorio() {
+        try (FileChannel dir = FileChannel.open(mDiretorio, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // ex: Windows não abre diretórios: fica a cargo do sistema
+        }//catch
+    }//sincronizarDiretorio
+
+    //--------------------------------------------------
+    // Sincronizar e fechar
+    //--------------------------------------------------
+
+    /**
+     * Espera até todas as alterações registadas até agora estarem em
+     * disco. Várias threads à espera partilham o mesmo fsync.
+     */
+    public void sincronizar() throws IOException {
+        synchronized (this) {
+            long alvo = mRegistados;
+            try {
+                while (mDuraveis < alvo && mErro == null && mEscritor.isAlive()) {
+                    wait(100);
+                }//while
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrompido à espera do diário", e);
+            }//catch
+            if (mErro != null) throw mErro;
+        }//synchronized
+    }//sincronizar
+
+    /**
+     * Deixa de registar, escreve o que falta e fecha o diário.
+     */
+    @Override
+    public void close() throws IOException {
+        mCarteira.removerOuvinte(this);
+        synchronized (this) {
+            if (mFechado) return;
+            mFechado = true;
+            notifyAll();
+        }//synchronized
+        try {
+            mEscritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }//catch
+        mCanal.close();
+        synchronized (this) {
+            if (mErro != null) throw mErro;
+        }//synchronized
+    }//close
+
+    //--------------------------------------------------
+    // Getters
+    //--------------------------------------------------
+    // Resultado da recuperação feita em abrir
+    public String getRelatorio() { return mRelatorio; }
+    public synchronized long getRegistados() { return mRegistados; }
+    public synchronized long getDuraveis() { return mDuraveis; }
+    public int getCompactacoes() { return mCompactacoes; }
+
+    @Override
+    public String toString() {
+        return String.format("DiarioCarteira[%s, %d registadas, %d em disco]",
+            mNomeBase, getRegistados(), getDuraveis());
+    }//toString
+
+}//classe DiarioCarteira
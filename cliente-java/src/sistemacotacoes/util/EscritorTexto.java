@@ -0,0 +1,323 @@
+// EscritorTexto.java
+package sistemacotacoes.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Escreve texto num ficheiro através de um buffer de bytes reutilizado,
+ * sem String.format nem Strings intermédias por linha.
+ *
+ * O resultado é igual, byte a byte, ao de um PrintWriter(FileWriter) com
+ * printf:
+ * - charset por defeito (FileWriter) e System.lineSeparator() (%n)
+ * - decimais como "%.Nf" no locale por defeito: arredondamento "half-up",
+ *   separador decimal do locale, "-" em negativos (também -0.0)
+ * - larguras "%-Ns" e "%Nf" contadas em caracteres (char)
+ *
+ * Os casos que o caminho rápido não garante (valor a meio entre dois
+ * arredondamentos, NaN, infinito, números enormes, locale com dígitos
+ * não latinos) passam por String.format, por isso o texto é sempre o
+ * mesmo; só muda o custo.
+ */
+public final class EscritorTexto implements Closeable {
+
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    // 10^0 .. 10^9: casas decimais suportadas no caminho rápido
+    private static final double[] POTENCIAS_10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9
+    };
+
+    // Acima disto o valor escalado deixa de caber com folga num long exato
+    private static final double ESCALADO_MAX = 1L << 52;
+
+    // Distância ao ponto médio (em ulps) abaixo da qual se usa String.format
+    private static final int MARGEM_ULPS = 4;
+
+    private final FileChannel mCanal;
+    private final byte[] mBuffer = new byte[TAMANHO_BUFFER];
+    private int mPosicao;
+
+    private final boolean mUtf8;
+    // Outros charsets: um único codificador para todo o ficheiro, como o
+    // FileWriter (mantém o estado, ex: o BOM do UTF-16 só no início)
+    private final CharsetEncoder mCodificador;
+    // ASCII escrito tal e qual, um byte por caractere
+    private final boolean mAsciiDireto;
+    private final byte[] mNovaLinha;
+
+    private final Locale mLocale;
+    private final char mSeparadorDecimal;
+    private final boolean mDigitosLatinos;
+
+    // Rascunho onde os números são montados do fim para o início
+    private final char[] mNumero = new char[32];
+    private int mInicioNumero;
+
+    //--------------------------------------------------
+    // Construtor
+    //--------------------------------------------------
+    private EscritorTexto(FileChannel pCanal) {
+        this.mCanal = pCanal;
+        Charset charset = Charset.defaultCharset();
+        this.mUtf8 = charset.equals(StandardCharsets.UTF_8);
+        this.mAsciiDireto = mUtf8 || charset.equals(StandardCharsets.ISO_8859_1)
+            || charset.equals(StandardCharsets.US_ASCII);
+        this.mCodificador = mUtf8 ? null : charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.mNovaLinha = System.lineSeparator().getBytes(charset);
+
+        this.mLocale = Locale.getDefault(Locale.Category.FORMAT);
+        DecimalFormatSymbols simbolos = DecimalFormatSymbols.getInstance(mLocale);
+        this.mSeparadorDecimal = simbolos.getDecimalSeparator();
+        this.mDigitosLatinos = simbolos.getZeroDigit() == '0';
+    }//construtor EscritorTexto
+
+    /**
+     * Cria (ou substitui) o ficheiro.
+     */
+    public static EscritorTexto abrir(Path pFicheiro) throws IOException {
+        return new EscritorTexto(FileChannel.open(pFicheiro, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }//abrir
+
+    //--------------------------------------------------
+    // Texto
+    //--------------------------------------------------
+
+    /** Como "%s". */
+    public EscritorTexto escrever(String pTexto) throws IOException {
+        if (!mUtf8) {
+            codificar(CharBuffer.wrap(pTexto), false);
+            return this;
+        }//if
+
+        int n = pTexto.length();
+        for (int i = 0; i < n; i++) {
+            char c = pTexto.charAt(i);
+            if (c < 0x80) {
+                if (mPosicao == mBuffer.length) despejar();
+                mBuffer[mPosicao++] = (byte) c;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n
+                    && Character.isLowSurrogate(pTexto.charAt(i + 1))) {
+                escreverCodigo(Character.toCodePoint(c, pTexto.charAt(++i)));
+            } else if (Character.isSurrogate(c)) {
+                escreverCodigo('?');  // como o codificador do FileWriter
+            } else {
+                escreverCodigo(c);
+            }//else
+        }//for
+        return this;
+    }//escrever
+
+    /** Como "%-Ns": texto alinhado à esquerda, completado com espaços. */
+    public EscritorTexto escreverEsquerda(String pTexto, int pLargura) throws IOException {
+        escrever(pTexto);
+        return escreverEspacos(pLargura - pTexto.length());
+    }//escreverEsquerda
+
+    /** Como "%Ns": texto alinhado à direita. */
+    public EscritorTexto escreverDireita(String pTexto, int pLargura) throws IOException {
+        escreverEspacos(pLargura - pTexto.length());
+        return escrever(pTexto);
+    }//escreverDireita
+
+    public EscritorTexto escrever(char pCaracter) throws IOException {
+        if (pCaracter < 0x80 && mAsciiDireto) {
+            if (mPosicao == mBuffer.length) despejar();
+            mBuffer[mPosicao++] = (byte) pCaracter;
+            return this;
+        }//if
+        return escrever(String.valueOf(pCaracter));
+    }//escrever
+
+    /** Como "%n". */
+    public EscritorTexto novaLinha() throws IOException {
+        if (!mAsciiDireto) return escrever(System.lineSeparator());
+        return escreverBytes(mNovaLinha);
+    }//novaLinha
+
+    //--------------------------------------------------
+    // Números
+    //--------------------------------------------------
+
+    /** Como "%d". */
+    public EscritorTexto escreverInteiro(long pValor) throws IOException {
+        if (!mDigitosLatinos || pValor == Long.MIN_VALUE) {
+            return escrever(String.format(mLocale, "%d", pValor));
+        }//if
+        int p = mNumero.length;
+        long resto = Math.abs(pValor);
+        do {
+            mNumero[--p] = (char) ('0' + resto % 10);
+            resto /= 10;
+        } while (resto != 0);
+        if (pValor < 0) mNumero[--p] = '-';
+        mInicioNumero = p;
+        return escreverNumero();
+    }//escreverInteiro
+
+    /** Como "%.Nf", com N = pCasas. */
+    public EscritorTexto escreverDecimal(double pValor, int pCasas) throws IOException {
+        return escreverDecimal(pValor, pCasas, 0, false);
+    }//escreverDecimal
+
+    /**
+     * Como "%L.Nf" (ou "%+L.Nf" com pSinal), com L = pLargura e N = pCasas:
+     * alinhado à direita em pLargura caracteres (0 = sem largura).
+     */
+    public EscritorTexto escreverDecimal(double pValor, int pCasas, int pLargura, boolean pSinal) throws IOException {
+        if (!formatarDecimal(pValor, pCasas, pSinal)) {
+            String formato = "%" + (pSinal ? "+" : "") + (pLargura > 0 ? pLargura : "") + "." + pCasas + "f";
+            return escrever(String.format(mLocale, formato, pValor));
+        }//if
+        escreverEspacos(pLargura - (mNumero.length - mInicioNumero));
+        return escreverNumero();
+    }//escreverDecimal
+
+    /**
+     * Monta o número em mNumero[mInicioNumero..].
+     *
+     * String.format arredonda "half-up" os dígitos decimais do double;
+     * arredondar o valor escalado dá o mesmo resultado, exceto quando a
+     * parte fracionária está a poucos ulps de 0,5. Nesses casos (e nos
+     * restantes que não cabem aqui) devolve false.
+     */
+    private boolean formatarDecimal(double pValor, int pCasas, boolean pSinal) {
+        if (!mDigitosLatinos || pCasas < 0 || pCasas >= POTENCIAS_10.length) return false;
+
+        double escalado = Math.abs(pValor) * POTENCIAS_10[pCasas];
+        if (!(escalado < ESCALADO_MAX)) return false;  // também NaN e infinito
+
+        long unidades = (long) escalado;
+        double fracao = escalado - unidades;
+        if (Math.abs(fracao - 0.5) <= MARGEM_ULPS * Math.ulp(escalado)) return false;
+        if (fracao > 0.5) unidades++;
+
+        int p = mNumero.length;
+        for (int i = 0; i < pCasas; i++) {
+            mNumero[--p] = (char) ('0' + unidades % 10);
+            unidades /= 10;
+        }//for
+        if (pCasas > 0) mNumero[--p] = mSeparadorDecimal;
+        do {
+            mNumero[--p] = (char) ('0' + unidades % 10);
+            unidades /= 10;
+        } while (unidades != 0);
+
+        // Bit de sinal, como o Formatter: -0.0 e -0.001 dão "-0.00"
+        if (Double.doubleToRawLongBits(pValor) < 0) {
+            mNumero[--p] = '-';
+        } else if (pSinal) {
+            mNumero[--p] = '+';
+        }//else
+        mInicioNumero = p;
+        return true;
+    }//formatarDecimal
+
+    private EscritorTexto escreverNumero() throws IOException {
+        int n = mNumero.length - mInicioNumero;
+        if (mAsciiDireto && mSeparadorDecimal < 0x80) {
+            if (mPosicao + n > mBuffer.length) despejar();
+            for (int i = mInicioNumero; i < mNumero.length; i++) {
+                mBuffer[mPosicao++] = (byte) mNumero[i];
+            }//for
+            return this;
+        }//if
+        return escrever(new String(mNumero, mInicioNumero, n));
+    }//escreverNumero
+
+    //--------------------------------------------------
+    // Bytes
+    //--------------------------------------------------
+    private EscritorTexto escreverEspacos(int pQuantidade) throws IOException {
+        for (int i = 0; i < pQuantidade; i++) {
+            escrever(' ');
+        }//for
+        return this;
+    }//escreverEspacos
+
+    // Um caractere Unicode em UTF-8
+    private void escreverCodigo(int pCodigo) throws IOException {
+        if (mPosicao + 4 > mBuffer.length) despejar();
+        if (pCodigo < 0x80) {
+            mBuffer[mPosicao++] = (byte) pCodigo;
+        } else if (pCodigo < 0x800) {
+            mBuffer[mPosicao++] = (byte) (0xC0 | (pCodigo >> 6));
+            mBuffer[mPosicao++] = (byte) (0x80 | (pCodigo & 0x3F));
+        } else if (pCodigo < 0x10000) {
+            mBuffer[mPosicao++] = (byte) (0xE0 | (pCodigo >> 12));
+            mBuffer[mPosicao++] = (byte) (0x80 | ((pCodigo >> 6) & 0x3F));
+            mBuffer[mPosicao++] = (byte) (0x80 | (pCodigo & 0x3F));
+        } else {
+            mBuffer[mPosicao++] = (byte) (0xF0 | (pCodigo >> 18));
+            mBuffer[mPosicao++] = (byte) (0x80 | ((pCodigo >> 12) & 0x3F));
+            mBuffer[mPosicao++] = (byte) (0x80 | ((pCodigo >> 6) & 0x3F));
+            mBuffer[mPosicao++] = (byte) (0x80 | (pCodigo & 0x3F));
+        }//else
+    }//escreverCodigo
+
+    private void codificar(CharBuffer pTexto, boolean pFim) throws IOException {
+        while (true) {
+            ByteBuffer saida = ByteBuffer.wrap(mBuffer, mPosicao, mBuffer.length - mPosicao);
+            CoderResult r = mCodificador.encode(pTexto, saida, pFim);
+            if (pFim && r.isUnderflow()) r = mCodificador.flush(saida);
+            mPosicao = saida.position();
+            if (!r.isOverflow()) return;
+            despejar();
+        }//while
+    }//codificar
+
+    private EscritorTexto escreverBytes(byte[] pBytes) throws IOException {
+        if (pBytes.length > mBuffer.length - mPosicao) {
+            despejar();
+            if (pBytes.length > mBuffer.length) {
+                escreverNoCanal(ByteBuffer.wrap(pBytes));
+                return this;
+            }//if
+        }//if
+        System.arraycopy(pBytes, 0, mBuffer, mPosicao, pBytes.length);
+        mPosicao += pBytes.length;
+        return this;
+    }//escreverBytes
+
+    /**
+     * Escreve no ficheiro o que está no buffer.
+     */
+    public void despejar() throws IOException {
+        if (mPosicao == 0) return;
+        escreverNoCanal(ByteBuffer.wrap(mBuffer, 0, mPosicao));
+        mPosicao = 0;
+    }//despejar
+
+    private void escreverNoCanal(ByteBuffer pBytes) throws IOException {
+        while (pBytes.hasRemaining()) {
+            mCanal.write(pBytes);
+        }//while
+    }//escreverNoCanal
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (mCodificador != null) codificar(CharBuffer.allocate(0), true);
+            despejar();
+        } finally {
+            mCanal.close();
+        }//finally
+    }//close
+
+}//classe EscritorTexto
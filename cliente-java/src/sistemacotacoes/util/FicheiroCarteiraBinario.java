@@ -0,0 +1,332 @@
+// FicheiroCarteiraBinario.java
+package sistemacotacoes.util;
+
+import sistemacotacoes.enums.TipoAtivo;
+import sistemacotacoes.fabrica.FabricaAtivos;
+import sistemacotacoes.modelo.Ativo;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Formato binário de carteira (.cart): abre sem converter texto e permite
+ * ler um único ativo pelo ticker sem percorrer o ficheiro.
+ *
+ * Estrutura (inteiros em big-endian):
+ *
+ *   Cabeçalho (32 bytes)
+ *     "CART" | versão (u16) | reservado (u16) | nº de registos (int)
+ *     | marca (int) | início das strings (long) | início do índice (long)
+ *   Registos (48 bytes cada, pela ordem da carteira)
+ *     preço (double) | variação (double) | volume (long)
+ *     | ticker (int, posição na tabela de strings) | nome (int, idem)
+ *     | tipo (byte, ordinal de TipoAtivo) | 7 bytes a zero
+ *     | instante da cotação (long, ms desde 1970)
+ *   Tabela de strings
+ *     cada string: tamanho (u16) + bytes UTF-8
+ *   Índice (no fim, 8 bytes por entrada, ordenado pelo ticker normalizado)
+ *     chave (int, posição na tabela de strings) | registo (int)
+ *
+ * O ficheiro é mapeado em memória (FileChannel.map): abrir custa O(1)
+ * e procurar um ticker é uma pesquisa binária no índice, O(log n).
+ * Ficheiros até 2 GB.
+ *
+ * A versão 1 (registos de 40 bytes, sem o instante) continua a ser lida;
+ * os ativos dela ficam com instante 0.
+ *
+ * A marca é um número livre para quem escreve (0 por defeito); o diário
+ * guarda nela a geração do instantâneo (ver DiarioCarteira).
+ *
+ * Posições de strings, tipos e números de registo são verificados ao
+ * ler: um ficheiro corrompido dá IOException, não um erro de índice.
+ */
+public class FicheiroCarteiraBinario {
+
+    private static final int MAGICO = 0x43415254;  // "CART"
+    private static final short VERSAO = 2;
+    private static final short VERSAO_SEM_INSTANTE = 1;
+    private static final int TAMANHO_CABECALHO = 32;
+    private static final int TAMANHO_REGISTO = 48;
+    private static final int TAMANHO_REGISTO_SEM_INSTANTE = 40;
+    private static final int TAMANHO_ENTRADA_INDICE = 8;
+    private static final int TAMANHO_MAX_STRING = 0xFFFF;
+
+    private static final TipoAtivo[] TIPOS = TipoAtivo.values();
+
+    private final MappedByteBuffer mBuffer;
+    private final int mTamanhoRegisto;
+    private final int mQuantidade;
+    private final int mMarca;
+    private final int mInicioStrings;
+    private final int mInicioIndice;
+
+    //--------------------------------------------------
+    // Abrir (leitura)
+    //--------------------------------------------------
+    private FicheiroCarteiraBinario(MappedByteBuffer pBuffer) throws IOException {
+        this.mBuffer = pBuffer;
+        long tamanho = pBuffer.limit();
+        if (tamanho < TAMANHO_CABECALHO || pBuffer.getInt(0) != MAGICO) {
+            throw new IOException("Não é um ficheiro .cart");
+        }//if
+        short versao = pBuffer.getShort(4);
+        if (versao == VERSAO) {
+            this.mTamanhoRegisto = TAMANHO_REGISTO;
+        } else if (versao == VERSAO_SEM_INSTANTE) {
+            this.mTamanhoRegisto = TAMANHO_REGISTO_SEM_INSTANTE;
+        } else {
+            throw new IOException("Versão de .cart não suportada: " + versao);
+        }//else
+
+        this.mQuantidade = pBuffer.getInt(8);
+        this.mMarca = pBuffer.getInt(12);
+        long inicioStrings = pBuffer.getLong(16);
+        long inicioIndice = pBuffer.getLong(24);
+        if (mQuantidade < 0
+                || inicioStrings != TAMANHO_CABECALHO + (long) mQuantidade * mTamanhoRegisto
+                || inicioIndice < inicioStrings
+                || inicioIndice + (long) mQuantidade * TAMANHO_ENTRADA_INDICE != tamanho) {
+            throw new IOException("Ficheiro .cart corrompido (tamanhos não batem certo)");
+        }//if
+        this.mInicioStrings = (int) inicioStrings;
+        this.mInicioIndice = (int) inicioIndice;
+    }//construtor FicheiroCarteiraBinario
+
+    /**
+     * Mapeia o ficheiro em memória. Nada é lido até ser pedido.
+     */
+    public static FicheiroCarteiraBinario abrir(Path pFicheiro) throws IOException {
+        try (FileChannel canal = FileChannel.open(pFicheiro, StandardOpenOption.READ)) {
+            if (canal.size() > Integer.MAX_VALUE) {
+                throw new IOException("Ficheiro .cart demasiado grande (máximo 2 GB)");
+            }//if
+            // O mapeamento continua válido depois de fechar o canal
+            return new FicheiroCarteiraBinario(canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+        }//try
+    }//abrir
+
+    //--------------------------------------------------
+    // Leitura de ativos
+    //--------------------------------------------------
+    public int getQuantidade() { return mQuantidade; }
+    public int getMarca() { return mMarca; }
+
+    /**
+     * Ativo do registo pIndice (0 .. getQuantidade()-1), pela ordem da carteira.
+     *
+     * @throws IOException se o registo estiver corrompido
+     */
+    public Ativo obter(int pIndice) throws IOException {
+        if (pIndice < 0 || pIndice >= mQuantidade) {
+            throw new IndexOutOfBoundsException("Registo " + pIndice + " de " + mQuantidade);
+        }//if
+        int r = TAMANHO_CABECALHO + pIndice * mTamanhoRegisto;
+        double preco = mBuffer.getDouble(r);
+        double variacao = mBuffer.getDouble(r + 8);
+        long volume = mBuffer.getLong(r + 16);
+        String ticker = lerString(mBuffer.getInt(r + 24));
+        String nome = lerString(mBuffer.getInt(r + 28));
+        int ordinal = mBuffer.get(r + 32);
+        if (ordinal < 0 || ordinal >= TIPOS.length) {
+            throw new IOException("Ficheiro .cart corrompido (tipo " + ordinal + " no registo " + pIndice + ")");
+        }//if
+        Ativo ativo = FabricaAtivos.criarAtivo(TIPOS[ordinal], ticker, nome, preco, variacao, volume);
+        long instante = mTamanhoRegisto == TAMANHO_REGISTO ? mBuffer.getLong(r + 40) : 0L;
+        if (instante > 0) {
+            // Repõe o instante, para que cotações mais antigas continuem a ser rejeitadas
+            ativo.atualizarCotacao(preco, variacao, volume, instante);
+        }//if
+        return ativo;
+    }//obter
+
+    /**
+     * Ativo com este ticker (sem distinguir maiúsculas), ou null.
+     * Pesquisa binária no índice: só lê log2(n) chaves e um registo.
+     */
+    public Ativo procurar(String pTicker) throws IOException {
+        if (pTicker == null) return null;
+        byte[] chave = Ativo.normalizarTicker(pTicker).getBytes(StandardCharsets.UTF_8);
+
+        int inicio = 0;
+        int fim = mQuantidade - 1;
+        while (inicio <= fim) {
+            int meio = (inicio + fim) >>> 1;
+            int entrada = mInicioIndice + meio * TAMANHO_ENTRADA_INDICE;
+            int c = compararString(mBuffer.getInt(entrada), chave);
+            if (c < 0) {
+                inicio = meio + 1;
+            } else if (c > 0) {
+                fim = meio - 1;
+            } else {
+                int registo = mBuffer.getInt(entrada + 4);
+                if (registo < 0 || registo >= mQuantidade) {
+                    throw new IOException("Ficheiro .cart corrompido (índice aponta para o registo " + registo + ")");
+                }//if
+                return obter(registo);
+            }//else
+        }//while
+        return null;
+    }//procurar
+
+    /**
+     * Todos os ativos, pela ordem da carteira.
+     */
+    public List<Ativo> lerTodos() throws IOException {
+        List<Ativo> ativos = new ArrayList<>(mQuantidade);
+        for (int i = 0; i < mQuantidade; i++) {
+            ativos.add(obter(i));
+        }//for
+        return ativos;
+    }//lerTodos
+
+    private String lerString(int pPosicao) throws IOException {
+        int p = posicaoString(pPosicao);
+        byte[] bytes = new byte[Short.toUnsignedInt(mBuffer.getShort(p))];
+        mBuffer.get(p + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }//lerString
+
+    /**
+     * Posição absoluta da string pPosicao, verificando que ela (tamanho
+     * e bytes) cabe na tabela de strings.
+     */
+    private int posicaoString(int pPosicao) throws IOException {
+        long p = (long) mInicioStrings + pPosicao;
+        if (pPosicao < 0 || p + 2 > mInicioIndice
+                || p + 2 + Short.toUnsignedInt(mBuffer.getShort((int) p)) > mInicioIndice) {
+            throw new IOException("Ficheiro .cart corrompido (string fora da tabela: " + pPosicao + ")");
+        }//if
+        return (int) p;
+    }//posicaoString
+
+    /**
+     * Compara a string guardada com pChave, byte a byte (sem sinal),
+     * a mesma ordem usada ao escrever o índice.
+     */
+    private int compararString(int pPosicao, byte[] pChave) throws IOException {
+        int p = posicaoString(pPosicao);
+        int tamanho = Short.toUnsignedInt(mBuffer.getShort(p));
+        int n = Math.min(tamanho, pChave.length);
+        for (int i = 0; i < n; i++) {
+            int c = Integer.compare(mBuffer.get(p + 2 + i) & 0xFF, pChave[i] & 0xFF);
+            if (c != 0) return c;
+        }//for
+        return Integer.compare(tamanho, pChave.length);
+    }//compararString
+
+    //--------------------------------------------------
+    // Escrita
+    //--------------------------------------------------
+
+    /**
+     * Escreve os ativos no formato .cart (substitui o ficheiro).
+     */
+    public static void escrever(List<Ativo> pAtivos, Path pFicheiro) throws IOException {
+        escrever(pAtivos, pFicheiro, 0);
+    }//escrever
+
+    /**
+     * Escreve os ativos com a marca indicada no cabeçalho.
+     */
+    public static void escrever(List<Ativo> pAtivos, Path pFicheiro, int pMarca) throws IOException {
+        int n = pAtivos.size();
+
+        // Tabela de strings: ticker, nome e chave de cada ativo
+        TabelaStrings strings = new TabelaStrings();
+        int[] tickers = new int[n];
+        int[] nomes = new int[n];
+        byte[][] chaves = new byte[n][];
+        int[] posChaves = new int[n];
+        for (int i = 0; i < n; i++) {
+            Ativo a = pAtivos.get(i);
+            tickers[i] = strings.adicionar(a.getTicker().getBytes(StandardCharsets.UTF_8));
+            nomes[i] = strings.adicionar(a.getNome().getBytes(StandardCharsets.UTF_8));
+            chaves[i] = a.getChave().getBytes(StandardCharsets.UTF_8);
+            posChaves[i] = a.getChave().equals(a.getTicker())
+                ? tickers[i]  // a chave já está na tabela (ticker em maiúsculas)
+                : strings.adicionar(chaves[i]);
+        }//for
+
+        // Índice: registos ordenados pela chave, byte a byte
+        Integer[] ordem = new Integer[n];
+        for (int i = 0; i < n; i++) ordem[i] = i;
+        Arrays.sort(ordem, (pA, pB) -> Arrays.compareUnsigned(chaves[pA], chaves[pB]));
+
+        long inicioStrings = TAMANHO_CABECALHO + (long) n * TAMANHO_REGISTO;
+        long inicioIndice = inicioStrings + strings.getTamanho();
+        long total = inicioIndice + (long) n * TAMANHO_ENTRADA_INDICE;
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException("Carteira demasiado grande para .cart (máximo 2 GB)");
+        }//if
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) total);
+        buffer.putInt(MAGICO).putShort(VERSAO).putShort((short) 0)
+              .putInt(n).putInt(pMarca)
+              .putLong(inicioStrings).putLong(inicioIndice);
+
+        for (int i = 0; i < n; i++) {
+            Ativo a = pAtivos.get(i);
+            // Preço, variação, volume e instante da mesma atualização
+            Ativo.Cotacao cotacao = a.obterCotacao();
+            buffer.putDouble(cotacao.getPreco())
+                  .putDouble(cotacao.getVariacao())
+                  .putLong(cotacao.getVolume())
+                  .putInt(tickers[i])
+                  .putInt(nomes[i])
+                  .put((byte) a.obterTipo().ordinal())
+                  .put(new byte[7])
+                  .putLong(cotacao.getInstante());
+        }//for
+
+        buffer.put(strings.mBytes, 0, strings.getTamanho());
+
+        for (int i = 0; i < n; i++) {
+            buffer.putInt(posChaves[ordem[i]]).putInt(ordem[i]);
+        }//for
+
+        buffer.flip();
+        try (FileChannel canal = FileChannel.open(pFicheiro, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }//while
+        }//try
+    }//escrever
+
+    //--------------------------------------------------
+    // Tabela de strings em construção
+    //--------------------------------------------------
+    private static final class TabelaStrings {
+        private byte[] mBytes = new byte[1024];
+        private int mTamanho;
+
+        /**
+         * @return posição da string na tabela
+         */
+        int adicionar(byte[] pTexto) throws IOException {
+            if (pTexto.length > TAMANHO_MAX_STRING) {
+                throw new IOException("Texto demasiado longo para .cart (" + pTexto.length + " bytes)");
+            }//if
+            int necessario = mTamanho + 2 + pTexto.length;
+            if (necessario > mBytes.length) {
+                mBytes = Arrays.copyOf(mBytes, Math.max(necessario, mBytes.length * 2));
+            }//if
+            int posicao = mTamanho;
+            mBytes[mTamanho++] = (byte) (pTexto.length >>> 8);
+            mBytes[mTamanho++] = (byte) pTexto.length;
+            System.arraycopy(pTexto, 0, mBytes, mTamanho, pTexto.length);
+            mTamanho += pTexto.length;
+            return posicao;
+        }//adicionar
+
+        int getTamanho() { return mTamanho; }
+    }//classe TabelaStrings
+
+}//classe FicheiroCarteiraBinario
@@ -7,6 +7,7 @@ import sistemacotacoes.fabrica.FabricaAtivos;
 import sistemacotacoes.gestao.Carteira;
 
 import java.io.*;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -18,15 +19,26 @@ import java.util.List;
  * Formatos suportados:
  * - CSV (.csv) - Compatível com Excel
  * - Texto (.txt) - Formato próprio legível
+ * - Binário (.cart) - Compacto, com acesso direto por ticker
+ *   (ver FicheiroCarteiraBinario)
  */
 public class GestorFicheiros {
 
     // Separador para ficheiros CSV
     private static final String SEPARADOR_CSV = ";";
+
+    // A partir deste tamanho, carregarCSV usa o leitor mapeado e paralelo
+    private static final long LIMIAR_CSV_MAPEADO = 1 << 20;  // 1 MB
     
     // Extensões suportadas
     public static final String EXTENSAO_CSV = ".csv";
     public static final String EXTENSAO_TXT = ".txt";
+    public static final String EXTENSAO_CART = ".cart";
+
+    // Linhas fixas do formato TXT
+    private static final String LINHA_TXT = "─".repeat(70);
+    private static final String TITULOS_TXT = String.format("%-12s %-8s %-20s %12s %10s",
+        "TICKER", "TIPO", "NOME", "PREÇO", "VAR%");
 
     //--------------------------------------------------
     // GUARDAR CARTEIRA
@@ -43,27 +55,29 @@ public class GestorFicheiros {
     public static BoolEMensagem guardarCSV(Carteira pCarteira, String pCaminhoFicheiro) {
         // Garantir extensão .csv
         String caminho = garantirExtensao(pCaminhoFicheiro, EXTENSAO_CSV);
+        // Uma única fotografia: o ficheiro fica coerente mesmo com atualizações em curso
+        List<Ativo> ativos = pCarteira.getAtivos();
         
-        try (PrintWriter writer = new PrintWriter(new FileWriter(caminho))) {
+        // Escrita direta em bytes (ver EscritorTexto); mesmo texto que
+        // String.format("%s;%s;%s;%.2f;%.4f;%d")
+        try (EscritorTexto escritor = EscritorTexto.abrir(Path.of(caminho))) {
             // Escrever cabeçalho
-            writer.println("TICKER;TIPO;NOME;PRECO;VARIACAO;VOLUME");
+            escritor.escrever("TICKER;TIPO;NOME;PRECO;VARIACAO;VOLUME").novaLinha();
             
             // Escrever cada ativo
-            for (Ativo a : pCarteira.getAtivos()) {
-                String linha = String.format("%s;%s;%s;%.2f;%.4f;%d",
-                    a.getTicker(),
-                    a.obterTipo().name(),  // ACAO, CRIPTO, ETF
-                    a.getNome(),
-                    a.getPreco(),
-                    a.getVariacao(),
-                    a.getVolume()
-                );
-                writer.println(linha);
+            for (Ativo a : ativos) {
+                escritor.escrever(a.getTicker()).escrever(';')
+                        .escrever(a.obterTipo().name()).escrever(';')  // ACAO, CRIPTO, ETF
+                        .escrever(a.getNome()).escrever(';')
+                        .escreverDecimal(a.getPreco(), 2).escrever(';')
+                        .escreverDecimal(a.getVariacao(), 4).escrever(';')
+                        .escreverInteiro(a.getVolume())
+                        .novaLinha();
             }//for
             
             return new BoolEMensagem(true, 
                 String.format("✅ Carteira guardada em: %s (%d ativos)", 
-                    caminho, pCarteira.getQuantidade()));
+                    caminho, ativos.size()));
                     
         } catch (IOException e) {
             return new BoolEMensagem(false, 
@@ -77,54 +91,52 @@ public class GestorFicheiros {
      */
     public static BoolEMensagem guardarTXT(Carteira pCarteira, String pCaminhoFicheiro) {
         String caminho = garantirExtensao(pCaminhoFicheiro, EXTENSAO_TXT);
+        List<Ativo> ativos = pCarteira.getAtivos();
         
-        try (PrintWriter writer = new PrintWriter(new FileWriter(caminho))) {
+        try (EscritorTexto escritor = EscritorTexto.abrir(Path.of(caminho))) {
             // Cabeçalho
-            writer.println("╔════════════════════════════════════════════════════════════════╗");
-            writer.println("║          CARTEIRA - RODRIGO SILVA ANÁLISE FUNDAMENTAL         ║");
-            writer.println("╚════════════════════════════════════════════════════════════════╝");
-            writer.println();
-            writer.printf("Nome: %s%n", pCarteira.getNome());
-            writer.printf("Total de ativos: %d%n", pCarteira.getQuantidade());
-            writer.println();
-            writer.println("─".repeat(70));
-            writer.printf("%-12s %-8s %-20s %12s %10s%n", 
-                "TICKER", "TIPO", "NOME", "PREÇO", "VAR%");
-            writer.println("─".repeat(70));
+            escritor.escrever("╔════════════════════════════════════════════════════════════════╗").novaLinha();
+            escritor.escrever("║          CARTEIRA - RODRIGO SILVA ANÁLISE FUNDAMENTAL         ║").novaLinha();
+            escritor.escrever("╚════════════════════════════════════════════════════════════════╝").novaLinha();
+            escritor.novaLinha();
+            escritor.escrever("Nome: ").escrever(pCarteira.getNome()).novaLinha();
+            escritor.escrever("Total de ativos: ").escreverInteiro(ativos.size()).novaLinha();
+            escritor.novaLinha();
+            escritor.escrever(LINHA_TXT).novaLinha();
+            escritor.escrever(TITULOS_TXT).novaLinha();
+            escritor.escrever(LINHA_TXT).novaLinha();
             
-            // Dados
-            for (Ativo a : pCarteira.getAtivos()) {
-                writer.printf("%-12s %-8s %-20s %12.2f %+9.2f%%%n",
-                    a.getTicker(),
-                    a.obterTipo().getNome(),
-                    truncar(a.getNome(), 20),
-                    a.getPreco(),
-                    a.getVariacao()
-                );
+            // Dados: "%-12s %-8s %-20s %12.2f %+9.2f%%"
+            for (Ativo a : ativos) {
+                escritor.escreverEsquerda(a.getTicker(), 12).escrever(' ')
+                        .escreverEsquerda(a.obterTipo().getNome(), 8).escrever(' ')
+                        .escreverEsquerda(truncar(a.getNome(), 20), 20).escrever(' ')
+                        .escreverDecimal(a.getPreco(), 2, 12, false).escrever(' ')
+                        .escreverDecimal(a.getVariacao(), 2, 9, true).escrever('%')
+                        .novaLinha();
             }//for
             
-            writer.println("─".repeat(70));
-            writer.println();
-            writer.println("[DADOS PARA IMPORTAÇÃO - NÃO EDITAR ABAIXO DESTA LINHA]");
-            writer.println("@DATA_START");
+            escritor.escrever(LINHA_TXT).novaLinha();
+            escritor.novaLinha();
+            escritor.escrever("[DADOS PARA IMPORTAÇÃO - NÃO EDITAR ABAIXO DESTA LINHA]").novaLinha();
+            escritor.escrever("@DATA_START").novaLinha();
             
-            // Dados em formato parseável
-            for (Ativo a : pCarteira.getAtivos()) {
-                writer.printf("%s|%s|%s|%.2f|%.4f|%d%n",
-                    a.getTicker(),
-                    a.obterTipo().name(),
-                    a.getNome(),
-                    a.getPreco(),
-                    a.getVariacao(),
-                    a.getVolume()
-                );
+            // Dados em formato parseável: "%s|%s|%s|%.2f|%.4f|%d"
+            for (Ativo a : ativos) {
+                escritor.escrever(a.getTicker()).escrever('|')
+                        .escrever(a.obterTipo().name()).escrever('|')
+                        .escrever(a.getNome()).escrever('|')
+                        .escreverDecimal(a.getPreco(), 2).escrever('|')
+                        .escreverDecimal(a.getVariacao(), 4).escrever('|')
+                        .escreverInteiro(a.getVolume())
+                        .novaLinha();
             }//for
             
-            writer.println("@DATA_END");
+            escritor.escrever("@DATA_END").novaLinha();
             
             return new BoolEMensagem(true, 
                 String.format("✅ Carteira guardada em: %s (%d ativos)", 
-                    caminho, pCarteira.getQuantidade()));
+                    caminho, ativos.size()));
                     
         } catch (IOException e) {
             return new BoolEMensagem(false, 
@@ -132,6 +144,25 @@ public class GestorFicheiros {
         }//catch
     }//guardarTXT
 
+    /**
+     * Guarda a carteira no formato binário .cart.
+     */
+    public static BoolEMensagem guardarCART(Carteira pCarteira, String pCaminhoFicheiro) {
+        String caminho = garantirExtensao(pCaminhoFicheiro, EXTENSAO_CART);
+        List<Ativo> ativos = pCarteira.getAtivos();
+
+        try {
+            FicheiroCarteiraBinario.escrever(ativos, Path.of(caminho));
+            return new BoolEMensagem(true, 
+                String.format("✅ Carteira guardada em: %s (%d ativos)", 
+                    caminho, ativos.size()));
+
+        } catch (IOException e) {
+            return new BoolEMensagem(false, 
+                "❌ Erro ao guardar ficheiro: " + e.getMessage());
+        }//catch
+    }//guardarCART
+
     //--------------------------------------------------
     // CARREGAR CARTEIRA
     //--------------------------------------------------
@@ -147,6 +178,10 @@ public class GestorFicheiros {
             return new BoolEMensagem(false, 
                 "❌ Ficheiro não encontrado: " + caminho);
         }//if
+
+        if (ficheiro.length() >= LIMIAR_CSV_MAPEADO) {
+            return carregarCSVMapeado(pCarteira, caminho);
+        }//if
         
         int contadorAdicionados = 0;
         int contadorErros = 0;
@@ -190,6 +225,39 @@ public class GestorFicheiros {
         }//catch
     }//carregarCSV
 
+    /**
+     * Carrega um CSV grande: ficheiro mapeado em memória, lido em blocos
+     * paralelos (ver LeitorCSVMapeado) e inserido na carteira de uma vez.
+     * A mensagem inclui o débito (MB/s).
+     */
+    public static BoolEMensagem carregarCSVMapeado(Carteira pCarteira, String pCaminhoFicheiro) {
+        String caminho = garantirExtensao(pCaminhoFicheiro, EXTENSAO_CSV);
+        File ficheiro = new File(caminho);
+
+        if (!ficheiro.exists()) {
+            return new BoolEMensagem(false, 
+                "❌ Ficheiro não encontrado: " + caminho);
+        }//if
+
+        try {
+            long inicio = System.nanoTime();
+            LeitorCSVMapeado.Resultado lidos = LeitorCSVMapeado.ler(Path.of(caminho));
+            int adicionados = pCarteira.adicionarTodos(lidos.getAtivos());
+            int erros = lidos.getErros() + (lidos.getAtivos().size() - adicionados);
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+
+            return new BoolEMensagem(true, 
+                String.format("✅ Carregados %d ativos de: %s (Erros: %d) - %.1f MB em %.0f ms, leitura %.0f MB/s, total %.0f MB/s", 
+                    adicionados, caminho, erros,
+                    lidos.getBytes() / 1e6, segundos * 1000,
+                    lidos.getMBPorSegundo(), lidos.getBytes() / 1e6 / segundos));
+
+        } catch (IOException e) {
+            return new BoolEMensagem(false, 
+                "❌ Erro ao ler ficheiro: " + e.getMessage());
+        }//catch
+    }//carregarCSVMapeado
+
     /**
      * Carrega ativos de um ficheiro TXT para a carteira.
      */
@@ -254,6 +322,93 @@ public class GestorFicheiros {
         }//catch
     }//carregarTXT
 
+    /**
+     * Carrega ativos de um ficheiro .cart para a carteira (inserção de uma vez).
+     */
+    public static BoolEMensagem carregarCART(Carteira pCarteira, String pCaminhoFicheiro) {
+        String caminho = garantirExtensao(pCaminhoFicheiro, EXTENSAO_CART);
+        File ficheiro = new File(caminho);
+
+        if (!ficheiro.exists()) {
+            return new BoolEMensagem(false, 
+                "❌ Ficheiro não encontrado: " + caminho);
+        }//if
+
+        try {
+            List<Ativo> ativos = FicheiroCarteiraBinario.abrir(ficheiro.toPath()).lerTodos();
+            int adicionados = pCarteira.adicionarTodos(ativos);
+            return new BoolEMensagem(true, 
+                String.format("✅ Carregados %d ativos de: %s (Erros: %d)", 
+                    adicionados, caminho, ativos.size() - adicionados));
+
+        } catch (IOException e) {
+            return new BoolEMensagem(false, 
+                "❌ Erro ao ler ficheiro: " + e.getMessage());
+        }//catch
+    }//carregarCART
+
+    /**
+     * Lê um único ativo de um ficheiro .cart, sem carregar o resto.
+     *
+     * @return o ativo, ou null se o ticker não existe ou o ficheiro não se lê
+     */
+    public static Ativo procurarCART(String pCaminhoFicheiro, String pTicker) {
+        String caminho = garantirExtensao(pCaminhoFicheiro, EXTENSAO_CART);
+        try {
+            return FicheiroCarteiraBinario.abrir(Path.of(caminho)).procurar(pTicker);
+        } catch (IOException e) {
+            return null;
+        }//catch
+    }//procurarCART
+
+    //--------------------------------------------------
+    // CONVERTER ENTRE FORMATOS
+    //--------------------------------------------------
+
+    /**
+     * Converte um ficheiro de carteira noutro formato (.csv, .txt ou .cart),
+     * escolhido pela extensão de cada caminho.
+     */
+    public static BoolEMensagem converter(String pOrigem, String pDestino) {
+        String extOrigem = extensaoDe(pOrigem);
+        String extDestino = extensaoDe(pDestino);
+        if (extOrigem == null || extDestino == null) {
+            return new BoolEMensagem(false, 
+                "❌ Formato desconhecido (use .csv, .txt ou .cart)");
+        }//if
+
+        // Carteira temporária sem limite prático de capacidade
+        Carteira temporaria = new Carteira(new File(pOrigem).getName(), Integer.MAX_VALUE);
+        BoolEMensagem lido;
+        switch (extOrigem) {
+            case EXTENSAO_CSV:  lido = carregarCSV(temporaria, pOrigem); break;
+            case EXTENSAO_TXT:  lido = carregarTXT(temporaria, pOrigem); break;
+            default:            lido = carregarCART(temporaria, pOrigem); break;
+        }//switch
+        if (lido.falhou()) return lido;
+
+        switch (extDestino) {
+            case EXTENSAO_CSV:  return guardarCSV(temporaria, pDestino);
+            case EXTENSAO_TXT:  return guardarTXT(temporaria, pDestino);
+            default:            return guardarCART(temporaria, pDestino);
+        }//switch
+    }//converter
+
+    //--------------------------------------------------
+    // DIÁRIO (gravação contínua)
+    //--------------------------------------------------
+
+    /**
+     * Repõe a carteira a partir do diário (instantâneo + alterações) e
+     * passa a gravar cada alteração assim que acontece (ver DiarioCarteira).
+     * Fechar o diário no fim (close).
+     *
+     * @param pCaminhoBase caminho dos ficheiros do diário, sem extensão
+     */
+    public static DiarioCarteira abrirDiario(Carteira pCarteira, String pCaminhoBase) throws IOException {
+        return DiarioCarteira.abrir(pCarteira, Path.of(pCaminhoBase));
+    }//abrirDiario
+
     //--------------------------------------------------
     // MÉTODOS AUXILIARES
     //--------------------------------------------------
@@ -304,6 +459,17 @@ public class GestorFicheiros {
         return pCaminho;
     }//garantirExtensao
 
+    /**
+     * Extensão suportada do caminho (.csv, .txt ou .cart), ou null.
+     */
+    private static String extensaoDe(String pCaminho) {
+        String minusculas = pCaminho.toLowerCase();
+        for (String ext : new String[] { EXTENSAO_CSV, EXTENSAO_TXT, EXTENSAO_CART }) {
+            if (minusculas.endsWith(ext)) return ext;
+        }//for
+        return null;
+    }//extensaoDe
+
     /**
      * Trunca uma string se for maior que o tamanho máximo.
      */
@@ -322,6 +488,7 @@ public class GestorFicheiros {
         if (dir.exists() && dir.isDirectory()) {
             File[] lista = dir.listFiles((d, nome) -> 
                 nome.endsWith(EXTENSAO_CSV) || nome.endsWith(EXTENSAO_TXT)
+                    || nome.endsWith(EXTENSAO_CART)
             );
             
             if (lista != null) {
@@ -0,0 +1,149 @@
+// HistogramaLatencia.java
+package sistemacotacoes.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latências sem locks, com precisão relativa fixa.
+ *
+ * Os valores (em nanossegundos) caem em baldes log-lineares: cada potência
+ * de 2 é dividida em 16 sub-baldes, o que dá um erro máximo de ~6% em
+ * qualquer escala (de microssegundos a minutos) com apenas ~1000 contadores.
+ *
+ * Registar é um incremento atómico num array: várias threads podem
+ * registar ao mesmo tempo sem se bloquearem. Os percentis são calculados
+ * apenas quando se pede um resumo.
+ */
+public class HistogramaLatencia {
+
+    // 2^4 = 16 sub-baldes por potência de 2
+    private static final int BITS_SUB_BALDE = 4;
+    private static final int SUB_BALDES = 1 << BITS_SUB_BALDE;
+
+    // Valores até 2^63 - 1 ns: (64 - 4 + 1) grupos de 16 baldes
+    private static final int NUM_BALDES = (64 - BITS_SUB_BALDE + 1) * SUB_BALDES;
+
+    private final AtomicLongArray mBaldes = new AtomicLongArray(NUM_BALDES);
+    private final AtomicLong mContagem = new AtomicLong();
+    private final AtomicLong mSomaNanos = new AtomicLong();
+    private final AtomicLong mMaximoNanos = new AtomicLong();
+
+    //--------------------------------------------------
+    // Registar
+    //--------------------------------------------------
+    public void registar(long pNanos) {
+        long valor = Math.max(0, pNanos);
+        mBaldes.incrementAndGet(indiceDe(valor));
+        mContagem.incrementAndGet();
+        mSomaNanos.addAndGet(valor);
+        if (valor > mMaximoNanos.get()) {
+            mMaximoNanos.accumulateAndGet(valor, Math::max);
+        }//if
+    }//registar
+
+    /**
+     * Balde de um valor: os primeiros 16 valores têm um balde cada;
+     * a partir daí, o expoente escolhe o grupo e os 4 bits seguintes
+     * ao bit mais alto escolhem o sub-balde.
+     */
+    private static int indiceDe(long pValor) {
+        if (pValor < SUB_BALDES) return (int) pValor;
+        int expoente = 63 - Long.numberOfLeadingZeros(pValor);
+        int subBalde = (int) (pValor >>> (expoente - BITS_SUB_BALDE)) & (SUB_BALDES - 1);
+        return (expoente - BITS_SUB_BALDE + 1) * SUB_BALDES + subBalde;
+    }//indiceDe
+
+    /**
+     * Maior valor que cai no balde (limite superior, para não subestimar).
+     */
+    private static long limiteSuperior(int pIndice) {
+        if (pIndice < SUB_BALDES) return pIndice;
+        int grupo = pIndice / SUB_BALDES;
+        int subBalde = pIndice % SUB_BALDES;
+        int expoente = grupo + BITS_SUB_BALDE - 1;
+        long largura = 1L << (expoente - BITS_SUB_BALDE);
+        long inicio = (1L << expoente) + subBalde * largura;
+        return inicio + largura - 1;
+    }//limiteSuperior
+
+    //--------------------------------------------------
+    // Resumo (percentis)
+    //--------------------------------------------------
+
+    /**
+     * Fotografia do histograma neste momento. Como os registos não param
+     * durante a leitura, a contagem do resumo pode divergir ligeiramente
+     * da soma dos baldes; os percentis usam sempre os baldes lidos.
+     */
+    public Resumo resumir() {
+        long[] contagens = new long[NUM_BALDES];
+        long total = 0;
+        for (int i = 0; i < NUM_BALDES; i++) {
+            contagens[i] = mBaldes.get(i);
+            total += contagens[i];
+        }//for
+
+        long maximo = mMaximoNanos.get();
+        double media = total == 0 ? 0.0 : (double) mSomaNanos.get() / mContagem.get();
+        return new Resumo(
+            total, media,
+            percentil(contagens, total, 0.50, maximo),
+            percentil(contagens, total, 0.99, maximo),
+            percentil(contagens, total, 0.999, maximo),
+            maximo
+        );
+    }//resumir
+
+    private static long percentil(long[] pContagens, long pTotal, double pPercentil, long pMaximo) {
+        if (pTotal == 0) return 0;
+        long alvo = (long) Math.ceil(pPercentil * pTotal);
+        long acumulado = 0;
+        for (int i = 0; i < pContagens.length; i++) {
+            acumulado += pContagens[i];
+            if (acumulado >= alvo) {
+                // Nunca acima do máximo observado
+                return Math.min(limiteSuperior(i), pMaximo);
+            }//if
+        }//for
+        return pMaximo;
+    }//percentil
+
+    public long getContagem() { return mContagem.get(); }
+
+    //--------------------------------------------------
+    // Resumo imutável de um histograma
+    //--------------------------------------------------
+    public static class Resumo {
+        private final long mContagem;
+        private final double mMediaNanos;
+        private final long mP50Nanos;
+        private final long mP99Nanos;
+        private final long mP999Nanos;
+        private final long mMaximoNanos;
+
+        private Resumo(long pContagem, double pMediaNanos,
+                       long pP50Nanos, long pP99Nanos, long pP999Nanos, long pMaximoNanos) {
+            this.mContagem = pContagem;
+            this.mMediaNanos = pMediaNanos;
+            this.mP50Nanos = pP50Nanos;
+            this.mP99Nanos = pP99Nanos;
+            this.mP999Nanos = pP999Nanos;
+            this.mMaximoNanos = pMaximoNanos;
+        }//construtor Resumo
+
+        public long getContagem() { return mContagem; }
+        public double getMediaMs() { return mMediaNanos / 1e6; }
+        public double getP50Ms() { return mP50Nanos / 1e6; }
+        public double getP99Ms() { return mP99Nanos / 1e6; }
+        public double getP999Ms() { return mP999Nanos / 1e6; }
+        public double getMaximoMs() { return mMaximoNanos / 1e6; }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d, média=%.2fms, p50=%.2fms, p99=%.2fms, p999=%.2fms, máx=%.2fms",
+                mContagem, getMediaMs(), getP50Ms(), getP99Ms(), getP999Ms(), getMaximoMs());
+        }//toString
+    }//classe Resumo
+
+}//classe HistogramaLatencia
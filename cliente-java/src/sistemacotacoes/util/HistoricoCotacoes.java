@@ -0,0 +1,591 @@
+// HistoricoCotacoes.java
+package sistemacotacoes.util;
+
+import sistemacotacoes.modelo.Ativo;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Histórico local de cotações: cada observação (ticker, instante, preço,
+ * variação, volume) é acrescentada a ficheiros por ticker, para se poder
+ * consultar a evolução sem voltar a pedir à API.
+ *
+ * Ficheiros: raiz/TICKER/INICIO.seg, em que INICIO é o instante (ms) da
+ * primeira observação do segmento. Cada observação é um registo de 32
+ * bytes (instante, preço, variação, volume), por ordem de instante.
+ *
+ * - Acrescentar: o registo vai para um buffer do ticker, escrito no
+ *   ficheiro quando enche ou, por uma thread de manutenção, passado
+ *   INTERVALO_ESCRITA_MS (sem fsync: uma queda do programa perde no
+ *   máximo as observações do último intervalo)
+ * - Índice temporal: os segmentos de cada ticker ficam em memória,
+ *   ordenados pelo início; dentro de um segmento a pesquisa é binária
+ * - Rotação: segmento novo ao chegar a getRegistosPorSegmento registos
+ *   ou quando o atual cobre mais de getDuracaoSegmentoMs
+ * - Retenção: são apagados os segmentos cujas observações são todas mais
+ *   antigas do que getRetencaoMs, na rotação e, para todos os tickers em
+ *   disco, ao abrir e a cada INTERVALO_RETENCAO_MS
+ * - Ficheiros abertos: o segmento atual de um ticker sem observações há
+ *   INTERVALO_FECHO_MS é fechado (e o buffer libertado) até à próxima
+ *   observação
+ *
+ *
+ * Observações mais antigas do que a última do ticker são rejeitadas
+ * (ver getRejeitadas): cada segmento fica ordenado. Tickers que não
+ * dão um nome de diretório válido (ex: "..") também são rejeitados.
+ *
+ * Tem a assinatura de OuvinteCotacoes em registar(ticker, preço,
+ * variação, volume): api.definirRegisto(historico::registar)
+ */
+public final class HistoricoCotacoes implements Closeable {
+
+    public static final String EXTENSAO_SEGMENTO = ".seg";
+
+    public static final long RETENCAO_POR_DEFEITO_MS = 30L * 24 * 60 * 60 * 1000;  // 30 dias
+    public static final long DURACAO_SEGMENTO_POR_DEFEITO_MS = 24L * 60 * 60 * 1000;  // 1 dia
+    public static final int REGISTOS_POR_SEGMENTO_POR_DEFEITO = 64 * 1024;  // 2 MB
+
+    private static final int TAMANHO_REGISTO = 32;
+    private static final int REGISTOS_BUFFER = 128;  // 4 KB por ticker
+    private static final long INTERVALO_ESCRITA_MS = 1000;
+    private static final long INTERVALO_FECHO_MS = 60_000;  // 1 minuto
+    private static final long INTERVALO_RETENCAO_MS = 60L * 60 * 1000;  // 1 hora
+
+    private final Path mRaiz;
+    private final long mRetencaoMs;
+    private final long mDuracaoSegmentoMs;
+    private final int mRegistosPorSegmento;
+
+    // Séries pelo nome do diretório (carregadas do disco quando usadas)
+    private final Map<String, Serie> mSeries = new ConcurrentHashMap<>();
+    private volatile boolean mFechado;
+    // Escrita dos buffers parados, fecho dos ficheiros inativos e retenção
+    private final Thread mManutencao;
+
+    private final AtomicLong mRegistadas = new AtomicLong();
+    private final AtomicLong mRejeitadas = new AtomicLong();
+    private final AtomicLong mErros = new AtomicLong();
+
+    //--------------------------------------------------
+    // Construtores
+    //--------------------------------------------------
+    public HistoricoCotacoes(Path pRaiz) throws IOException {
+        this(pRaiz, RETENCAO_POR_DEFEITO_MS, DURACAO_SEGMENTO_POR_DEFEITO_MS, REGISTOS_POR_SEGMENTO_POR_DEFEITO);
+    }//construtor HistoricoCotacoes
+
+    /**
+     * @param pRetencaoMs idade a partir da qual as observações podem ser apagadas
+     * @param pDuracaoSegmentoMs intervalo de tempo máximo coberto por um segmento
+     * @param pRegistosPorSegmento número máximo de observações por segmento
+     */
+    public HistoricoCotacoes(Path pRaiz, long pRetencaoMs, long pDuracaoSegmentoMs, int pRegistosPorSegmento)
+            throws IOException {
+        if (pRetencaoMs <= 0 || pDuracaoSegmentoMs <= 0 || pRegistosPorSegmento < 1) {
+            throw new IllegalArgumentException("Política de retenção/rotação inválida");
+        }//if
+        this.mRaiz = pRaiz;
+        this.mRetencaoMs = pRetencaoMs;
+        this.mDuracaoSegmentoMs = pDuracaoSegmentoMs;
+        this.mRegistosPorSegmento = pRegistosPorSegmento;
+        Files.createDirectories(pRaiz);
+
+        this.mManutencao = new Thread(this::manterContinuamente, "historico-cotacoes");
+        mManutencao.setDaemon(true);
+        mManutencao.start();
+    }//construtor HistoricoCotacoes
+
+    //--------------------------------------------------
+    // Registar
+    //--------------------------------------------------
+
+    /**
+     * Regista uma observação com o instante atual.
+     */
+    public void registar(String pTicker, double pPreco, double pVariacao, long pVolume) {
+        registar(pTicker, System.currentTimeMillis(), pPreco, pVariacao, pVolume);
+    }//registar
+
+    /**
+     * Regista uma observação. Os erros de escrita não são propagados
+     * (quem entrega cotações não deve falhar por causa do histórico):
+     * ficam contados em getErros.
+     *
+     * @return false se foi rejeitada (mais antiga do que a última, ou fechado)
+     */
+    public boolean registar(String pTicker, long pInstante, double pPreco, double pVariacao, long pVolume) {
+        if (pTicker == null || mFechado) return false;
+        try {
+            Serie serie = obterSerie(pTicker);
+            boolean aceite = serie != null && serie.acrescentar(pInstante, pPreco, pVariacao, pVolume);
+            (aceite ? mRegistadas : mRejeitadas).incrementAndGet();
+            return aceite;
+        } catch (IOException e) {
+            mErros.incrementAndGet();
+            return false;
+        }//catch
+    }//registar
+
+    //--------------------------------------------------
+    // Consultar
+    //--------------------------------------------------
+
+    /**
+     * Observações do ticker com instante entre pDe e pAte (inclusive),
+     * por ordem de instante.
+     */
+    public List<Observacao> obterHistorico(String pTicker, long pDe, long pAte) throws IOException {
+        if (pTicker == null || pDe > pAte || !existe(pTicker)) return Collections.emptyList();
+        return obterSerie(pTicker).ler(pDe, pAte);
+    }//obterHistorico
+
+    /**
+     * Última observação do ticker, ou null.
+     */
+    public Observacao obterUltima(String pTicker) throws IOException {
+        if (!existe(pTicker)) return null;
+        long ultimo = obterSerie(pTicker).getUltimoInstante();
+        List<Observacao> ultimas = obterHistorico(pTicker, ultimo, ultimo);
+        return ultimas.isEmpty() ? null : ultimas.get(ultimas.size() - 1);
+    }//obterUltima
+
+    /**
+     * Tickers com histórico em disco (nomes dos diretórios).
+     */
+    public List<String> listarTickers() throws IOException {
+        List<String> tickers = new ArrayList<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(mRaiz, Files::isDirectory)) {
+            for (Path d : dirs) tickers.add(d.getFileName().toString());
+        }//try
+        Collections.sort(tickers);
+        return tickers;
+    }//listarTickers
+
+    //--------------------------------------------------
+    // Retenção, escrita e fecho
+    //--------------------------------------------------
+
+    /**
+     * Apaga, em todos os tickers com histórico em disco, os segmentos fora
+     * da retenção. Feito ao abrir e a cada INTERVALO_RETENCAO_MS.
+     *
+     * @return número de segmentos apagados
+     */
+    public int aplicarRetencao() throws IOException {
+        int apagados = 0;
+        for (String nome : listarTickers()) {
+            Serie serie = obterSeriePorNome(nome);
+            if (serie != null) apagados += serie.aplicarRetencao();
+        }//for
+        return apagados;
+    }//aplicarRetencao
+
+    /**
+     * Escreve nos ficheiros as observações ainda em memória.
+     */
+    public void despejar() throws IOException {
+        for (Serie s : mSeries.values()) {
+            s.despejar();
+        }//for
+    }//despejar
+
+    @Override
+    public void close() throws IOException {
+        mFechado = true;
+        mManutencao.interrupt();
+        try {
+            mManutencao.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }//catch
+
+        IOException primeiro = null;
+        for (Serie s : mSeries.values()) {
+            try {
+                s.fechar();
+            } catch (IOException e) {
+                if (primeiro == null) primeiro = e;
+            }//catch
+        }//for
+        if (primeiro != null) throw primeiro;
+    }//close
+
+    //--------------------------------------------------
+    // Manutenção (thread de fundo)
+    //--------------------------------------------------
+    private void manterContinuamente() {
+        long proximaRetencao = 0;  // logo ao abrir
+        while (!mFechado) {
+            long agora = System.currentTimeMillis();
+            if (agora >= proximaRetencao) {
+                try {
+                    aplicarRetencao();
+                } catch (IOException e) {
+                    mErros.incrementAndGet();
+                }//catch
+                proximaRetencao = agora + INTERVALO_RETENCAO_MS;
+            }//if
+            for (Serie s : mSeries.values()) {
+                try {
+                    s.manter(agora);
+                } catch (IOException e) {
+                    mErros.incrementAndGet();
+                }//catch
+            }//for
+
+            try {
+                Thread.sleep(INTERVALO_ESCRITA_MS);
+            } catch (InterruptedException e) {
+                return;  // close
+            }//catch
+        }//while
+    }//manterContinuamente
+
+    //--------------------------------------------------
+    // Auxiliares
+    //--------------------------------------------------
+
+    // null se o ticker não dá um nome de diretório válido
+    private Serie obterSerie(String pTicker) throws IOException {
+        Serie serie = mSeries.get(pTicker);  // caminho rápido: ticker já normalizado
+        if (serie != null) return serie;
+        return obterSeriePorNome(nomeDiretorio(Ativo.normalizarTicker(pTicker)));
+    }//obterSerie
+
+    private Serie obterSeriePorNome(String pNome) throws IOException {
+        if (pNome == null) return null;
+        Serie serie = mSeries.get(pNome);
+        if (serie != null) return serie;
+        synchronized (mSeries) {
+            serie = mSeries.get(pNome);
+            if (serie == null) {
+                serie = new Serie(mRaiz.resolve(pNome));
+                mSeries.put(pNome, serie);
+            }//if
+            return serie;
+        }//synchronized
+    }//obterSeriePorNome
+
+    // Sem criar a série de um ticker que nunca foi registado
+    private boolean existe(String pTicker) {
+        if (pTicker == null) return false;
+        String nome = nomeDiretorio(Ativo.normalizarTicker(pTicker));
+        return nome != null && (mSeries.containsKey(nome) || Files.isDirectory(mRaiz.resolve(nome)));
+    }//existe
+
+    /**
+     * Nome do diretório do ticker normalizado: carateres que não podem estar
+     * num nome de ficheiro passam a '_'. null se ficar vazio ou só com pontos
+     * ("." e ".." sairiam da raiz do histórico).
+     */
+    private static String nomeDiretorio(String pChave) {
+        String nome = pChave.replaceAll("[\\\\/:*?\"<>|]", "_");
+        return nome.isEmpty() || nome.chars().allMatch(c -> c == '.') ? null : nome;
+    }//nomeDiretorio
+
+    //--------------------------------------------------
+    // Getters
+    //--------------------------------------------------
+    public Path getRaiz() { return mRaiz; }
+    public long getRetencaoMs() { return mRetencaoMs; }
+    public long getDuracaoSegmentoMs() { return mDuracaoSegmentoMs; }
+    public int getRegistosPorSegmento() { return mRegistosPorSegmento; }
+    public long getRegistadas() { return mRegistadas.get(); }
+    public long getRejeitadas() { return mRejeitadas.get(); }
+    public long getErros() { return mErros.get(); }
+
+    @Override
+    public String toString() {
+        return String.format("HistoricoCotacoes[%s, %d séries, %d registadas, %d rejeitadas]",
+            mRaiz, mSeries.size(), getRegistadas(), getRejeitadas());
+    }//toString
+
+    //--------------------------------------------------
+    // Uma observação (imutável)
+    //--------------------------------------------------
+    public static final class Observacao {
+        private final long mInstante;
+        private final double mPreco;
+        private final double mVariacao;
+        private final long mVolume;
+
+        private Observacao(long pInstante, double pPreco, double pVariacao, long pVolume) {
+            this.mInstante = pInstante;
+            this.mPreco = pPreco;
+            this.mVariacao = pVariacao;
+            this.mVolume = pVolume;
+        }//construtor Observacao
+
+        public long getInstante() { return mInstante; }
+        public double getPreco() { return mPreco; }
+        public double getVariacao() { return mVariacao; }
+        public long getVolume() { return mVolume; }
+
+        @Override
+        public String toString() {
+            return String.format("%tF %<tT  %.2f  %+.2f%%  %d", mInstante, mPreco, mVariacao, mVolume);
+        }//toString
+    }//classe Observacao
+
+    //--------------------------------------------------
+    // Segmento: um ficheiro de uma série
+    //--------------------------------------------------
+    private static final class Segmento {
+        private final long mInicio;
+        private final Path mCaminho;
+        private long mRegistos;  // já escritos no ficheiro
+
+        private Segmento(long pInicio, Path pCaminho, long pRegistos) {
+            this.mInicio = pInicio;
+            this.mCaminho = pCaminho;
+            this.mRegistos = pRegistos;
+        }//construtor Segmento
+    }//classe Segmento
+
+    //--------------------------------------------------
+    // Série de um ticker (protegida pelo próprio objeto)
+    //--------------------------------------------------
+    private final class Serie {
+        private final Path mDiretorio;
+        // Índice temporal: segmentos por ordem de início
+        private final List<Segmento> mSegmentos = new ArrayList<>();
+        // Segmento atual (o último), aberto para acrescentar; null = fechado por inatividade
+        private FileChannel mCanal;
+        private ByteBuffer mBuffer;  // criado com o canal
+        private int mPendentes;  // registos no buffer, ainda não escritos
+        private long mUltimoInstante = Long.MIN_VALUE;
+        private long mUltimaEscrita = System.currentTimeMillis();
+        private long mUltimoAcrescento = System.currentTimeMillis();
+        private boolean mFechada;
+
+        private Serie(Path pDiretorio) throws IOException {
+            this.mDiretorio = pDiretorio;
+            if (!Files.isDirectory(pDiretorio)) return;
+
+            try (DirectoryStream<Path> ficheiros = Files.newDirectoryStream(pDiretorio, "*" + EXTENSAO_SEGMENTO)) {
+                for (Path f : ficheiros) {
+                    String nome = f.getFileName().toString();
+                    try {
+                        long inicio = Long.parseLong(nome.substring(0, nome.length() - EXTENSAO_SEGMENTO.length()));
+                        mSegmentos.add(new Segmento(inicio, f, Files.size(f) / TAMANHO_REGISTO));
+                    } catch (NumberFormatException e) {
+                        // não é um segmento
+                    }//catch
+                }//for
+            }//try
+            mSegmentos.sort((pA, pB) -> Long.compare(pA.mInicio, pB.mInicio));
+
+            if (!mSegmentos.isEmpty()) {
+                // Um registo incompleto no fim (queda a meio de uma escrita) não conta
+                // (mRegistos arredonda para baixo) e é cortado quando o canal abrir
+                Segmento ultimo = mSegmentos.get(mSegmentos.size() - 1);
+                if (ultimo.mRegistos > 0) {
+                    try (FileChannel canal = FileChannel.open(ultimo.mCaminho, StandardOpenOption.READ)) {
+                        mUltimoInstante = lerInstante(canal, ultimo.mRegistos - 1);
+                    }//try
+                } else {
+                    mUltimoInstante = ultimo.mInicio;
+                }//else
+            }//if
+        }//construtor Serie
+
+        synchronized boolean acrescentar(long pInstante, double pPreco, double pVariacao, long pVolume)
+                throws IOException {
+            if (mFechada || pInstante < mUltimoInstante) return false;
+
+            if (precisaSegmentoNovo(pInstante)) {
+                rodar(pInstante);
+            } else if (mCanal == null) {
+                abrirCanal();
+            }//else if
+            mUltimoAcrescento = System.currentTimeMillis();
+            mBuffer.putLong(pInstante).putDouble(pPreco).putDouble(pVariacao).putLong(pVolume);
+            mPendentes++;
+            mUltimoInstante = pInstante;
+
+            if (!mBuffer.hasRemaining() || System.currentTimeMillis() - mUltimaEscrita >= INTERVALO_ESCRITA_MS) {
+                despejar();
+            }//if
+            return true;
+        }//acrescentar
+
+        private boolean precisaSegmentoNovo(long pInstante) {
+            if (mSegmentos.isEmpty()) return true;
+            Segmento atual = mSegmentos.get(mSegmentos.size() - 1);
+            // Com o mesmo instante do início não roda: o nome do ficheiro seria o mesmo
+            return pInstante > atual.mInicio
+                && (atual.mRegistos + mPendentes >= mRegistosPorSegmento
+                    || pInstante - atual.mInicio >= mDuracaoSegmentoMs);
+        }//precisaSegmentoNovo
+
+        // Fecha o segmento atual e começa outro em pInicio
+        private void rodar(long pInicio) throws IOException {
+            despejar();
+            if (mCanal != null) mCanal.close();
+
+            Files.createDirectories(mDiretorio);
+            Path caminho = mDiretorio.resolve(String.format("%019d", pInicio) + EXTENSAO_SEGMENTO);
+            mCanal = FileChannel.open(caminho, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            mCanal.truncate(0);
+            if (mBuffer == null) mBuffer = ByteBuffer.allocate(REGISTOS_BUFFER * TAMANHO_REGISTO);
+            mSegmentos.add(new Segmento(pInicio, caminho, 0));
+            aplicarRetencao();
+        }//rodar
+
+        // Volta a abrir o segmento atual para acrescentar
+        private void abrirCanal() throws IOException {
+            Segmento ultimo = mSegmentos.get(mSegmentos.size() - 1);
+            mCanal = FileChannel.open(ultimo.mCaminho, StandardOpenOption.WRITE);
+            mCanal.truncate(ultimo.mRegistos * TAMANHO_REGISTO);
+            mCanal.position(ultimo.mRegistos * TAMANHO_REGISTO);
+            mBuffer = ByteBuffer.allocate(REGISTOS_BUFFER * TAMANHO_REGISTO);
+        }//abrirCanal
+
+        /**
+         * Chamado pela manutenção: escreve o buffer parado há mais de
+         * INTERVALO_ESCRITA_MS e fecha o segmento de um ticker inativo.
+         */
+        synchronized void manter(long pAgora) throws IOException {
+            if (mPendentes > 0 && pAgora - mUltimaEscrita >= INTERVALO_ESCRITA_MS) {
+                despejar();
+            } else if (mCanal != null && mPendentes == 0 && pAgora - mUltimoAcrescento >= INTERVALO_FECHO_MS) {
+                mCanal.close();
+                mCanal = null;
+                mBuffer = null;
+            }//else if
+        }//manter
+
+        synchronized void despejar() throws IOException {
+            mUltimaEscrita = System.currentTimeMillis();
+            if (mPendentes == 0 || mCanal == null) return;
+            mBuffer.flip();
+            while (mBuffer.hasRemaining()) {
+                mCanal.write(mBuffer);
+            }//while
+            mBuffer.clear();
+            mSegmentos.get(mSegmentos.size() - 1).mRegistos += mPendentes;
+            mPendentes = 0;
+        }//despejar
+
+        /**
+         * Apaga os segmentos antigos: todas as observações de um segmento
+         * são anteriores ao início do seguinte. O atual nunca é apagado.
+         */
+        synchronized int aplicarRetencao() throws IOException {
+            long limite = System.currentTimeMillis() - mRetencaoMs;
+            int apagados = 0;
+            while (mSegmentos.size() > 1 && mSegmentos.get(1).mInicio <= limite) {
+                try {
+                    Files.delete(mSegmentos.get(0).mCaminho);
+                } catch (NoSuchFileException e) {
+                    // já não existia
+                }//catch
+                mSegmentos.remove(0);
+                apagados++;
+            }//while
+            return apagados;
+        }//aplicarRetencao
+
+        synchronized List<Observacao> ler(long pDe, long pAte) throws IOException {
+            despejar();
+            List<Observacao> resultado = new ArrayList<>();
+            ByteBuffer bloco = ByteBuffer.allocate(REGISTOS_BUFFER * TAMANHO_REGISTO);
+
+            // Primeiro segmento que pode conter pDe: o último que começa em pDe ou antes
+            int i = Math.max(0, ultimoQueComecaAte(pDe));
+            for (; i < mSegmentos.size() && mSegmentos.get(i).mInicio <= pAte; i++) {
+                Segmento s = mSegmentos.get(i);
+                if (s.mRegistos == 0) continue;
+                try (FileChannel canal = FileChannel.open(s.mCaminho, StandardOpenOption.READ)) {
+                    long r = primeiroRegistoDesde(canal, s.mRegistos, pDe);
+                    while (r < s.mRegistos) {
+                        bloco.clear();
+                        bloco.limit((int) Math.min(bloco.capacity(), (s.mRegistos - r) * TAMANHO_REGISTO));
+                        lerCompleto(canal, bloco, r * TAMANHO_REGISTO);
+                        bloco.flip();
+                        while (bloco.hasRemaining()) {
+                            long instante = bloco.getLong();
+                            if (instante > pAte) return resultado;
+                            resultado.add(new Observacao(instante, bloco.getDouble(), bloco.getDouble(), bloco.getLong()));
+                        }//while
+                        r += bloco.limit() / TAMANHO_REGISTO;
+                    }//while
+                }//try
+            }//for
+            return resultado;
+        }//ler
+
+        // Pesquisa binária nos inícios dos segmentos; -1 se todos começam depois
+        private int ultimoQueComecaAte(long pInstante) {
+            int inicio = 0;
+            int fim = mSegmentos.size() - 1;
+            int encontrado = -1;
+            while (inicio <= fim) {
+                int meio = (inicio + fim) >>> 1;
+                if (mSegmentos.get(meio).mInicio <= pInstante) {
+                    encontrado = meio;
+                    inicio = meio + 1;
+                } else {
+                    fim = meio - 1;
+                }//else
+            }//while
+            return encontrado;
+        }//ultimoQueComecaAte
+
+        // Pesquisa binária no ficheiro: primeiro registo com instante >= pInstante
+        private long primeiroRegistoDesde(FileChannel pCanal, long pRegistos, long pInstante) throws IOException {
+            long inicio = 0;
+            long fim = pRegistos;
+            while (inicio < fim) {
+                long meio = (inicio + fim) >>> 1;
+                if (lerInstante(pCanal, meio) < pInstante) {
+                    inicio = meio + 1;
+                } else {
+                    fim = meio;
+                }//else
+            }//while
+            return inicio;
+        }//primeiroRegistoDesde
+
+        synchronized long getUltimoInstante() {
+            return mUltimoInstante;
+        }//getUltimoInstante
+
+        synchronized void fechar() throws IOException {
+            mFechada = true;
+            try {
+                despejar();
+            } finally {
+                if (mCanal != null) mCanal.close();
+                mCanal = null;
+            }//finally
+        }//fechar
+    }//classe Serie
+
+    private static long lerInstante(FileChannel pCanal, long pRegisto) throws IOException {
+        ByteBuffer instante = ByteBuffer.allocate(8);
+        lerCompleto(pCanal, instante, pRegisto * TAMANHO_REGISTO);
+        return instante.getLong(0);
+    }//lerInstante
+
+    private static void lerCompleto(FileChannel pCanal, ByteBuffer pDestino, long pPosicao) throws IOException {
+        while (pDestino.hasRemaining()) {
+            int lidos = pCanal.read(pDestino, pPosicao);
+            if (lidos < 0) throw new IOException("Segmento mais curto do que o esperado");
+            pPosicao += lidos;
+        }//while
+    }//lerCompleto
+
+}//classe HistoricoCotacoes
@@ -0,0 +1,377 @@
+// LeitorCSVMapeado.java
+package sistemacotacoes.util;
+
+import sistemacotacoes.enums.TipoAtivo;
+import sistemacotacoes.fabrica.FabricaAtivos;
+import sistemacotacoes.modelo.Ativo;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Leitor de CSV de carteira (TICKER;TIPO;NOME;PRECO;VARIACAO;VOLUME)
+ * para ficheiros muito grandes.
+ *
+ * - O ficheiro é mapeado em memória (sem cópias para um buffer de leitura)
+ * - É dividido em blocos de TAMANHO_BLOCO bytes, lidos em paralelo
+ *   (fork/join); cada bloco fica com as linhas que COMEÇAM dentro dele
+ * - Os campos são lidos diretamente dos bytes: sem split, trim, replace
+ *   nem Double.parseDouble no caso normal (ver ConversorDecimal)
+ *
+ * Aceita o mesmo que GestorFicheiros.carregarCSV: primeira linha é o
+ * cabeçalho, espaços à volta dos campos, vírgula ou ponto decimal,
+ * linhas vazias ou com menos de 6 campos ignoradas. Ficheiro em UTF-8.
+ */
+public class LeitorCSVMapeado {
+
+    public static final int TAMANHO_BLOCO = 8 << 20;  // 8 MB
+    // Uma linha pode passar o fim do bloco até este tamanho
+    private static final int LINHA_MAXIMA = 64 << 10;
+
+    private static final byte SEPARADOR = ';';
+    private static final int CAMPOS = 6;
+
+    private static final TipoAtivo[] TIPOS = TipoAtivo.values();
+    private static final byte[][] NOMES_TIPOS = new byte[TIPOS.length][];
+    static {
+        for (int i = 0; i < TIPOS.length; i++) {
+            NOMES_TIPOS[i] = TIPOS[i].name().getBytes(StandardCharsets.US_ASCII);
+        }//for
+    }//static
+
+    //--------------------------------------------------
+    // Leitura
+    //--------------------------------------------------
+
+    /**
+     * Lê todos os ativos do ficheiro, pela ordem em que aparecem.
+     * Linhas que não se conseguem converter contam como erros.
+     */
+    public static Resultado ler(Path pFicheiro) throws IOException {
+        long inicio = System.nanoTime();
+        try (FileChannel canal = FileChannel.open(pFicheiro, StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            int blocos = (int) Math.max(1, (tamanho + TAMANHO_BLOCO - 1) / TAMANHO_BLOCO);
+
+            Parcial parcial;
+            try {
+                parcial = ForkJoinPool.commonPool().invoke(new Tarefa(canal, tamanho, 0, blocos));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }//catch
+
+            return new Resultado(parcial.mAtivos, parcial.mErros, tamanho, System.nanoTime() - inicio);
+        }//try
+    }//ler
+
+    //--------------------------------------------------
+    // Divisão em blocos (fork/join)
+    //--------------------------------------------------
+    @SuppressWarnings("serial")  // nunca é serializada
+    private static class Tarefa extends RecursiveTask<Parcial> {
+        private final FileChannel mCanal;
+        private final long mTamanho;
+        private final int mPrimeiro;
+        private final int mFim;
+
+        Tarefa(FileChannel pCanal, long pTamanho, int pPrimeiro, int pFim) {
+            this.mCanal = pCanal;
+            this.mTamanho = pTamanho;
+            this.mPrimeiro = pPrimeiro;
+            this.mFim = pFim;
+        }//construtor Tarefa
+
+        @Override
+        protected Parcial compute() {
+            if (mFim - mPrimeiro == 1) {
+                long inicio = (long) mPrimeiro * TAMANHO_BLOCO;
+                long fim = Math.min(mTamanho, inicio + TAMANHO_BLOCO);
+                try {
+                    return new LeitorBloco(mCanal, mTamanho, inicio, fim).ler();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }//catch
+            }//if
+
+            int meio = (mPrimeiro + mFim) >>> 1;
+            Tarefa esquerda = new Tarefa(mCanal, mTamanho, mPrimeiro, meio);
+            esquerda.fork();
+            Parcial direita = new Tarefa(mCanal, mTamanho, meio, mFim).compute();
+            return esquerda.join().juntar(direita);
+        }//compute
+    }//classe Tarefa
+
+    // Resultado de um ou mais blocos consecutivos
+    private static final class Parcial {
+        private final List<Ativo> mAtivos;
+        private int mErros;
+
+        Parcial(List<Ativo> pAtivos, int pErros) {
+            this.mAtivos = pAtivos;
+            this.mErros = pErros;
+        }//construtor Parcial
+
+        Parcial juntar(Parcial pSeguinte) {
+            mAtivos.addAll(pSeguinte.mAtivos);
+            mErros += pSeguinte.mErros;
+            return this;
+        }//juntar
+    }//classe Parcial
+
+    //--------------------------------------------------
+    // Leitura de um bloco, byte a byte
+    //--------------------------------------------------
+    private static final class LeitorBloco {
+        private final FileChannel mCanal;
+        private final long mTamanhoFicheiro;
+        private final long mInicio;
+        private final long mFim;
+
+        private MappedByteBuffer mBuffer;
+        private byte[] mTexto = new byte[256];
+        private final int[] mInicios = new int[CAMPOS];
+        private final int[] mFins = new int[CAMPOS];
+
+        LeitorBloco(FileChannel pCanal, long pTamanhoFicheiro, long pInicio, long pFim) {
+            this.mCanal = pCanal;
+            this.mTamanhoFicheiro = pTamanhoFicheiro;
+            this.mInicio = pInicio;
+            this.mFim = pFim;
+        }//construtor LeitorBloco
+
+        Parcial ler() throws IOException {
+            List<Ativo> ativos = new ArrayList<>();
+            int erros = 0;
+            if (mInicio >= mFim) return new Parcial(ativos, 0);
+
+            // Mapeia desde o byte anterior ao bloco (para saber se uma linha
+            // começa no primeiro byte) até um pouco depois do fim
+            long inicioMapa = Math.max(0, mInicio - 1);
+            long fimMapa = Math.min(mTamanhoFicheiro, mFim + LINHA_MAXIMA);
+            mBuffer = mCanal.map(FileChannel.MapMode.READ_ONLY, inicioMapa, fimMapa - inicioMapa);
+            int limite = (int) (mFim - inicioMapa);
+            int tamanhoMapa = mBuffer.limit();
+
+            // Primeira linha deste bloco: a seguir ao primeiro '\n'.
+            // No primeiro bloco isto salta o cabeçalho.
+            int pos = procurarFimLinha(0, tamanhoMapa);
+            if (pos < 0) return new Parcial(ativos, 0);
+            pos++;
+
+            while (pos < limite) {
+                int fimLinha = procurarFimLinha(pos, tamanhoMapa);
+                if (fimLinha < 0) {
+                    if (fimMapa < mTamanhoFicheiro) {
+                        erros++;  // linha maior do que LINHA_MAXIMA
+                        break;
+                    }//if
+                    fimLinha = tamanhoMapa;  // última linha, sem '\n'
+                }//if
+
+                try {
+                    Ativo ativo = lerLinha(pos, fimLinha);
+                    if (ativo != null) ativos.add(ativo);
+                } catch (RuntimeException e) {
+                    erros++;
+                }//catch
+                pos = fimLinha + 1;
+            }//while
+
+            return new Parcial(ativos, erros);
+        }//ler
+
+        private int procurarFimLinha(int pDesde, int pAte) {
+            for (int i = pDesde; i < pAte; i++) {
+                if (mBuffer.get(i) == '\n') return i;
+            }//for
+            return -1;
+        }//procurarFimLinha
+
+        /**
+         * @return o ativo, ou null se a linha é para ignorar
+         */
+        private Ativo lerLinha(int pInicio, int pFim) {
+            // Separar os 6 primeiros campos
+            int campo = 0;
+            int inicioCampo = pInicio;
+            int i = pInicio;
+            for (; i < pFim && campo < CAMPOS; i++) {
+                if (mBuffer.get(i) == SEPARADOR) {
+                    mInicios[campo] = inicioCampo;
+                    mFins[campo] = i;
+                    campo++;
+                    inicioCampo = i + 1;
+                }//if
+            }//for
+            if (campo < CAMPOS && inicioCampo <= pFim) {
+                mInicios[campo] = inicioCampo;
+                mFins[campo] = pFim;
+                campo++;
+            }//if
+
+            if (campo < CAMPOS) {
+                // Linha vazia ou com poucos campos: ignorada (como no split)
+                return null;
+            }//if
+            if (mInicios[5] == mFins[5] && soSeparadores(mFins[5], pFim)) {
+                // Campos finais vazios não contam no split: ficam só 5
+                return null;
+            }//if
+
+            // Tirar espaços à volta de cada campo (como trim)
+            for (int c = 0; c < CAMPOS; c++) {
+                while (mInicios[c] < mFins[c] && (mBuffer.get(mInicios[c]) & 0xFF) <= ' ') mInicios[c]++;
+                while (mFins[c] > mInicios[c] && (mBuffer.get(mFins[c] - 1) & 0xFF) <= ' ') mFins[c]--;
+            }//for
+
+            String ticker = texto(mInicios[0], mFins[0]);
+            TipoAtivo tipo = lerTipo(mInicios[1], mFins[1]);
+            String nome = texto(mInicios[2], mFins[2]);
+            double preco = lerDouble(mInicios[3], mFins[3]);
+            double variacao = lerDouble(mInicios[4], mFins[4]);
+            long volume = lerLong(mInicios[5], mFins[5]);
+
+            return FabricaAtivos.criarAtivo(tipo, ticker, nome, preco, variacao, volume);
+        }//lerLinha
+
+        private boolean soSeparadores(int pDesde, int pAte) {
+            for (int i = pDesde; i < pAte; i++) {
+                if (mBuffer.get(i) != SEPARADOR) return false;
+            }//for
+            return true;
+        }//soSeparadores
+
+        private String texto(int pInicio, int pFim) {
+            int tamanho = pFim - pInicio;
+            if (tamanho > mTexto.length) mTexto = new byte[Math.max(tamanho, mTexto.length * 2)];
+            mBuffer.get(pInicio, mTexto, 0, tamanho);
+            return new String(mTexto, 0, tamanho, StandardCharsets.UTF_8);
+        }//texto
+
+        private TipoAtivo lerTipo(int pInicio, int pFim) {
+            int tamanho = pFim - pInicio;
+            for (int t = 0; t < TIPOS.length; t++) {
+                byte[] nome = NOMES_TIPOS[t];
+                if (nome.length != tamanho) continue;
+                int i = 0;
+                while (i < tamanho && mBuffer.get(pInicio + i) == nome[i]) i++;
+                if (i == tamanho) return TIPOS[t];
+            }//for
+            // Mesma exceção e mensagem que TipoAtivo.valueOf
+            return TipoAtivo.valueOf(texto(pInicio, pFim));
+        }//lerTipo
+
+        /**
+         * Número com sinal opcional e vírgula ou ponto decimal.
+         * Outros formatos (expoente, muitos dígitos) vão para Double.parseDouble.
+         */
+        private double lerDouble(int pInicio, int pFim) {
+            int i = pInicio;
+            boolean negativo = false;
+            if (i < pFim && (mBuffer.get(i) == '-' || mBuffer.get(i) == '+')) {
+                negativo = mBuffer.get(i) == '-';
+                i++;
+            }//if
+
+            long mantissa = 0;
+            int expoente = 0;
+            int significativos = 0;
+            boolean temDigitos = false;
+            boolean truncado = false;
+            int d;
+
+            while (i < pFim && (d = ConversorDecimal.digito(mBuffer.get(i))) >= 0) {
+                temDigitos = true;
+                if (significativos < ConversorDecimal.DIGITOS_MAX) {
+                    if (mantissa != 0 || d != 0) significativos++;
+                    mantissa = mantissa * 10 + d;
+                } else {
+                    expoente++;
+                    if (d != 0) truncado = true;
+                }//else
+                i++;
+            }//while
+
+            if (i < pFim && (mBuffer.get(i) == ',' || mBuffer.get(i) == '.')) {
+                i++;
+                while (i < pFim && (d = ConversorDecimal.digito(mBuffer.get(i))) >= 0) {
+                    temDigitos = true;
+                    if (significativos < ConversorDecimal.DIGITOS_MAX) {
+                        if (mantissa != 0 || d != 0) significativos++;
+                        mantissa = mantissa * 10 + d;
+                        expoente--;
+                    } else if (d != 0) {
+                        truncado = true;
+                    }//else if
+                    i++;
+                }//while
+            }//if
+
+            double valor = (!temDigitos || i != pFim || truncado)
+                ? Double.NaN
+                : ConversorDecimal.paraDouble(negativo, mantissa, expoente);
+            if (Double.isNaN(valor)) {
+                // Caso raro: conversão exata (ou erro) via JDK, como no leitor antigo
+                valor = Double.parseDouble(texto(pInicio, pFim).replace(",", "."));
+            }//if
+            return valor;
+        }//lerDouble
+
+        private long lerLong(int pInicio, int pFim) {
+            int i = pInicio;
+            boolean negativo = false;
+            if (i < pFim && (mBuffer.get(i) == '-' || mBuffer.get(i) == '+')) {
+                negativo = mBuffer.get(i) == '-';
+                i++;
+            }//if
+
+            int tamanho = pFim - i;
+            if (tamanho == 0 || tamanho > ConversorDecimal.DIGITOS_MAX) {
+                return Long.parseLong(texto(pInicio, pFim));
+            }//if
+
+            long valor = 0;
+            for (; i < pFim; i++) {
+                int d = ConversorDecimal.digito(mBuffer.get(i));
+                if (d < 0) return Long.parseLong(texto(pInicio, pFim));
+                valor = valor * 10 + d;
+            }//for
+            return negativo ? -valor : valor;
+        }//lerLong
+    }//classe LeitorBloco
+
+    //--------------------------------------------------
+    // Resultado da leitura
+    //--------------------------------------------------
+    public static final class Resultado {
+        private final List<Ativo> mAtivos;
+        private final int mErros;
+        private final long mBytes;
+        private final long mDuracaoNanos;
+
+        private Resultado(List<Ativo> pAtivos, int pErros, long pBytes, long pDuracaoNanos) {
+            this.mAtivos = pAtivos;
+            this.mErros = pErros;
+            this.mBytes = pBytes;
+            this.mDuracaoNanos = pDuracaoNanos;
+        }//construtor Resultado
+
+        public List<Ativo> getAtivos() { return mAtivos; }
+        public int getErros() { return mErros; }
+        public long getBytes() { return mBytes; }
+        public double getDuracaoMs() { return mDuracaoNanos / 1e6; }
+
+        public double getMBPorSegundo() {
+            return mDuracaoNanos == 0 ? 0.0 : (mBytes / 1e6) / (mDuracaoNanos / 1e9);
+        }//getMBPorSegundo
+    }//classe Resultado
+
+}//classe LeitorCSVMapeado